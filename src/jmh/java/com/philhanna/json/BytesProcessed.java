@@ -0,0 +1,31 @@
+package com.philhanna.json;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark counter for the number of characters of JSON text
+ * processed. JMH reports it as a rate alongside the primary score, so
+ * dividing by 10<sup>6</sup> gives throughput in MB/s (for the mostly
+ * ASCII corpora, one character is one byte).
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class BytesProcessed {
+
+   /**
+    * Number of characters of JSON text read or written
+    */
+   public long bytes;
+
+   /**
+    * Resets the counter before each iteration
+    */
+   @Setup(Level.Iteration)
+   public void reset() {
+      bytes = 0;
+   }
+}
@@ -0,0 +1,197 @@
+package com.philhanna.json;
+
+import java.util.Random;
+
+/**
+ * Synthetic JSON documents used by the benchmarks. Every corpus is
+ * generated from a fixed random seed so that results are repeatable
+ * and the suite can run without any external data.
+ */
+public enum Corpus {
+
+   /**
+    * A small API response, similar to a geocoding or elevation result
+    */
+   SMALL {
+      @Override
+      void generate(StringBuilder sb, Random random) {
+         sb.append("{\"results\":[");
+         for (int i = 0; i < 3; i++) {
+            if (i > 0)
+               sb.append(",");
+            sb.append("{\"elevation\":");
+            sb.append(random.nextDouble() * 1000);
+            sb.append(",\"location\":{\"lat\":");
+            sb.append(random.nextDouble() * 90);
+            sb.append(",\"lng\":");
+            sb.append(-random.nextDouble() * 180);
+            sb.append("},\"resolution\":");
+            sb.append(random.nextDouble() * 10);
+            sb.append(",\"verified\":");
+            sb.append(random.nextBoolean());
+            sb.append(",\"note\":null}");
+         }
+         sb.append("],\"status\":\"OK\"}");
+      }
+   },
+
+   /**
+    * An array of records, each with 200 members
+    */
+   WIDE {
+      @Override
+      void generate(StringBuilder sb, Random random) {
+         sb.append("[");
+         for (int i = 0; i < 50; i++) {
+            if (i > 0)
+               sb.append(",");
+            sb.append("{");
+            for (int j = 0; j < 200; j++) {
+               if (j > 0)
+                  sb.append(",");
+               sb.append("\"field").append(j).append("\":");
+               switch (j % 4) {
+                  case 0:
+                     sb.append(random.nextInt(100000));
+                     break;
+                  case 1:
+                     appendWord(sb, random);
+                     break;
+                  case 2:
+                     sb.append(random.nextBoolean());
+                     break;
+                  default:
+                     sb.append(random.nextDouble());
+                     break;
+               }
+            }
+            sb.append("}");
+         }
+         sb.append("]");
+      }
+   },
+
+   /**
+    * Objects and arrays nested 200 levels deep
+    */
+   DEEP {
+      @Override
+      void generate(StringBuilder sb, Random random) {
+         final int depth = 200;
+         for (int i = 0; i < depth; i++) {
+            if (i % 2 == 0)
+               sb.append("{\"id\":").append(i).append(",\"child\":");
+            else
+               sb.append("[").append(random.nextInt(1000)).append(",");
+         }
+         sb.append("null");
+         for (int i = depth - 1; i >= 0; i--) {
+            sb.append(i % 2 == 0
+                  ? "}"
+                  : "]");
+         }
+      }
+   },
+
+   /**
+    * Mostly long string values, some with escapes and non-ASCII text
+    */
+   STRINGS {
+      @Override
+      void generate(StringBuilder sb, Random random) {
+         sb.append("[");
+         for (int i = 0; i < 2000; i++) {
+            if (i > 0)
+               sb.append(",");
+            sb.append("{\"id\":\"").append(Long.toHexString(random.nextLong()));
+            sb.append("\",\"text\":\"");
+            final int words = 5 + random.nextInt(30);
+            for (int j = 0; j < words; j++) {
+               if (j > 0)
+                  sb.append(' ');
+               sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            if (i % 10 == 0)
+               sb.append(" \\\"quoted\\\"\\n\\u00e9t\\u00e9");
+            if (i % 7 == 0)
+               sb.append(" caf\u00e9 \u6771\u4eac");
+            sb.append("\"}");
+         }
+         sb.append("]");
+      }
+   },
+
+   /**
+    * Mostly numeric values: time series of integers and decimals
+    */
+   NUMBERS {
+      @Override
+      void generate(StringBuilder sb, Random random) {
+         sb.append("{\"series\":[");
+         for (int i = 0; i < 500; i++) {
+            if (i > 0)
+               sb.append(",");
+            sb.append("{\"t\":").append(1500000000000L + i * 1000L);
+            sb.append(",\"values\":[");
+            for (int j = 0; j < 20; j++) {
+               if (j > 0)
+                  sb.append(",");
+               if (j % 3 == 0)
+                  sb.append(random.nextInt(1000000) - 500000);
+               else if (j % 3 == 1)
+                  sb.append(random.nextGaussian() * 100);
+               else
+                  sb.append(random.nextInt(1000)).append("e-3");
+            }
+            sb.append("]}");
+         }
+         sb.append("]}");
+      }
+   };
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final long SEED = 20180414L;
+
+   private static final String[] WORDS = {
+         "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf",
+         "hotel", "india", "juliet", "kilo", "lima", "mike", "november",
+         "oscar", "papa", "quebec", "romeo", "sierra", "tango", "uniform",
+         "victor", "whiskey", "xray", "yankee", "zulu", };
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Appends a randomly chosen quoted word
+    * @param sb the output buffer
+    * @param random the random number source
+    */
+   static void appendWord(StringBuilder sb, Random random) {
+      sb.append('"').append(WORDS[random.nextInt(WORDS.length)]).append('"');
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Appends the document to the specified buffer
+    * @param sb the output buffer
+    * @param random the random number source
+    */
+   abstract void generate(StringBuilder sb, Random random);
+
+   /**
+    * Returns the JSON text of this corpus
+    * @return a JSON document
+    */
+   public String getText() {
+      final StringBuilder sb = new StringBuilder();
+      generate(sb, new Random(SEED));
+      return sb.toString();
+   }
+}
@@ -0,0 +1,105 @@
+package com.philhanna.json;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JSONParser} building a tree from each kind of input.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   @Param
+   public Corpus corpus;
+
+   private final JSONParser parser = JSONParser.newParser();
+   private String text;
+   private byte[] bytes;
+   private File file;
+
+   // ====================================================================
+   // Fixtures
+   // ====================================================================
+
+   @Setup
+   public void setUp() throws IOException {
+      text = corpus.getText();
+      bytes = text.getBytes("UTF-8");
+      file = File.createTempFile("corpus-" + corpus.name(), ".json");
+      file.deleteOnExit();
+      final OutputStream out = new FileOutputStream(file);
+      try {
+         out.write(bytes);
+      }
+      finally {
+         out.close();
+      }
+   }
+
+   @TearDown
+   public void tearDown() {
+      file.delete();
+   }
+
+   // ====================================================================
+   // Benchmarks
+   // ====================================================================
+
+   @Benchmark
+   public JSONValue parseString(BytesProcessed counter)
+         throws JSONException, IOException {
+      final JSONValue value = parser.parse(text);
+      counter.bytes += text.length();
+      return value;
+   }
+
+   @Benchmark
+   public JSONValue parseReader(BytesProcessed counter)
+         throws JSONException, IOException {
+      final JSONValue value = parser.parse(new StringReader(text));
+      counter.bytes += text.length();
+      return value;
+   }
+
+   @Benchmark
+   public JSONValue parseBytes(BytesProcessed counter)
+         throws JSONException, IOException {
+      final JSONValue value = parser.parse(bytes);
+      counter.bytes += bytes.length;
+      return value;
+   }
+
+   @Benchmark
+   public JSONValue parseFile(BytesProcessed counter)
+         throws JSONException, IOException {
+      final JSONValue value = parser.parse(file);
+      counter.bytes += bytes.length;
+      return value;
+   }
+}
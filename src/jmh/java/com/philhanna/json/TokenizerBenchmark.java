@@ -0,0 +1,66 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the raw tokenizing speed of {@link DefaultJSONTokenizer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   @Param
+   public Corpus corpus;
+
+   private String text;
+
+   // ====================================================================
+   // Fixtures
+   // ====================================================================
+
+   @Setup
+   public void setUp() {
+      text = corpus.getText();
+   }
+
+   // ====================================================================
+   // Benchmarks
+   // ====================================================================
+
+   /**
+    * Reads every token in the document
+    */
+   @Benchmark
+   public int readToken(BytesProcessed counter)
+         throws JSONException, IOException {
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader(text));
+      int n = 0;
+      while (tokenizer.readToken() != null)
+         n++;
+      counter.bytes += text.length();
+      return n;
+   }
+}
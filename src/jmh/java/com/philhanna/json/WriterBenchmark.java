@@ -0,0 +1,79 @@
+package com.philhanna.json;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link JSONWriter} serializing a previously parsed tree, in
+ * both compact and pretty form.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriterBenchmark {
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   @Param
+   public Corpus corpus;
+
+   @Param({ "false", "true" })
+   public boolean pretty;
+
+   private JSONValue value;
+
+   // ====================================================================
+   // Fixtures
+   // ====================================================================
+
+   /**
+    * Per-thread output buffer, reused across invocations so that the
+    * benchmark measures the writer rather than buffer growth.
+    */
+   @State(Scope.Thread)
+   public static class Output {
+      final CharArrayWriter buffer = new CharArrayWriter(1 << 20);
+      final PrintWriter out = new PrintWriter(buffer);
+   }
+
+   @Setup
+   public void setUp() throws JSONException, IOException {
+      value = JSONParser.newParser().parse(corpus.getText());
+   }
+
+   // ====================================================================
+   // Benchmarks
+   // ====================================================================
+
+   @Benchmark
+   public int writeTo(Output output, BytesProcessed counter)
+         throws JSONException {
+      output.buffer.reset();
+      final JSONWriter writer = new JSONWriter(value);
+      writer.setPretty(pretty);
+      writer.writeTo(output.out);
+      output.out.flush();
+      final int size = output.buffer.size();
+      counter.bytes += size;
+      return size;
+   }
+}
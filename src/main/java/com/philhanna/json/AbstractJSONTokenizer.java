@@ -0,0 +1,996 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Base class for tokenizers. Implements the JSON lexical grammar on top
+ * of a character source provided by the subclass, which need only
+ * supply {@link #read()}, {@link #unread()} and a bulk copy of ordinary
+ * string characters.
+ */
+abstract class AbstractJSONTokenizer implements JSONTokenizer {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger
+         .getLogger(AbstractJSONTokenizer.class);
+
+   private static final String ERRMSG_CONTROL_CHAR = "Control character 0x%04x is not allowed inside the JSON string";
+   private static final String ERRMSG_ESCAPE = "0x%04x is not a valid escape character inside %s";
+   private static final String ERRMSG_UNICODE_SHORT = "Only %d hex digits found in %s. Must be exactly 4";
+   private static final String ERRMSG_UNTERMINATED_STRING = "End of input inside %s";
+   private static final String ERRMSG_NUMBER = "%s is not a valid numeric literal";
+   private static final String ERRMSG_BAD_LITERAL = "%s is not a valid JSON literal (true|false|null)";
+   private static final String ERRMSG_UNTERMINATED_VALUE = "End of input inside skipped value";
+   private static final String ERRMSG_INVALID_TOKEN = "\"%s\" is not a valid JSON token";
+
+   /**
+    * Largest significand that a <code>double</code> holds exactly
+    */
+   private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+
+   /**
+    * Exponent beyond which a number is not converted while it is read
+    */
+   private static final int MAX_EXPONENT = 100000;
+
+   /**
+    * Powers of ten that a <code>double</code> holds exactly, from
+    * 10<sup>0</sup> to 10<sup>22</sup>
+    */
+   private static final double[] POWERS_OF_TEN = new double[23];
+   static {
+      POWERS_OF_TEN[0] = 1;
+      for (int i = 1; i < POWERS_OF_TEN.length; i++)
+         POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+   }
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Returns <code>true</code> if the specified character could be part
+    * of a JSON number literal.
+    * @param c the character
+    */
+   static final boolean isNumberCharacter(int c) {
+      return (c >= '0' && c <= '9')
+            || c == '.'
+            || c == '-'
+            || c == '+'
+            || c == 'e'
+            || c == 'E';
+   }
+
+   /**
+    * Returns <code>true</code> if the specified character can legally
+    * follow a backslash inside a JSON string.
+    * @param c the character
+    */
+   static final boolean isEscapedCharacter(int c) {
+      switch (c) {
+         case '"':
+         case '\\':
+         case '/':
+         case 'b':
+         case 'f':
+         case 'n':
+         case 'r':
+         case 't':
+         case 'u':
+            return true;
+         default:
+            return false;
+      }
+   }
+
+   /**
+    * Returns <code>true</code> if the specified
+    * character is a hexadecimal digit
+    * @param c the character
+    */
+   static final boolean isHexDigit(int c) {
+      return (c >= '0' && c <= '9')
+            || (c >= 'A' && c <= 'F')
+            || (c >= 'a' && c <= 'f');
+   }
+
+   /**
+    * Returns <code>true</code> if the specified character is whitespace
+    * between tokens
+    * @param c the character
+    */
+   static final boolean isWhitespace(int c) {
+      return c == ' '
+            || c == '\n'
+            || c == '\r'
+            || c == '\t'
+            || Character.isWhitespace(c);
+   }
+
+   /**
+    * Returns the type of a token given as a string, as used by
+    * {@link #unread(String)}
+    * @param token the token
+    * @return the token type
+    * @throws JSONException if the token is empty or is not a
+    *         punctuation mark, string, literal or number
+    */
+   static JSONTokenType typeOf(String token) throws JSONException {
+      if (token.length() == 0)
+         throw invalidToken(token);
+      if (token.length() > 1 && token.charAt(0) != '"')
+         return typeOfWord(token);
+      switch (token.charAt(0)) {
+         case '{':
+            return JSONTokenType.START_OBJECT;
+         case '}':
+            return JSONTokenType.END_OBJECT;
+         case '[':
+            return JSONTokenType.START_ARRAY;
+         case ']':
+            return JSONTokenType.END_ARRAY;
+         case ',':
+            return JSONTokenType.COMMA;
+         case ':':
+            return JSONTokenType.COLON;
+         case '"':
+            return JSONTokenType.STRING;
+      }
+      return typeOfWord(token);
+   }
+
+   /**
+    * Returns the type of a literal or number given as a string
+    */
+   private static JSONTokenType typeOfWord(String token)
+         throws JSONException {
+      if (token.equals("true"))
+         return JSONTokenType.TRUE;
+      if (token.equals("false"))
+         return JSONTokenType.FALSE;
+      if (token.equals("null"))
+         return JSONTokenType.NULL;
+      if (JSONNumber.isNumber(token))
+         return JSONTokenType.NUMBER;
+      throw invalidToken(token);
+   }
+
+   /**
+    * Returns the exception for a token that was unread but is not valid
+    */
+   private static JSONException invalidToken(String token) {
+      final String errmsg = String.format(ERRMSG_INVALID_TOKEN, token);
+      log.trace(errmsg);
+      return new JSONException(errmsg);
+   }
+
+   /**
+    * Returns the fixed text of a punctuation or literal token
+    * @param type the token type
+    * @return the text, or <code>null</code> if the token type has
+    *         variable text
+    */
+   static String textOf(JSONTokenType type) {
+      switch (type) {
+         case START_OBJECT:
+            return "{";
+         case END_OBJECT:
+            return "}";
+         case START_ARRAY:
+            return "[";
+         case END_ARRAY:
+            return "]";
+         case COMMA:
+            return ",";
+         case COLON:
+            return ":";
+         case TRUE:
+            return "true";
+         case FALSE:
+            return "false";
+         case NULL:
+            return "null";
+         default:
+            return null;
+      }
+   }
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   // Current token. For a string token, the text is the decoded value
+   // without the quotes; if the string has escape sequences, the token
+   // as it appears in the input is kept in the raw text as well.
+
+   private JSONTokenType tokenType;
+   private char[] text = new char[64];
+   private int textLength;
+   private String textString;
+   private boolean escaped;
+   private char[] raw;
+   private int rawLength;
+
+   // For a number token that is an integer in the range of a long, its
+   // value, computed as the digits are read. For one whose digits and
+   // exponent are few enough that the nearest double can be found with
+   // a single exact multiplication or division, that double.
+
+   private boolean exactLong;
+   private long longValue;
+   private boolean exactDouble;
+   private double doubleValue;
+
+   // Token pushed back by unread()
+
+   private String lastToken;
+
+   // Table used to share object keys across parses, if one is supplied,
+   // and otherwise the table for the values built in one parse, created
+   // on first use and dropped when the parse ends
+
+   private JSONSymbolTable symbols;
+   private JSONSymbolTable parseSymbols;
+
+   // Statistics collected for a ParseObserver, if there is one
+
+   private ParseStatistics statistics;
+
+   // ====================================================================
+   // Implementation of JSONTokenizer
+   // ====================================================================
+
+   @Override
+   public JSONTokenType nextToken() throws JSONException, IOException {
+
+      // Reread last token, if one has been unread
+
+      escaped = false;
+      exactLong = false;
+      exactDouble = false;
+      if (lastToken != null) {
+         final String token = lastToken;
+         lastToken = null;
+         textString = token;
+         tokenType = typeOf(token);
+         final String value = tokenType == JSONTokenType.STRING
+               ? JSONString.parseString(token).getString()
+               : token;
+         textLength = 0;
+         ensureCapacity(value.length());
+         value.getChars(0, value.length(), text, 0);
+         textLength = value.length();
+         return tokenType;
+      }
+
+      textString = null;
+      textLength = 0;
+
+      int c = read();
+      while (c != -1 && isWhitespace(c))
+         c = read();
+
+      switch (c) {
+         case -1:
+            tokenType = null;
+            break;
+         case '{':
+            tokenType = JSONTokenType.START_OBJECT;
+            break;
+         case '}':
+            tokenType = JSONTokenType.END_OBJECT;
+            break;
+         case '[':
+            tokenType = JSONTokenType.START_ARRAY;
+            break;
+         case ']':
+            tokenType = JSONTokenType.END_ARRAY;
+            break;
+         case ',':
+            tokenType = JSONTokenType.COMMA;
+            break;
+         case ':':
+            tokenType = JSONTokenType.COLON;
+            break;
+         case '"':
+            readString();
+            tokenType = JSONTokenType.STRING;
+            break;
+         default:
+            if (isNumberCharacter(c)) {
+               readNumber(c);
+               tokenType = JSONTokenType.NUMBER;
+            }
+            else {
+               tokenType = readLiteral(c);
+            }
+            break;
+      }
+      if (statistics != null && tokenType != null)
+         statistics.token(tokenType);
+      return tokenType;
+   }
+
+   @Override
+   public JSONTokenType getTokenType() {
+      return tokenType;
+   }
+
+   @Override
+   public String getText() {
+      if (textString == null && tokenType != null) {
+         textString = textOf(tokenType);
+         if (textString == null) {
+            if (tokenType != JSONTokenType.STRING)
+               textString = new String(text, 0, textLength);
+            else if (escaped)
+               textString = new String(raw, 0, rawLength);
+            else
+               textString = quote(text, textLength);
+         }
+      }
+      return textString;
+   }
+
+   @Override
+   public String readToken() throws JSONException, IOException {
+      final JSONTokenType type = nextToken();
+      if (type == null)
+         return null;
+      return getText();
+   }
+
+   @Override
+   public void unread(String token) {
+      lastToken = token;
+   }
+
+   // ====================================================================
+   // Abstract methods
+   // ====================================================================
+
+   /**
+    * Returns the next input character, or -1 at end of input
+    * @throws JSONException if the input cannot be decoded
+    * @throws IOException if an I/O error occurs
+    */
+   abstract int read() throws JSONException, IOException;
+
+   /**
+    * Steps back over the character just returned by {@link #read()}.
+    * Never called after -1 has been returned.
+    */
+   abstract void unread();
+
+   /**
+    * Appends to the token text a run of ordinary string characters,
+    * stopping without consuming it at the first quote, backslash,
+    * control character or the end of the currently available input.
+    * @throws JSONException if the input cannot be decoded
+    * @throws IOException if an I/O error occurs
+    */
+   abstract void copyStringCharacters() throws JSONException, IOException;
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Sets the table used to share object keys
+    * @param symbols the table, or <code>null</code> to use a new table
+    *        for each parse
+    */
+   final void setSymbolTable(JSONSymbolTable symbols) {
+      this.symbols = symbols;
+   }
+
+   /**
+    * Returns the table in which object keys are interned
+    * @return the shared table, or the table for the current parse, or
+    *         <code>null</code> if there is neither
+    */
+   final JSONSymbolTable getSymbolTable() {
+      return symbols != null
+            ? symbols
+            : parseSymbols;
+   }
+
+   /**
+    * Drops the table for the values built in a parse, so that the next
+    * parse starts a new one. A parser calls this before and after each
+    * parse, so that a tokenizer read by many parses does not keep the
+    * keys of them all.
+    */
+   final void endParse() {
+      parseSymbols = null;
+   }
+
+   /**
+    * Sets the statistics to which each token read is added
+    * @param statistics the statistics, or <code>null</code> to collect
+    *        none
+    */
+   final void setStatistics(ParseStatistics statistics) {
+      this.statistics = statistics;
+   }
+
+   /**
+    * Returns the amount of input consumed so far, in the units read by
+    * the subclass
+    * @return the number of bytes or characters, or -1 if it is not
+    *         known
+    */
+   long getOffset() {
+      return -1;
+   }
+
+   /**
+    * Returns the decoded Java string for a string token. The escape
+    * sequences were decoded as the token was read, so this only copies
+    * the characters.
+    * @return the string
+    */
+   String getString() {
+      return new String(text, 0, textLength);
+   }
+
+   /**
+    * Returns <code>true</code> if the current token is an integer in
+    * the range of a <code>long</code>, whose value was computed while
+    * the token was read
+    */
+   final boolean hasLongValue() {
+      return exactLong;
+   }
+
+   /**
+    * Returns the value of the current token, if
+    * {@link #hasLongValue()} is <code>true</code>
+    */
+   final long getLongValue() {
+      return longValue;
+   }
+
+   /**
+    * Returns <code>true</code> if the current token is a number whose
+    * value as a <code>double</code> was computed while the token was
+    * read. This is the case for most numbers with no more than 15
+    * significant digits and a small exponent.
+    */
+   final boolean hasDoubleValue() {
+      return exactDouble;
+   }
+
+   /**
+    * Returns the value of the current token, if
+    * {@link #hasDoubleValue()} is <code>true</code>. It is the same
+    * value as <code>Double.parseDouble()</code> returns for the token.
+    */
+   final double getDoubleValue() {
+      return doubleValue;
+   }
+
+   /**
+    * Returns the decoded Java string for a string token that is the key
+    * of an object being built. A key that is already in the symbol
+    * table is returned without creating a string. Without a shared
+    * table, the keys are kept in a table for the parse, which grows with
+    * the number of distinct keys until {@link #endParse()}.
+    * @return the key
+    */
+   String getKey() {
+      if (symbols != null)
+         return symbols.intern(text, 0, textLength);
+      if (parseSymbols == null)
+         parseSymbols = JSONSymbolTable.newParseTable();
+      return parseSymbols.intern(text, 0, textLength);
+   }
+
+   /**
+    * Returns the decoded Java string for a string token that is an
+    * object key in a stream of events, of which nothing is kept. The key
+    * is interned in a shared table, whose size is bounded, if there is
+    * one, and is otherwise a new string, so that memory does not grow
+    * with the number of distinct keys in the input.
+    * @return the key
+    */
+   String getStreamKey() {
+      if (symbols != null)
+         return symbols.intern(text, 0, textLength);
+      return getString();
+   }
+
+   /**
+    * Skips the next value in the input, which may be an object, array,
+    * string, number or literal. Only bracket nesting and the extent of
+    * strings are tracked: no token text is built, numbers are not
+    * checked and strings are not decoded, so a syntax error inside the
+    * value may go unnoticed. Afterwards the current token has the
+    * returned type but no text.
+    * @return the type of the first token of the value, or a token that
+    *         cannot start a value (such as <code>END_ARRAY</code>),
+    *         which is consumed as usual, or <code>null</code> at end of
+    *         input
+    * @throws JSONException if the input ends inside the value
+    * @throws IOException if an I/O error occurs
+    */
+   public JSONTokenType skipValue() throws JSONException, IOException {
+      if (lastToken != null) {
+         final JSONTokenType type = nextToken();
+         if (type == JSONTokenType.START_OBJECT
+               || type == JSONTokenType.START_ARRAY)
+            skipContainer();
+         return type;
+      }
+
+      int c = read();
+      while (c != -1 && isWhitespace(c))
+         c = read();
+
+      final JSONTokenType type;
+      switch (c) {
+         case '{':
+            skipContainer();
+            type = JSONTokenType.START_OBJECT;
+            break;
+         case '[':
+            skipContainer();
+            type = JSONTokenType.START_ARRAY;
+            break;
+         case '"':
+            skipString();
+            type = JSONTokenType.STRING;
+            break;
+         case 't':
+            skipWord();
+            type = JSONTokenType.TRUE;
+            break;
+         case 'f':
+            skipWord();
+            type = JSONTokenType.FALSE;
+            break;
+         case 'n':
+            skipWord();
+            type = JSONTokenType.NULL;
+            break;
+         default:
+            if (isNumberCharacter(c)) {
+               skipWord();
+               type = JSONTokenType.NUMBER;
+               break;
+            }
+
+            // Not the start of a value: return it as an ordinary token
+
+            if (c != -1)
+               unread();
+            return nextToken();
+      }
+      tokenType = type;
+      textLength = 0;
+      textString = textOf(type) == null
+            ? ""
+            : null;
+      return type;
+   }
+
+   /**
+    * Skips the rest of an object or array, the opening bracket having
+    * already been read
+    * @throws JSONException if the input ends inside the object or array
+    * @throws IOException if an I/O error occurs
+    */
+   void skipContainer() throws JSONException, IOException {
+      int depth = 1;
+      while (depth > 0) {
+         switch (read()) {
+            case -1:
+               throw unterminatedValue();
+            case '{':
+            case '[':
+               depth++;
+               break;
+            case '}':
+            case ']':
+               depth--;
+               break;
+            case '"':
+               skipString();
+               break;
+         }
+      }
+   }
+
+   /**
+    * Appends a character to the token text
+    * @param c the character
+    */
+   final void append(int c) {
+      if (textLength == text.length)
+         text = Arrays.copyOf(text, textLength * 2);
+      text[textLength++] = (char) c;
+   }
+
+   /**
+    * Appends characters to the token text
+    * @param chars the source array
+    * @param start the index of the first character to copy
+    * @param length the number of characters to copy
+    */
+   final void append(char[] chars, int start, int length) {
+      ensureCapacity(length);
+      System.arraycopy(chars, start, text, textLength, length);
+      textLength += length;
+   }
+
+   /**
+    * Makes room for at least the specified number of additional
+    * characters in the token text, returning the token text buffer
+    * for subclasses that append to it directly with
+    * {@link #setTextLength(int)}
+    * @param length the number of characters to make room for
+    * @return the token text buffer
+    */
+   final char[] ensureCapacity(int length) {
+      if (textLength + length > text.length) {
+         text = Arrays
+               .copyOf(text, Math.max(textLength * 2, textLength + length));
+      }
+      return text;
+   }
+
+   /**
+    * Returns the size of the token text buffer
+    */
+   final int getTextCapacity() {
+      return text.length;
+   }
+
+   /**
+    * Returns the number of characters in the token text
+    */
+   final int getTextLength() {
+      return textLength;
+   }
+
+   /**
+    * Sets the number of characters in the token text, after a subclass
+    * has written to the buffer returned by {@link #ensureCapacity(int)}
+    * @param textLength the new length
+    */
+   final void setTextLength(int textLength) {
+      this.textLength = textLength;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Reads the remainder of a string token, the opening quote having
+    * already been read, decoding escape sequences into the token text
+    * as they are found. Runs of ordinary characters are copied straight
+    * into the token text. Only once an escape sequence is found is the
+    * token also copied as it appears in the input, into the raw text.
+    */
+   private void readString() throws JSONException, IOException {
+      for (;;) {
+         final int start = textLength;
+         copyStringCharacters();
+         if (escaped)
+            appendRaw(text, start, textLength - start);
+         final int c = read();
+         if (c == -1) {
+            final String errmsg = String
+                  .format(ERRMSG_UNTERMINATED_STRING, partialString());
+            log.trace(errmsg);
+            throw new JSONException(errmsg);
+         }
+         else if (c == '"') {
+            if (escaped)
+               appendRaw('"');
+            return;
+         }
+         else if (c == '\\') {
+            if (!escaped) {
+               escaped = true;
+               rawLength = 0;
+               appendRaw('"');
+               appendRaw(text, 0, textLength);
+            }
+            appendRaw('\\');
+            readEscapeSequence();
+         }
+         else if (c < ' ') {
+            final String errmsg = String.format(ERRMSG_CONTROL_CHAR, c);
+            log.trace(errmsg);
+            throw new JSONException(errmsg);
+         }
+         else {
+            unread();
+         }
+      }
+   }
+
+   /**
+    * Reads the character(s) following a backslash in a string and
+    * appends the character they stand for. Each <code>\\u</code>
+    * sequence stands for one UTF-16 unit, so a surrogate pair written
+    * as two sequences decodes to the same pair of units.
+    */
+   private void readEscapeSequence() throws JSONException, IOException {
+      final int c = read();
+      if (c == 'u') {
+         appendRaw(c);
+         int value = 0;
+         for (int hexDigitCount = 0; hexDigitCount < 4; hexDigitCount++) {
+            final int h = read();
+            if (!isHexDigit(h)) {
+               final String errmsg = String.format(
+                     ERRMSG_UNICODE_SHORT,
+                     hexDigitCount,
+                     partialString());
+               log.trace(errmsg);
+               throw new JSONException(errmsg);
+            }
+            appendRaw(h);
+            value = (value << 4) | Character.digit(h, 16);
+         }
+         append(value);
+      }
+      else if (isEscapedCharacter(c)) {
+         appendRaw(c);
+         append(unescape(c));
+      }
+      else {
+         final String errmsg = String
+               .format(ERRMSG_ESCAPE, c, partialString());
+         log.trace(errmsg);
+         throw new JSONException(errmsg);
+      }
+   }
+
+   /**
+    * Returns the character that a single-character escape sequence
+    * stands for
+    */
+   private static char unescape(int c) {
+      switch (c) {
+         case 'b':
+            return '\b';
+         case 'f':
+            return '\f';
+         case 'n':
+            return '\n';
+         case 'r':
+            return '\r';
+         case 't':
+            return '\t';
+         default:
+            return (char) c;
+      }
+   }
+
+   /**
+    * Appends a character to the raw text of a string
+    */
+   private void appendRaw(int c) {
+      if (raw == null)
+         raw = new char[Math.max(64, textLength * 2)];
+      else if (rawLength == raw.length)
+         raw = Arrays.copyOf(raw, rawLength * 2);
+      raw[rawLength++] = (char) c;
+   }
+
+   /**
+    * Appends characters to the raw text of a string
+    */
+   private void appendRaw(char[] chars, int start, int length) {
+      if (raw == null)
+         raw = new char[Math.max(64, rawLength + length)];
+      else if (rawLength + length > raw.length)
+         raw = Arrays
+               .copyOf(raw, Math.max(rawLength * 2, rawLength + length));
+      System.arraycopy(chars, start, raw, rawLength, length);
+      rawLength += length;
+   }
+
+   /**
+    * Returns the string read so far, as it appears in the input, for
+    * error messages
+    */
+   private String partialString() {
+      if (escaped)
+         return new String(raw, 0, rawLength);
+      return "\"" + new String(text, 0, textLength);
+   }
+
+   /**
+    * Returns the specified characters enclosed in quotes
+    */
+   private static String quote(char[] chars, int length) {
+      final char[] quoted = new char[length + 2];
+      quoted[0] = '"';
+      System.arraycopy(chars, 0, quoted, 1, length);
+      quoted[length + 1] = '"';
+      return new String(quoted);
+   }
+
+   /**
+    * Reads a numeric literal starting with the specified character,
+    * computing its value on the way if it is an integer that fits in a
+    * <code>long</code>, or if its <code>double</code> value can be
+    * computed exactly from its digits and exponent
+    */
+   private void readNumber(int c) throws JSONException, IOException {
+
+      // The integer value is accumulated as a negative number, so that
+      // Long.MIN_VALUE can be reached. The significand is accumulated
+      // from all the digits before the exponent, while it is small
+      // enough for a double to hold exactly.
+
+      final boolean negative = c == '-';
+      boolean exact = true;
+      long value = 0;
+      boolean fast = true;
+      long significand = 0;
+      int fractionDigits = 0;
+      boolean inFraction = false;
+      boolean inExponent = false;
+      boolean negativeExponent = false;
+      int exponent = 0;
+      for (;;) {
+         append(c);
+         if (c >= '0' && c <= '9') {
+            final int digit = c - '0';
+            if (inExponent) {
+               if (exponent < MAX_EXPONENT)
+                  exponent = exponent * 10 + digit;
+               else
+                  fast = false;
+            }
+            else {
+               if (!inFraction) {
+                  if (value < (Long.MIN_VALUE + digit) / 10)
+                     exact = false;
+                  else
+                     value = value * 10 - digit;
+               }
+               else {
+                  fractionDigits++;
+               }
+               significand = significand * 10 + digit;
+               if (significand > MAX_EXACT_SIGNIFICAND)
+                  fast = false;
+            }
+         }
+         else {
+            if (c != '-' || textLength > 1)
+               exact = false;
+            if (c == '.')
+               inFraction = true;
+            else if (c == 'e' || c == 'E')
+               inExponent = true;
+            else if (c == '-' && inExponent)
+               negativeExponent = true;
+         }
+         c = read();
+         if (c == -1)
+            break;
+         if (!isNumberCharacter(c)) {
+            unread();
+            break;
+         }
+      }
+      if (!JSONNumber.isNumberLiteral(text, 0, textLength)) {
+         final String errmsg = String
+               .format(ERRMSG_NUMBER, new String(text, 0, textLength));
+         log.trace(errmsg);
+         throw new JSONException(errmsg);
+      }
+      if (exact && !negative && value == Long.MIN_VALUE)
+         exact = false;
+      exactLong = exact;
+      longValue = negative
+            ? value
+            : -value;
+
+      // Scale the significand by the power of ten. Both are held
+      // exactly, so the one rounding gives the nearest double.
+
+      final int scale = (negativeExponent
+            ? -exponent
+            : exponent) - fractionDigits;
+      exactDouble = fast && Math.abs(scale) < POWERS_OF_TEN.length;
+      if (exactDouble) {
+         final double magnitude = scale < 0
+               ? significand / POWERS_OF_TEN[-scale]
+               : significand * POWERS_OF_TEN[scale];
+         doubleValue = negative
+               ? -magnitude
+               : magnitude;
+      }
+   }
+
+   /**
+    * Reads a literal (true, false, or null) starting with the specified
+    * character
+    */
+   private JSONTokenType readLiteral(int c)
+         throws JSONException, IOException {
+      append(c);
+      while ((c = read()) != -1) {
+         if (!Character.isLetter(c)) {
+            unread();
+            break;
+         }
+         append(c);
+      }
+      if (textEquals("true"))
+         return JSONTokenType.TRUE;
+      if (textEquals("false"))
+         return JSONTokenType.FALSE;
+      if (textEquals("null"))
+         return JSONTokenType.NULL;
+      final String errmsg = String
+            .format(ERRMSG_BAD_LITERAL, new String(text, 0, textLength));
+      log.trace(errmsg);
+      throw new JSONException(errmsg);
+   }
+
+   /**
+    * Skips the rest of a string, the opening quote having already been
+    * read
+    */
+   private void skipString() throws JSONException, IOException {
+      for (;;) {
+         final int c = read();
+         if (c == '"')
+            return;
+         if (c == -1 || (c == '\\' && read() == -1))
+            throw unterminatedValue();
+      }
+   }
+
+   /**
+    * Skips the rest of a number or literal
+    */
+   private void skipWord() throws JSONException, IOException {
+      int c;
+      while ((c = read()) != -1) {
+         if (!isNumberCharacter(c) && !Character.isLetter(c)) {
+            unread();
+            break;
+         }
+      }
+   }
+
+   /**
+    * Returns the exception for input that ends inside a skipped value
+    */
+   private JSONException unterminatedValue() {
+      log.trace(ERRMSG_UNTERMINATED_VALUE);
+      return new JSONException(ERRMSG_UNTERMINATED_VALUE);
+   }
+
+   /**
+    * Returns <code>true</code> if the token text is equal to the
+    * specified string
+    */
+   private boolean textEquals(String s) {
+      if (textLength != s.length())
+         return false;
+      for (int i = 0; i < textLength; i++) {
+         if (text[i] != s.charAt(i))
+            return false;
+      }
+      return true;
+   }
+}
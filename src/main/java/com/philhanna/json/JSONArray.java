@@ -1,14 +1,50 @@
 package com.philhanna.json;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
 
 import org.apache.log4j.Logger;
 
 /**
  * A JSON array.
+ * <p>
+ * While every element is a number, the elements are packed into an
+ * array of <code>long</code> values, or of <code>double</code> values
+ * once an element has a fraction or exponent, rather than kept as
+ * JSONValue objects. The first element that is not a number switches
+ * the array to an ordinary list.
+ * <p>
+ * The parser converts each number of a packed array as it reads it.
+ * The tokenizer computes the value of an integer, and of most other
+ * numbers with up to 15 significant digits, from the digits it reads;
+ * any other number is converted from its literal. A number whose value
+ * a <code>double</code> cannot reproduce, such as an integer above
+ * 2<sup>53</sup> in an array of doubles or a number too large for a
+ * <code>double</code>, is kept as a JSONNumber at its position, so
+ * that no digits are lost. Numbers added with {@link #add(JSONValue)}
+ * are packed only if they have already been converted; once the array
+ * is a list, the numbers the parser adds to it keep their literals and
+ * are converted only if they are used.
+ * <p>
+ * Packing trades objects for primitives. The elements of a packed
+ * array are created when they are asked for, so <code>get()</code> and
+ * the iterator return equal but not necessarily identical objects each
+ * time, and create a new object for each number outside the small
+ * integer cache. {@link #getLong(int)}, {@link #getDouble(int)},
+ * {@link #toLongArray()}, {@link #toDoubleArray()},
+ * {@link #longStream()} and {@link #doubleStream()} read numbers
+ * without creating any objects for the elements.
  */
 public class JSONArray extends JSONValue implements Iterable<JSONValue> {
 
@@ -23,6 +59,14 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
 
    private static final Logger log = Logger.getLogger(JSONArray.class);
 
+   /**
+    * Largest magnitude up to which every <code>long</code> can be held
+    * exactly in a <code>double</code>
+    */
+   private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+   private static final int INITIAL_CAPACITY = 10;
+
    // ====================================================================
    // Class methods
    // ====================================================================
@@ -46,8 +90,6 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
    public static JSONArray parseArray(JSONTokenizer tokenizer)
          throws JSONException, IOException {
 
-      log.debug("Entry");
-
       // Result
 
       final JSONArray array = new JSONArray();
@@ -59,7 +101,6 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
       // Parsing state
 
       State state = State.LOOKING_FOR_VALUE;
-      log.debug(String.format("Entering state %s", state));
 
       // Read tokens until the closing bracket is found
 
@@ -67,9 +108,7 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
 
          // Read the next token
 
-         final String token = tokenizer.readToken();
-         log.debug(
-               String.format("Received token [%s] in state %s", token, state));
+         final JSONTokenType token = tokenizer.nextToken();
          if (token == null)
             break;
 
@@ -78,41 +117,31 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
          switch (state) {
 
             case LOOKING_FOR_VALUE: {
-               if (token.equals("]")) {
-                  log.debug("Found closing bracket for array");
-                  log.debug("Exit");
+               if (token == JSONTokenType.END_ARRAY) {
+                  array.trimToSize();
                   return array;
                }
-               log.debug("Parsing value");
-               value = JSONValue.parse(token, tokenizer);
-               log.debug(String.format("Value is type %s", value.getType()));
-
-               array.add(value);
-               log.debug(
-                     String.format(
-                           "Added %s to array elements",
-                           value.getType()));
-
+               if (token != JSONTokenType.NUMBER
+                     || !array.addNumberToken(tokenizer)) {
+                  value = JSONValue.parse(token, tokenizer);
+                  array.add(value);
+               }
                state = State.LOOKING_FOR_COMMA;
-               log.debug(String.format("Entering state %s", state));
-
                break;
             }
 
             case LOOKING_FOR_COMMA: {
-               if (token.equals("]")) {
-                  log.debug("Found closing bracket for array");
-                  log.debug("Exit");
+               if (token == JSONTokenType.END_ARRAY) {
+                  array.trimToSize();
                   return array;
                }
-               if (token.equals(",")) {
-                  log.debug("Parsing comma");
+               if (token == JSONTokenType.COMMA) {
                   state = State.LOOKING_FOR_VALUE;
-                  log.debug(String.format("Entering state %s", state));
                }
                else {
-                  final String errmsg = String
-                        .format("Looking for comma but found %s", token);
+                  final String errmsg = String.format(
+                        "Looking for comma but found %s",
+                        tokenizer.getText());
                   log.debug(errmsg);
                   throw new JSONException(errmsg);
                }
@@ -120,7 +149,7 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
             }
          }
       }
-      log.debug("Exit");
+      array.trimToSize();
       return array;
    }
 
@@ -128,7 +157,19 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
    // Instance variables
    // ====================================================================
 
-   private final List<JSONValue> elements = new ArrayList<JSONValue>();
+   // The elements: either a list of values or, while every element is
+   // a number, a packed array of longs or of doubles. At most one of
+   // these is in use. For packed doubles, the bit set records which
+   // elements were integers, and the map holds the numbers that a
+   // double only approximates, by position; the array holds their
+   // approximations.
+
+   private ArrayList<JSONValue> elements;
+   private long[] longs;
+   private double[] doubles;
+   private BitSet integers;
+   private Map<Integer, JSONNumber> inexact;
+   private int count;
 
    // ====================================================================
    // Constructors
@@ -146,12 +187,36 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
    // ====================================================================
 
    /**
-    * Returns an iterator over the list of values.
+    * Returns an iterator over the list of values. Elements can be
+    * removed with the iterator only if the array is not packed.
     * @return an iterator over an ordered <code>List</code> of JSON
     *         values
     */
    public Iterator<JSONValue> iterator() {
-      return elements.iterator();
+      if (elements != null)
+         return elements.iterator();
+      if (count == 0)
+         return Collections.<JSONValue> emptyList().iterator();
+      return new Iterator<JSONValue>() {
+         private int i = 0;
+
+         @Override
+         public boolean hasNext() {
+            return i < count;
+         }
+
+         @Override
+         public JSONValue next() {
+            if (!hasNext())
+               throw new NoSuchElementException();
+            return get(i++);
+         }
+
+         @Override
+         public void remove() {
+            throw new UnsupportedOperationException();
+         }
+      };
    }
 
    /**
@@ -159,15 +224,227 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
     * @param element a JSONValue to be added to the array
     */
    public void add(JSONValue element) {
+      if (elements == null
+            && element instanceof JSONNumber
+            && ((JSONNumber) element).isConverted()
+            && addNumber((JSONNumber) element))
+         return;
+      if (elements == null)
+         unpack();
       elements.add(element);
    }
 
+   /**
+    * Adds the current number token of a tokenizer, if the array is
+    * packed or empty. No JSONNumber is kept unless a double cannot
+    * reproduce the number.
+    * @param tokenizer a tokenizer whose current token is a number
+    * @return <code>false</code> if the token was not added
+    */
+   boolean addNumberToken(JSONTokenizer tokenizer) {
+      if (elements != null || !(tokenizer instanceof AbstractJSONTokenizer))
+         return false;
+      final AbstractJSONTokenizer source = (AbstractJSONTokenizer) tokenizer;
+      if (source.hasLongValue())
+         addLong(source.getLongValue());
+      else if (source.hasDoubleValue())
+         addDouble(source.getDoubleValue());
+      else
+         addNumber(JSONNumber.valueOf(source.getText()));
+      return true;
+   }
+
+   /**
+    * Adds the elements of another array, copying packed numbers without
+    * creating objects for them
+    * @param array the array whose elements are added
+    */
+   void addAll(JSONArray array) {
+      if (elements != null || !array.isPacked()) {
+         for (final JSONValue element : array)
+            add(element);
+         return;
+      }
+      for (int i = 0; i < array.count; i++) {
+         if (array.longs != null)
+            addLong(array.longs[i]);
+         else if (array.inexact != null && array.inexact.containsKey(i))
+            addNumber(array.inexact.get(i));
+         else if (array.integers.get(i))
+            addLong((long) array.doubles[i]);
+         else
+            addDouble(array.doubles[i]);
+      }
+   }
+
+   /**
+    * Returns the element at the specified position in the array.
+    * @param index the position, starting from zero
+    * @return the JSONValue at that position
+    * @throws IndexOutOfBoundsException if there is no such element
+    */
+   public JSONValue get(int index) {
+      if (elements != null)
+         return elements.get(index);
+      checkIndex(index);
+      if (longs != null)
+         return JSONNumber.valueOf(longs[index]);
+      if (inexact != null && inexact.containsKey(index))
+         return inexact.get(index);
+      if (integers.get(index))
+         return JSONNumber.valueOf((long) doubles[index]);
+      return new JSONNumber(doubles[index]);
+   }
+
+   /**
+    * Returns the number at the specified position in the array as a
+    * <code>long</code>, without creating an object if the array is
+    * packed.
+    * @param index the position, starting from zero
+    * @return the number, converted as by {@link JSONNumber#getLong()}
+    * @throws IndexOutOfBoundsException if there is no such element
+    * @throws ClassCastException if the element is not a number
+    */
+   public long getLong(int index) {
+      if (longs != null) {
+         checkIndex(index);
+         return longs[index];
+      }
+      if (doubles != null) {
+         checkIndex(index);
+         if (inexact != null && inexact.containsKey(index))
+            return inexact.get(index).getLong();
+         return (long) doubles[index];
+      }
+      return ((JSONNumber) get(index)).getLong();
+   }
+
+   /**
+    * Returns the number at the specified position in the array as a
+    * <code>double</code>, without creating an object if the array is
+    * packed.
+    * @param index the position, starting from zero
+    * @return the number, converted as by {@link JSONNumber#getDouble()}
+    * @throws IndexOutOfBoundsException if there is no such element
+    * @throws ClassCastException if the element is not a number
+    */
+   public double getDouble(int index) {
+      if (doubles != null) {
+         checkIndex(index);
+         return doubles[index];
+      }
+      if (longs != null) {
+         checkIndex(index);
+         return longs[index];
+      }
+      return ((JSONNumber) get(index)).getDouble();
+   }
+
+   /**
+    * Returns the elements of an array of numbers as <code>long</code>
+    * values.
+    * @return a new array
+    * @throws ClassCastException if an element is not a number
+    */
+   public long[] toLongArray() {
+      if (longs != null)
+         return Arrays.copyOf(longs, count);
+      final long[] values = new long[size()];
+      for (int i = 0; i < values.length; i++)
+         values[i] = getLong(i);
+      return values;
+   }
+
+   /**
+    * Returns the elements of an array of numbers as <code>double</code>
+    * values.
+    * @return a new array
+    * @throws ClassCastException if an element is not a number
+    */
+   public double[] toDoubleArray() {
+      if (doubles != null)
+         return Arrays.copyOf(doubles, count);
+      final double[] values = new double[size()];
+      for (int i = 0; i < values.length; i++)
+         values[i] = getDouble(i);
+      return values;
+   }
+
+   /**
+    * Returns a stream of the elements of an array of numbers as
+    * <code>long</code> values. The stream reads a packed array of longs
+    * in place, so the array should not be changed while the stream is
+    * in use.
+    * @return a sequential stream
+    * @throws ClassCastException if an element is not a number
+    */
+   public LongStream longStream() {
+      if (longs != null)
+         return Arrays.stream(longs, 0, count);
+      return Arrays.stream(toLongArray());
+   }
+
+   /**
+    * Returns a stream of the elements of an array of numbers as
+    * <code>double</code> values. The stream reads a packed array in
+    * place, so the array should not be changed while the stream is in
+    * use.
+    * @return a sequential stream
+    * @throws ClassCastException if an element is not a number
+    */
+   public DoubleStream doubleStream() {
+      if (doubles != null)
+         return Arrays.stream(doubles, 0, count);
+      if (longs != null)
+         return Arrays.stream(longs, 0, count).asDoubleStream();
+      return Arrays.stream(toDoubleArray());
+   }
+
    /**
     * Returns the number of elements in the array.
     * @return the element count
     */
    public int size() {
-      return elements.size();
+      if (elements != null)
+         return elements.size();
+      return count;
+   }
+
+   /**
+    * Releases any space allocated beyond the elements already added,
+    * whether they are packed or in a list. The parser calls this when
+    * it reaches the end of the array.
+    */
+   public void trimToSize() {
+      if (elements != null)
+         elements.trimToSize();
+      else if (longs != null && count < longs.length)
+         longs = Arrays.copyOf(longs, count);
+      else if (doubles != null && count < doubles.length)
+         doubles = Arrays.copyOf(doubles, count);
+   }
+
+   /**
+    * Returns <code>true</code> if the elements are packed into an array
+    * of primitives
+    */
+   boolean isPacked() {
+      return longs != null || doubles != null;
+   }
+
+   /**
+    * Returns the JSON representation of the number at the specified
+    * position in a packed array, without creating the element
+    */
+   String numberToString(int index) {
+      checkIndex(index);
+      if (longs != null)
+         return Long.toString(longs[index]);
+      if (inexact != null && inexact.containsKey(index))
+         return inexact.get(index).toString();
+      if (integers.get(index))
+         return Long.toString((long) doubles[index]);
+      return JSONNumber.toString(doubles[index]);
    }
 
    @Override
@@ -179,13 +456,150 @@ public class JSONArray extends JSONValue implements Iterable<JSONValue> {
    public String toString() {
       final StringBuilder sb = new StringBuilder();
       sb.append("[");
-      for (int i = 0; i < elements.size(); i++) {
+      final boolean packed = isPacked();
+      for (int i = 0, n = size(); i < n; i++) {
          if (i > 0)
             sb.append(",");
-         sb.append(elements.get(i).toString());
+         sb.append(packed
+               ? numberToString(i)
+               : get(i).toString());
       }
       sb.append("]");
       final String output = sb.toString();
       return output;
    }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Appends a converted number to a packed array. Returns
+    * <code>false</code> if the number is held as a Number object that
+    * the array cannot reproduce, such as an <code>Integer</code>.
+    */
+   private boolean addNumber(JSONNumber number) {
+      if (number.holdsLong())
+         addLong(number.getLong());
+      else if (number.holdsDouble())
+         addDouble(number.getDouble());
+      else if (number.getNumber() instanceof BigInteger
+            || number.getNumber() instanceof BigDecimal)
+         addInexact(number);
+      else
+         return false;
+      return true;
+   }
+
+   /**
+    * Appends a long to a packed array, keeping it as a JSONNumber if the
+    * array holds doubles and a double cannot hold it exactly
+    */
+   private void addLong(long value) {
+      if (doubles != null) {
+         if (isExactDouble(value)) {
+            integers.set(count);
+            addDouble(value);
+         }
+         else {
+            addInexact(JSONNumber.valueOf(value));
+         }
+         return;
+      }
+      if (longs == null)
+         longs = new long[INITIAL_CAPACITY];
+      else if (count == longs.length)
+         longs = Arrays.copyOf(longs, grow(count));
+      longs[count++] = value;
+   }
+
+   /**
+    * Appends a double to a packed array, converting packed longs to
+    * doubles first
+    */
+   private void addDouble(double value) {
+      if (doubles == null)
+         packDoubles();
+      if (count == doubles.length)
+         doubles = Arrays.copyOf(doubles, grow(count));
+      doubles[count++] = value;
+   }
+
+   /**
+    * Appends a number that a double only approximates to a packed array
+    * of doubles, keeping the number itself as well
+    */
+   private void addInexact(JSONNumber number) {
+      if (inexact == null)
+         inexact = new HashMap<Integer, JSONNumber>();
+      inexact.put(count, number);
+      addDouble(number.getDouble());
+   }
+
+   /**
+    * Starts packing doubles, converting any packed longs. A long that a
+    * double cannot hold exactly is kept as a JSONNumber.
+    */
+   private void packDoubles() {
+      integers = new BitSet();
+      if (longs == null) {
+         doubles = new double[INITIAL_CAPACITY];
+         return;
+      }
+      doubles = new double[Math.max(longs.length, INITIAL_CAPACITY)];
+      for (int i = 0; i < count; i++) {
+         final long value = longs[i];
+         doubles[i] = value;
+         if (isExactDouble(value)) {
+            integers.set(i);
+         }
+         else {
+            if (inexact == null)
+               inexact = new HashMap<Integer, JSONNumber>();
+            inexact.put(i, JSONNumber.valueOf(value));
+         }
+      }
+      longs = null;
+   }
+
+   /**
+    * Moves any packed numbers into a list of values
+    */
+   private void unpack() {
+      final ArrayList<JSONValue> list = new ArrayList<JSONValue>(
+            Math.max(count + 1, INITIAL_CAPACITY));
+      for (int i = 0; i < count; i++)
+         list.add(get(i));
+      elements = list;
+      longs = null;
+      doubles = null;
+      integers = null;
+      inexact = null;
+      count = 0;
+   }
+
+   /**
+    * Throws an exception if an index is out of range of a packed array
+    */
+   private void checkIndex(int index) {
+      if (index < 0 || index >= count)
+         throw new IndexOutOfBoundsException(
+               String.format("Index %d, size %d", index, count));
+   }
+
+   /**
+    * Returns a larger capacity for a packed array, which may have been
+    * trimmed to its size
+    */
+   private static int grow(int capacity) {
+      return Math.max(capacity + (capacity >> 1), INITIAL_CAPACITY);
+   }
+
+   /**
+    * Returns <code>true</code> if a long can be held exactly in a
+    * double
+    */
+   private static boolean isExactDouble(long value) {
+      return value >= -MAX_EXACT_DOUBLE && value <= MAX_EXACT_DOUBLE;
+   }
 }
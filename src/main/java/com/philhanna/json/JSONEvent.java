@@ -0,0 +1,18 @@
+package com.philhanna.json;
+
+/**
+ * An enumeration of the parsing events returned by a
+ * {@link JSONEventReader}
+ */
+public enum JSONEvent {
+   START_OBJECT,
+   END_OBJECT,
+   START_ARRAY,
+   END_ARRAY,
+   FIELD_NAME,
+   VALUE_STRING,
+   VALUE_NUMBER,
+   VALUE_TRUE,
+   VALUE_FALSE,
+   VALUE_NULL,
+}
@@ -0,0 +1,471 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A pull parser that reports a JSON representation as a sequence of
+ * events, without building a tree of JSONValue objects. Memory use is
+ * proportional to the nesting depth, not the size of the input, so
+ * documents much larger than the heap can be processed.
+ * <p>
+ * Typical usage:
+ * 
+ * <pre>
+ * JSONEventReader reader = new JSONEventReader(in);
+ * JSONEvent event;
+ * while ((event = reader.next()) != null) {
+ *    switch (event) {
+ *       case FIELD_NAME:
+ *          String name = reader.getString();
+ *          ...
+ *    }
+ * }
+ * </pre>
+ * 
+ * The input may contain several top-level values one after another.
+ */
+public class JSONEventReader {
+
+   /**
+    * What the reader expects to find next
+    */
+   private static enum State {
+      VALUE,
+      VALUE_OR_END_ARRAY,
+      KEY,
+      KEY_OR_END_OBJECT,
+      COLON,
+      COMMA_OR_END,
+   }
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger.getLogger(JSONEventReader.class);
+
+   private static final String ERRMSG_UNEXPECTED = "Looking for %s but found %s";
+   private static final String ERRMSG_EOF = "Unexpected end of input looking for %s";
+   private static final String ERRMSG_NO_VALUE = "Current event %s is not a value";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final JSONTokenizer tokenizer;
+   private State state = State.VALUE;
+   private JSONEvent event;
+
+   // Stack of enclosing containers: true for an object, false for an
+   // array
+
+   private boolean[] stack = new boolean[16];
+   private int depth;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new event reader for the specified input reader
+    * @param in an input reader
+    */
+   public JSONEventReader(Reader in) {
+      this(new DefaultJSONTokenizer(in));
+   }
+
+   /**
+    * Creates a new event reader for the specified UTF-8 input stream
+    * @param in an input stream
+    */
+   public JSONEventReader(InputStream in) {
+      this(new UTF8JSONTokenizer(in));
+   }
+
+   /**
+    * Creates a new event reader for the tokens provided by the
+    * specified tokenizer
+    * @param tokenizer the source of tokens
+    */
+   public JSONEventReader(JSONTokenizer tokenizer) {
+      this.tokenizer = tokenizer;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Advances to the next event
+    * @return the event, or <code>null</code> at end of input
+    * @throws JSONException if the JSON syntax is invalid
+    * @throws IOException if an I/O error occurs
+    */
+   public JSONEvent next() throws JSONException, IOException {
+      for (;;) {
+         final JSONTokenType token = tokenizer.nextToken();
+         if (token == null) {
+            if (depth > 0 || state != State.VALUE)
+               throw error(ERRMSG_EOF, expected());
+            event = null;
+            return event;
+         }
+         switch (state) {
+
+            case VALUE_OR_END_ARRAY:
+               if (token == JSONTokenType.END_ARRAY)
+                  return endContainer(JSONEvent.END_ARRAY);
+               return startValue(token);
+
+            case VALUE:
+               return startValue(token);
+
+            case KEY_OR_END_OBJECT:
+               if (token == JSONTokenType.END_OBJECT)
+                  return endContainer(JSONEvent.END_OBJECT);
+               return readKey(token);
+
+            case KEY:
+               return readKey(token);
+
+            case COLON:
+               if (token != JSONTokenType.COLON)
+                  throw unexpected();
+               state = State.VALUE;
+               break;
+
+            case COMMA_OR_END:
+               if (token == JSONTokenType.COMMA) {
+                  state = stack[depth - 1]
+                        ? State.KEY
+                        : State.VALUE;
+                  break;
+               }
+               if (token == JSONTokenType.END_OBJECT && stack[depth - 1])
+                  return endContainer(JSONEvent.END_OBJECT);
+               if (token == JSONTokenType.END_ARRAY && !stack[depth - 1])
+                  return endContainer(JSONEvent.END_ARRAY);
+               throw unexpected();
+         }
+      }
+   }
+
+   /**
+    * Returns the current event, i.e., the value most recently returned
+    * by {@link #next()}
+    * @return the event, or <code>null</code> at end of input
+    */
+   public JSONEvent getEvent() {
+      return event;
+   }
+
+   /**
+    * Returns the nesting depth of the current event. Top-level values
+    * have a depth of zero; the members of a top-level object or array
+    * have a depth of one, and so on. A <code>START_OBJECT</code> or
+    * <code>START_ARRAY</code> event has the depth of the container, and
+    * so does the matching end event.
+    * @return the depth
+    */
+   public int getDepth() {
+      if (event == null)
+         return depth;
+      switch (event) {
+         case START_OBJECT:
+         case START_ARRAY:
+            return depth - 1;
+         default:
+            return depth;
+      }
+   }
+
+   /**
+    * Returns the field name for a <code>FIELD_NAME</code> event or the
+    * string value for a <code>VALUE_STRING</code> event
+    * @return the decoded Java string
+    * @throws JSONException if the current event has no string value
+    */
+   public String getString() throws JSONException {
+      if (event != JSONEvent.FIELD_NAME && event != JSONEvent.VALUE_STRING)
+         throw error(ERRMSG_NO_VALUE, event);
+      if (event == JSONEvent.FIELD_NAME
+            && tokenizer instanceof AbstractJSONTokenizer)
+         return ((AbstractJSONTokenizer) tokenizer).getStreamKey();
+      return JSONString.getString(tokenizer);
+   }
+
+   /**
+    * Returns the numeric value for a <code>VALUE_NUMBER</code> event
+    * @return the number
+    * @throws JSONException if the current event is not a number
+    */
+   public Number getNumber() throws JSONException {
+      if (event != JSONEvent.VALUE_NUMBER)
+         throw error(ERRMSG_NO_VALUE, event);
+      return JSONNumber.decode(tokenizer.getText());
+   }
+
+   /**
+    * Returns the text of the current token as it appears in the input
+    * @return the token text
+    */
+   public String getText() {
+      return tokenizer.getText();
+   }
+
+   /**
+    * Skips a value without decoding it. If the current event is
+    * <code>FIELD_NAME</code>, the member value is skipped, and the
+    * reader is left positioned on the event that ends it: a value event
+    * or the matching <code>END_OBJECT</code> or <code>END_ARRAY</code>.
+    * If the current event is <code>START_OBJECT</code> or
+    * <code>START_ARRAY</code>, the rest of the object or array is
+    * skipped, and the reader is left positioned on the matching end
+    * event. Otherwise nothing is done.
+    * <p>
+    * When the tokenizer is one of the tokenizers in this package, the
+    * skipped input is only scanned for brackets and string quotes, so a
+    * syntax error inside it may go unnoticed. The value of a skipped
+    * string or number is not available.
+    * @throws JSONException if the JSON syntax is invalid
+    * @throws IOException if an I/O error occurs
+    */
+   public void skipValue() throws JSONException, IOException {
+      if (event == JSONEvent.FIELD_NAME) {
+         if (!(tokenizer instanceof AbstractJSONTokenizer)) {
+            next();
+            skipValue();
+            return;
+         }
+         final JSONTokenType colon = tokenizer.nextToken();
+         if (colon == null)
+            throw error(ERRMSG_EOF, expected());
+         if (colon != JSONTokenType.COLON)
+            throw unexpected();
+         state = State.VALUE;
+         final JSONTokenType token = ((AbstractJSONTokenizer) tokenizer)
+               .skipValue();
+         if (token == null)
+            throw error(ERRMSG_EOF, expected());
+         switch (startValue(token)) {
+            case START_OBJECT:
+               endContainer(JSONEvent.END_OBJECT);
+               break;
+            case START_ARRAY:
+               endContainer(JSONEvent.END_ARRAY);
+               break;
+            default:
+               break;
+         }
+         return;
+      }
+      if (event != JSONEvent.START_OBJECT && event != JSONEvent.START_ARRAY)
+         return;
+      final JSONEvent endEvent = event == JSONEvent.START_OBJECT
+            ? JSONEvent.END_OBJECT
+            : JSONEvent.END_ARRAY;
+      if (tokenizer instanceof AbstractJSONTokenizer) {
+         ((AbstractJSONTokenizer) tokenizer).skipContainer();
+         endContainer(endEvent);
+      }
+      else {
+         final int depth = getDepth();
+         while (next() != null && getDepth() > depth)
+            ;
+      }
+   }
+
+   /**
+    * Returns the current value as a JSONValue. For a
+    * <code>START_OBJECT</code> or <code>START_ARRAY</code> event, the
+    * rest of the object or array is read, and the reader is left
+    * positioned on the matching <code>END_OBJECT</code> or
+    * <code>END_ARRAY</code> event.
+    * @return a JSONValue of the appropriate type
+    * @throws JSONException if the current event does not start a value
+    *         or the JSON syntax is invalid
+    * @throws IOException if an I/O error occurs
+    */
+   public JSONValue readValue() throws JSONException, IOException {
+      if (!(tokenizer instanceof AbstractJSONTokenizer))
+         return buildValue();
+
+      // The keys of the value are shared while it is built, and then
+      // forgotten, so that reading many values keeps no keys
+
+      final AbstractJSONTokenizer source = (AbstractJSONTokenizer) tokenizer;
+      try {
+         return buildValue();
+      }
+      finally {
+         source.endParse();
+      }
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Builds the current value, as described for {@link #readValue()}
+    */
+   private JSONValue buildValue() throws JSONException, IOException {
+      if (event == null)
+         throw error(ERRMSG_NO_VALUE, event);
+      switch (event) {
+         case START_OBJECT: {
+            final JSONObject object = new JSONObject();
+            while (next() != JSONEvent.END_OBJECT) {
+               final String key = tokenizer instanceof AbstractJSONTokenizer
+                     ? ((AbstractJSONTokenizer) tokenizer).getKey()
+                     : getString();
+               next();
+               object.put(key, buildValue());
+            }
+            object.trimToSize();
+            return object;
+         }
+         case START_ARRAY: {
+            final JSONArray array = new JSONArray();
+            while (next() != JSONEvent.END_ARRAY) {
+               if (event != JSONEvent.VALUE_NUMBER
+                     || !array.addNumberToken(tokenizer))
+                  array.add(buildValue());
+            }
+            array.trimToSize();
+            return array;
+         }
+         case VALUE_STRING:
+            return new JSONString(JSONString.getString(tokenizer));
+         case VALUE_NUMBER:
+            return JSONNumber.valueOf(tokenizer.getText());
+         case VALUE_TRUE:
+            return JSONTrue.VALUE;
+         case VALUE_FALSE:
+            return JSONFalse.VALUE;
+         case VALUE_NULL:
+            return JSONNull.VALUE;
+         default:
+            throw error(ERRMSG_NO_VALUE, event);
+      }
+   }
+
+   /**
+    * Returns the event for a token that starts a value
+    */
+   private JSONEvent startValue(JSONTokenType token) throws JSONException {
+      switch (token) {
+         case START_OBJECT:
+            push(true);
+            state = State.KEY_OR_END_OBJECT;
+            event = JSONEvent.START_OBJECT;
+            return event;
+         case START_ARRAY:
+            push(false);
+            state = State.VALUE_OR_END_ARRAY;
+            event = JSONEvent.START_ARRAY;
+            return event;
+         case STRING:
+            event = JSONEvent.VALUE_STRING;
+            break;
+         case NUMBER:
+            event = JSONEvent.VALUE_NUMBER;
+            break;
+         case TRUE:
+            event = JSONEvent.VALUE_TRUE;
+            break;
+         case FALSE:
+            event = JSONEvent.VALUE_FALSE;
+            break;
+         case NULL:
+            event = JSONEvent.VALUE_NULL;
+            break;
+         default:
+            throw unexpected();
+      }
+      endValue();
+      return event;
+   }
+
+   /**
+    * Reads the name of an object member
+    */
+   private JSONEvent readKey(JSONTokenType token) throws JSONException {
+      if (token != JSONTokenType.STRING)
+         throw unexpected();
+      state = State.COLON;
+      event = JSONEvent.FIELD_NAME;
+      return event;
+   }
+
+   /**
+    * Closes the innermost container
+    */
+   private JSONEvent endContainer(JSONEvent endEvent) {
+      depth--;
+      endValue();
+      event = endEvent;
+      return event;
+   }
+
+   /**
+    * Sets the state following a complete value
+    */
+   private void endValue() {
+      state = depth == 0
+            ? State.VALUE
+            : State.COMMA_OR_END;
+   }
+
+   /**
+    * Opens a new container
+    */
+   private void push(boolean isObject) {
+      if (depth == stack.length)
+         stack = Arrays.copyOf(stack, depth * 2);
+      stack[depth++] = isObject;
+   }
+
+   /**
+    * Returns a description of what the reader expects next
+    */
+   private String expected() {
+      switch (state) {
+         case VALUE_OR_END_ARRAY:
+            return "value or ]";
+         case KEY:
+            return "key";
+         case KEY_OR_END_OBJECT:
+            return "key or }";
+         case COLON:
+            return "colon";
+         case COMMA_OR_END:
+            return stack[depth - 1]
+                  ? "comma or }"
+                  : "comma or ]";
+         default:
+            return "value";
+      }
+   }
+
+   /**
+    * Returns the exception for an unexpected token
+    */
+   private JSONException unexpected() {
+      return error(ERRMSG_UNEXPECTED, expected(), tokenizer.getText());
+   }
+
+   /**
+    * Returns a new exception with a formatted detail message
+    */
+   private JSONException error(String format, Object... args) {
+      final String errmsg = String.format(format, args);
+      log.debug(errmsg);
+      return new JSONException(errmsg);
+   }
+}
@@ -0,0 +1,357 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Extracts the values at a set of paths from a JSON representation in a
+ * single pass, without building a tree for the rest of the document.
+ * Paths are written as JSON pointers (RFC 6901), such as
+ * <code>/user/id</code> or <code>/items/0/price</code>, except that a
+ * segment consisting of <code>*</code> matches every member of an object
+ * or every element of an array. The empty path matches the whole
+ * document.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ * JSONExtractor extractor = new JSONExtractor();
+ * extractor.add("/user/id");
+ * extractor.add("/items/*&#47;price");
+ * Map&lt;String, List&lt;JSONValue&gt;&gt; results = extractor.extract(in);
+ * List&lt;JSONValue&gt; prices = results.get("/items/*&#47;price");
+ * </pre>
+ *
+ * The paths are compiled into a trie, so that each member of the input
+ * is compared with all the paths at once. Members that cannot lead to a
+ * match are skipped, and a JSONValue is built only for a matching
+ * value.
+ */
+public class JSONExtractor {
+
+   /**
+    * A node in the trie of paths
+    */
+   private static class Node {
+
+      // Children by object key or array index, and the child for "*"
+
+      Map<String, Node> children;
+      Node wildcard;
+
+      // The path that ends at this node, if any
+
+      String path;
+
+      /**
+       * Returns the child for the specified segment, creating it if
+       * necessary
+       */
+      Node getChild(String segment) {
+         if (segment.equals("*")) {
+            if (wildcard == null)
+               wildcard = new Node();
+            return wildcard;
+         }
+         if (children == null)
+            children = new HashMap<String, Node>();
+         Node child = children.get(segment);
+         if (child == null) {
+            child = new Node();
+            children.put(segment, child);
+         }
+         return child;
+      }
+   }
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger.getLogger(JSONExtractor.class);
+
+   private static final String ERRMSG_NO_SLASH = "[%s] is not a valid path because it does not start with /";
+   private static final String ERRMSG_BAD_ESCAPE = "[%s] is not a valid path because ~ is not followed by 0 or 1";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final Node root = new Node();
+   private final List<String> paths = new ArrayList<String>();
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new extractor with no paths
+    */
+   public JSONExtractor() {
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Adds a path to be extracted
+    * @param path a JSON pointer, in which a <code>*</code> segment
+    *        matches anything
+    * @throws JSONException if the path is not a valid JSON pointer
+    */
+   public void add(String path) throws JSONException {
+      Node node = root;
+      if (!path.isEmpty()) {
+         if (!path.startsWith("/")) {
+            final String errmsg = String.format(ERRMSG_NO_SLASH, path);
+            log.debug(errmsg);
+            throw new JSONException(errmsg);
+         }
+         for (final String segment : path.substring(1).split("/", -1))
+            node = node.getChild(unescape(segment, path));
+      }
+      if (node.path == null) {
+         node.path = path;
+         paths.add(path);
+      }
+   }
+
+   /**
+    * Extracts the values at the paths from a JSON representation read
+    * from a <code>Reader</code>
+    * @param reader a <code>Reader</code> containing a JSON
+    *        representation
+    * @return a map from each path, in the order they were added, to a
+    *         list of the values found at that path, in document order
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if an I/O error occurs
+    */
+   public Map<String, List<JSONValue>> extract(Reader reader)
+         throws JSONException, IOException {
+      return extract(new DefaultJSONTokenizer(reader));
+   }
+
+   /**
+    * Extracts the values at the paths from a UTF-8 encoded JSON
+    * representation read from an <code>InputStream</code>
+    * @param stream an <code>InputStream</code> containing a JSON
+    *        representation
+    * @return a map from each path, in the order they were added, to a
+    *         list of the values found at that path, in document order
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if an I/O error occurs
+    */
+   public Map<String, List<JSONValue>> extract(InputStream stream)
+         throws JSONException, IOException {
+      return extract(new UTF8JSONTokenizer(stream));
+   }
+
+   /**
+    * Extracts the values at the paths from the first JSON value in the
+    * tokens provided by a tokenizer
+    * @param tokenizer the source of tokens
+    * @return a map from each path, in the order they were added, to a
+    *         list of the values found at that path, in document order
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if an I/O error occurs
+    */
+   public Map<String, List<JSONValue>> extract(JSONTokenizer tokenizer)
+         throws JSONException, IOException {
+      final Map<String, List<JSONValue>> results = new LinkedHashMap<String, List<JSONValue>>();
+      for (final String path : paths)
+         results.put(path, new ArrayList<JSONValue>());
+      final JSONEventReader reader = new JSONEventReader(tokenizer);
+      if (reader.next() != null)
+         extract(reader, Collections.singletonList(root), results);
+      return results;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Extracts matches from the value at which the reader is positioned,
+    * leaving the reader at the end of the value
+    * @param nodes the trie nodes reached by the path to the value
+    */
+   private void extract(
+         JSONEventReader reader,
+         List<Node> nodes,
+         Map<String, List<JSONValue>> results)
+         throws JSONException, IOException {
+
+      if (nodes.isEmpty()) {
+         reader.skipValue();
+         return;
+      }
+
+      // If a path ends here, build the value and match any longer
+      // paths against the tree
+
+      for (final Node node : nodes) {
+         if (node.path != null) {
+            final JSONValue value = reader.readValue();
+            for (final Node n : nodes)
+               collect(n, value, results);
+            return;
+         }
+      }
+
+      // Otherwise look for matches among the members or elements
+
+      final boolean needsName = needsName(nodes);
+      switch (reader.getEvent()) {
+         case START_OBJECT:
+            while (reader.next() != JSONEvent.END_OBJECT) {
+               final String key = needsName
+                     ? reader.getString()
+                     : null;
+               final List<Node> selected = select(nodes, key);
+               if (selected.isEmpty()) {
+                  reader.skipValue();
+                  continue;
+               }
+               reader.next();
+               extract(reader, selected, results);
+            }
+            break;
+         case START_ARRAY:
+            for (int i = 0; reader.next() != JSONEvent.END_ARRAY; i++) {
+               final String index = needsName
+                     ? String.valueOf(i)
+                     : null;
+               extract(reader, select(nodes, index), results);
+            }
+            break;
+         default:
+            // A scalar cannot match a longer path
+            break;
+      }
+   }
+
+   /**
+    * Adds a value and anything inside it to the results of the paths
+    * that match them
+    * @param node the trie node reached by the path to the value
+    */
+   private void collect(
+         Node node,
+         JSONValue value,
+         Map<String, List<JSONValue>> results) {
+      if (node.path != null)
+         results.get(node.path).add(value);
+      if (node.children == null && node.wildcard == null)
+         return;
+      final List<Node> nodes = Collections.singletonList(node);
+      switch (value.getType()) {
+         case OBJECT: {
+            final JSONObject object = (JSONObject) value;
+            for (final String key : object.keySet()) {
+               for (final Node child : select(nodes, key))
+                  collect(child, object.get(key), results);
+            }
+            break;
+         }
+         case ARRAY: {
+            final JSONArray array = (JSONArray) value;
+            int i = 0;
+            for (final JSONValue element : array) {
+               for (final Node child : select(nodes, String.valueOf(i++)))
+                  collect(child, element, results);
+            }
+            break;
+         }
+         default:
+            break;
+      }
+   }
+
+   // ====================================================================
+   // Private class methods
+   // ====================================================================
+
+   /**
+    * Returns <code>true</code> if any of the nodes has a child for a
+    * specific key or index
+    */
+   private static boolean needsName(List<Node> nodes) {
+      for (final Node node : nodes) {
+         if (node.children != null)
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Returns the children of the nodes that match a member key or
+    * element index
+    * @param name the key or index, or <code>null</code> if only
+    *        wildcards can match
+    */
+   private static List<Node> select(List<Node> nodes, String name) {
+      List<Node> selected = Collections.emptyList();
+      for (final Node node : nodes) {
+         if (name != null && node.children != null) {
+            final Node child = node.children.get(name);
+            if (child != null)
+               selected = add(selected, child);
+         }
+         if (node.wildcard != null)
+            selected = add(selected, node.wildcard);
+      }
+      return selected;
+   }
+
+   /**
+    * Adds a node to a list, replacing the shared empty list with a new
+    * one
+    */
+   private static List<Node> add(List<Node> list, Node node) {
+      if (list.isEmpty())
+         list = new ArrayList<Node>(2);
+      list.add(node);
+      return list;
+   }
+
+   /**
+    * Replaces the escape sequences ~1 and ~0 in a path segment with the
+    * characters / and ~
+    */
+   private static String unescape(String segment, String path)
+         throws JSONException {
+      if (segment.indexOf('~') < 0)
+         return segment;
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0, n = segment.length(); i < n; i++) {
+         final char c = segment.charAt(i);
+         if (c != '~') {
+            sb.append(c);
+            continue;
+         }
+         final char e = i + 1 < n
+               ? segment.charAt(++i)
+               : 0;
+         if (e == '0')
+            sb.append('~');
+         else if (e == '1')
+            sb.append('/');
+         else {
+            final String errmsg = String.format(ERRMSG_BAD_ESCAPE, path);
+            log.debug(errmsg);
+            throw new JSONException(errmsg);
+         }
+      }
+      return sb.toString();
+   }
+}
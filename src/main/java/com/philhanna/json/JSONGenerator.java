@@ -0,0 +1,474 @@
+package com.philhanna.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes a JSON representation one token at a time, without building a
+ * tree of values first. The output is buffered, escaped and formatted
+ * exactly as by {@link JSONWriter}, and the generator checks that the
+ * calls make one well-formed value.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ * JSONGenerator generator = new JSONGenerator(out);
+ * generator.writeStartArray();
+ * while (cursor.next()) {
+ *    generator.writeStartObject();
+ *    generator.writeFieldName("id");
+ *    generator.writeNumber(cursor.getLong(1));
+ *    generator.writeFieldName("name");
+ *    generator.writeString(cursor.getString(2));
+ *    generator.writeEndObject();
+ * }
+ * generator.writeEndArray();
+ * generator.close();
+ * </pre>
+ */
+public class JSONGenerator extends JSONOutput implements Flushable, Closeable {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger.getLogger(JSONGenerator.class);
+
+   // Kinds of open container
+
+   private static final byte OBJECT = 1;
+   private static final byte ARRAY = 2;
+
+   private static final String ERRMSG_FIELD_NAME = "Expected a field name in an object but got %s";
+   private static final String ERRMSG_VALUE_IN_OBJECT = "Expected a value after field name but got %s";
+   private static final String ERRMSG_NOT_IN_OBJECT = "%s is only allowed in an object";
+   private static final String ERRMSG_NOT_IN_ARRAY = "%s is only allowed in an array";
+   private static final String ERRMSG_COMPLETE = "A complete value has already been written";
+   private static final String ERRMSG_NOT_FINITE = "%s is not a valid JSON number";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   // The target, which is closed by close() if it is closeable
+
+   private final Object target;
+
+   // The kinds of the open containers, innermost last
+
+   private byte[] containers = new byte[16];
+   private int level;
+
+   // True if the current object has a field name waiting for its value,
+   // if the current container has no members yet, and if the top-level
+   // value is complete
+
+   private boolean fieldNamed;
+   private boolean empty;
+   private boolean complete;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new generator that writes characters to a target, such
+    * as a <code>Writer</code> or <code>StringBuilder</code>
+    * @param out the target
+    */
+   public JSONGenerator(Appendable out) {
+      this.target = out;
+      setTarget(out);
+   }
+
+   /**
+    * Creates a new generator that writes to an output stream, encoded
+    * in UTF-8
+    * @param out the output stream
+    */
+   public JSONGenerator(OutputStream out) {
+      this.target = out;
+      setTarget(ByteBuffer.allocate(BYTE_BUFFER_SIZE), null, out);
+   }
+
+   /**
+    * Creates a new generator that writes to a channel, encoded in UTF-8
+    * into a buffer that is sent to the channel each time it fills. Any
+    * bytes already in the buffer, before its position, are sent first.
+    * @param buffer a heap or direct buffer of at least two bytes
+    * @param out the channel
+    */
+   public JSONGenerator(ByteBuffer buffer, WritableByteChannel out) {
+      this.target = out;
+      setTarget(buffer, out, null);
+   }
+
+   /**
+    * Creates a new generator that writes into the remaining space of a
+    * buffer, encoded in UTF-8. A
+    * <code>java.nio.BufferOverflowException</code> is thrown by the
+    * call that overflows the buffer. The position of the buffer is
+    * advanced past the output when the generator is flushed.
+    * @param buffer a heap or direct buffer
+    */
+   public JSONGenerator(ByteBuffer buffer) {
+      this.target = null;
+      setTarget(buffer, null, null);
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns <code>true</code> if the pretty attribute is true
+    * @return the pretty attribute
+    */
+   public boolean isPretty() {
+      return pretty;
+   }
+
+   /**
+    * Sets the pretty attribute. It should be set before anything is
+    * written.
+    * @param pretty the pretty to set
+    */
+   public void setPretty(boolean pretty) {
+      this.pretty = pretty;
+   }
+
+   /**
+    * Writes the start of an object
+    * @throws JSONException if a value is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeStartObject() throws JSONException, IOException {
+      try {
+         beforeValue("start of object");
+         printOpenBracket('{');
+         push(OBJECT);
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+   }
+
+   /**
+    * Writes the end of the current object
+    * @throws JSONException if the current container is not an object or
+    *         a field name is waiting for its value
+    * @throws IOException if the target throws an exception
+    */
+   public void writeEndObject() throws JSONException, IOException {
+      try {
+         pop(OBJECT, "End of object");
+         printCloseBracket('}');
+         afterValue();
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+   }
+
+   /**
+    * Writes the start of an array
+    * @throws JSONException if a value is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeStartArray() throws JSONException, IOException {
+      try {
+         beforeValue("start of array");
+         printOpenBracket('[');
+         push(ARRAY);
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+   }
+
+   /**
+    * Writes the end of the current array
+    * @throws JSONException if the current container is not an array
+    * @throws IOException if the target throws an exception
+    */
+   public void writeEndArray() throws JSONException, IOException {
+      try {
+         pop(ARRAY, "End of array");
+         printCloseBracket(']');
+         afterValue();
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+   }
+
+   /**
+    * Writes the name of a member of the current object. The member
+    * value must be written next.
+    * @param name the name
+    * @throws JSONException if the current container is not an object or
+    *         a field name is already waiting for its value
+    * @throws IOException if the target throws an exception
+    */
+   public void writeFieldName(String name) throws JSONException, IOException {
+      if (level == 0 || containers[level - 1] != OBJECT) {
+         final String errmsg = String
+               .format(ERRMSG_NOT_IN_OBJECT, "Field name");
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
+      }
+      if (fieldNamed) {
+         final String errmsg = String
+               .format(ERRMSG_VALUE_IN_OBJECT, "field name " + name);
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
+      }
+      try {
+         if (!empty)
+            printComma();
+         printIndent();
+         printString(name);
+         printColon();
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+      empty = false;
+      fieldNamed = true;
+   }
+
+   /**
+    * Writes a string
+    * @param value the Java string, which is escaped as necessary, or
+    *        <code>null</code> to write a JSON null
+    * @throws JSONException if a value is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeString(String value) throws JSONException, IOException {
+      if (value == null) {
+         writeNull();
+         return;
+      }
+      try {
+         beforeValue("string");
+         printString(value);
+         afterValue();
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+   }
+
+   /**
+    * Writes an integer
+    * @param value the number
+    * @throws JSONException if a value is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeNumber(long value) throws JSONException, IOException {
+      writeLiteral("number", Long.toString(value));
+   }
+
+   /**
+    * Writes a floating point number, without a fraction if it is a
+    * whole number
+    * @param value the number
+    * @throws JSONException if the number is infinite or NaN, or a value
+    *         is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeNumber(double value) throws JSONException, IOException {
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+         final String errmsg = String.format(ERRMSG_NOT_FINITE, value);
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
+      }
+      writeLiteral("number", JSONNumber.toString(value));
+   }
+
+   /**
+    * Writes a number of any class, such as a <code>BigDecimal</code>. A
+    * <code>BigDecimal</code> or <code>BigInteger</code> is written as
+    * its <code>toString()</code> returns it, with all its digits.
+    * @param value the number, or <code>null</code> to write a JSON null
+    * @throws JSONException if the number is infinite or NaN, or a value
+    *         is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeNumber(Number value) throws JSONException, IOException {
+      if (value == null) {
+         writeNull();
+         return;
+      }
+      if (value instanceof Double || value instanceof Float) {
+         writeNumber(value.doubleValue());
+         return;
+      }
+      if (value instanceof Long) {
+         writeNumber(value.longValue());
+         return;
+      }
+      if (value instanceof BigDecimal || value instanceof BigInteger) {
+         writeLiteral("number", value.toString());
+         return;
+      }
+      writeLiteral("number", new JSONNumber(value).toString());
+   }
+
+   /**
+    * Writes <code>true</code> or <code>false</code>
+    * @param value the value
+    * @throws JSONException if a value is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeBoolean(boolean value) throws JSONException, IOException {
+      writeLiteral("boolean", value
+            ? JSONTrue.VALUE.toString()
+            : JSONFalse.VALUE.toString());
+   }
+
+   /**
+    * Writes <code>null</code>
+    * @throws JSONException if a value is not allowed here
+    * @throws IOException if the target throws an exception
+    */
+   public void writeNull() throws JSONException, IOException {
+      writeLiteral("null", JSONNull.VALUE.toString());
+   }
+
+   /**
+    * Returns the number of characters written so far, including any
+    * that are still buffered
+    * @return the number of characters
+    */
+   public long getCharsWritten() {
+      return getCharsOutput();
+   }
+
+   /**
+    * Passes the buffered output to the target and flushes the target if
+    * it is flushable
+    * @throws IOException if the target throws an exception
+    */
+   @Override
+   public void flush() throws IOException {
+      try {
+         flushOutput();
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+      if (target instanceof Flushable)
+         ((Flushable) target).flush();
+   }
+
+   /**
+    * Flushes the generator and closes the target if it is closeable
+    * @throws IOException if the target throws an exception
+    */
+   @Override
+   public void close() throws IOException {
+      flush();
+      if (target instanceof Closeable)
+         ((Closeable) target).close();
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Writes a scalar whose text needs no escaping
+    */
+   private void writeLiteral(String what, String text)
+         throws JSONException, IOException {
+      try {
+         beforeValue(what);
+         print(text);
+         afterValue();
+      }
+      catch (OutputException e) {
+         throw e.getIOException();
+      }
+   }
+
+   /**
+    * Checks that a value may be written, and writes the comma and
+    * indentation that come before it in an array
+    */
+   private void beforeValue(String what) throws JSONException {
+      if (level == 0) {
+         if (complete) {
+            log.debug(ERRMSG_COMPLETE);
+            throw new JSONException(ERRMSG_COMPLETE);
+         }
+         return;
+      }
+      if (containers[level - 1] == OBJECT) {
+         if (!fieldNamed) {
+            final String errmsg = String.format(ERRMSG_FIELD_NAME, what);
+            log.debug(errmsg);
+            throw new JSONException(errmsg);
+         }
+         fieldNamed = false;
+         return;
+      }
+      if (!empty)
+         printComma();
+      printIndent();
+      empty = false;
+   }
+
+   /**
+    * Notes that a value has been written
+    */
+   private void afterValue() {
+      if (level == 0)
+         complete = true;
+   }
+
+   /**
+    * Opens a container
+    */
+   private void push(byte container) {
+      if (level == containers.length) {
+         final byte[] newContainers = new byte[2 * level];
+         System.arraycopy(containers, 0, newContainers, 0, level);
+         containers = newContainers;
+      }
+      containers[level++] = container;
+      empty = true;
+   }
+
+   /**
+    * Closes the current container, which must be of the specified kind.
+    * The enclosing container, if any, is not empty, since it holds the
+    * container being closed.
+    */
+   private void pop(byte container, String what) throws JSONException {
+      if (level == 0 || containers[level - 1] != container) {
+         final String errmsg = String.format(
+               container == OBJECT
+                     ? ERRMSG_NOT_IN_OBJECT
+                     : ERRMSG_NOT_IN_ARRAY,
+               what);
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
+      }
+      if (fieldNamed) {
+         final String errmsg = String.format(ERRMSG_VALUE_IN_OBJECT, what);
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
+      }
+      level--;
+      empty = false;
+   }
+}
@@ -0,0 +1,68 @@
+package com.philhanna.json;
+
+/**
+ * An interface for objects that receive the contents of a JSON
+ * representation as it is parsed, without a tree being built. See
+ * {@link JSONParser#parse(java.io.Reader, JSONHandler)}.
+ */
+public interface JSONHandler {
+
+   /**
+    * Receives the start of an object
+    * @throws JSONException if an application error occurs
+    */
+   public void startObject() throws JSONException;
+
+   /**
+    * Receives the key of an object member. The member value follows.
+    * @param key the key
+    * @throws JSONException if an application error occurs
+    */
+   public void key(String key) throws JSONException;
+
+   /**
+    * Receives the end of an object
+    * @throws JSONException if an application error occurs
+    */
+   public void endObject() throws JSONException;
+
+   /**
+    * Receives the start of an array
+    * @throws JSONException if an application error occurs
+    */
+   public void startArray() throws JSONException;
+
+   /**
+    * Receives the end of an array
+    * @throws JSONException if an application error occurs
+    */
+   public void endArray() throws JSONException;
+
+   /**
+    * Receives a string value
+    * @param value the string
+    * @throws JSONException if an application error occurs
+    */
+   public void stringValue(String value) throws JSONException;
+
+   /**
+    * Receives a number value
+    * @param value the number
+    * @throws JSONException if an application error occurs
+    */
+   public void numberValue(Number value) throws JSONException;
+
+   /**
+    * Receives a <code>true</code> or <code>false</code> value
+    * @param value the boolean value
+    * @throws JSONException if an application error occurs
+    */
+   public void booleanValue(boolean value) throws JSONException;
+
+   /**
+    * Receives a <code>null</code> value
+    * @throws JSONException if an application error occurs
+    */
+   public void nullValue() throws JSONException;
+
+}
@@ -0,0 +1,642 @@
+package com.philhanna.json;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A structural index of a JSON representation held in a character
+ * array or a buffer of UTF-8 bytes. The index is built in one pass that
+ * checks the syntax and records the position of every value on a
+ * "tape", but decodes nothing. Bytes are indexed as they are, since
+ * every character with a meaning in JSON syntax is ASCII; multi-byte
+ * sequences are only checked, and are decoded with the strings that
+ * hold them. Objects and arrays are returned as lazy views of the tape
+ * whose members are decoded only when they are asked for.
+ * <p>
+ * Each value occupies one entry on the tape. An object is followed by
+ * its members, each a key entry and a value entry; an array is followed
+ * by its elements. Every entry records the index of the entry after
+ * it, so that a whole object or array can be stepped over at once.
+ */
+class JSONIndex {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger.getLogger(JSONIndex.class);
+
+   private static final String ERRMSG_UNEXPECTED = "Looking for %s but found %s at offset %d";
+   private static final String ERRMSG_EOF = "Unexpected end of input looking for %s";
+   private static final String ERRMSG_CONTROL_CHAR = "Control character 0x%04x is not allowed inside the JSON string at offset %d";
+   private static final String ERRMSG_ESCAPE = "Invalid escape sequence at offset %d";
+   private static final String ERRMSG_NUMBER = "%s is not a valid numeric literal";
+   private static final String ERRMSG_BAD_LITERAL = "%s is not a valid JSON literal (true|false|null)";
+   private static final String ERRMSG_UTF8 = "Invalid UTF-8 sequence starting with 0x%02x at offset %d";
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Indexes the first JSON value in the specified characters and
+    * returns it. Anything after the first value is ignored.
+    * @param chars the source array, which must not be changed while
+    *        the value is in use
+    * @param length the number of characters in the array to use
+    * @param symbols the table used to share object keys, or
+    *        <code>null</code> to use a new one
+    * @param statistics the statistics to which the values indexed are
+    *        added, or <code>null</code>
+    * @return a JSONValue, or <code>null</code> if there is nothing but
+    *         whitespace in the input
+    * @throws JSONException if the JSON syntax is invalid
+    */
+   static JSONValue parse(
+         char[] chars,
+         int length,
+         JSONSymbolTable symbols,
+         ParseStatistics statistics) throws JSONException {
+      return parse(chars, length, symbols, statistics, false);
+   }
+
+   /**
+    * Indexes the first JSON value in the remaining bytes of a UTF-8
+    * buffer and returns it, without changing the position of the
+    * buffer. Anything after the first value is ignored.
+    * @param bytes the source buffer, whose contents must not be changed
+    *        while the value is in use
+    * @param symbols the table used to share object keys, or
+    *        <code>null</code> to use a new one
+    * @param statistics the statistics to which the values indexed are
+    *        added, or <code>null</code>
+    * @return a JSONValue, or <code>null</code> if there is nothing but
+    *         whitespace in the input
+    * @throws JSONException if the JSON syntax or the UTF-8 encoding is
+    *         invalid
+    */
+   static JSONValue parse(
+         ByteBuffer bytes,
+         JSONSymbolTable symbols,
+         ParseStatistics statistics) throws JSONException {
+      final ByteBuffer slice = bytes.slice();
+      return parse(
+            new JSONIndex(null, slice, slice.remaining(), symbols),
+            statistics,
+            false);
+   }
+
+   /**
+    * Indexes the first JSON value in the specified characters and
+    * returns it, optionally requiring that nothing but whitespace
+    * follows it
+    * @param chars the source array, which must not be changed while
+    *        the value is in use
+    * @param length the number of characters in the array to use
+    * @param symbols the table used to share object keys, or
+    *        <code>null</code> to use a new one
+    * @param statistics the statistics to which the values indexed are
+    *        added, or <code>null</code>
+    * @param complete <code>true</code> if anything after the first
+    *        value is an error
+    * @return a JSONValue, or <code>null</code> if there is nothing but
+    *         whitespace in the input
+    * @throws JSONException if the JSON syntax is invalid
+    */
+   static JSONValue parse(
+         char[] chars,
+         int length,
+         JSONSymbolTable symbols,
+         ParseStatistics statistics,
+         boolean complete) throws JSONException {
+      return parse(
+            new JSONIndex(chars, null, length, symbols),
+            statistics,
+            complete);
+   }
+
+   /**
+    * Builds an index and returns its first value
+    */
+   private static JSONValue parse(
+         JSONIndex index,
+         ParseStatistics statistics,
+         boolean complete) throws JSONException {
+      if (!index.skipWhitespace())
+         return null;
+      index.scanValue();
+      if (complete && index.skipWhitespace())
+         throw index.unexpected("end of input");
+      if (statistics != null)
+         index.count(statistics);
+      return index.getValue(0);
+   }
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   // The input: either characters or UTF-8 bytes
+
+   private final char[] chars;
+   private final ByteBuffer bytes;
+   private final int length;
+   private final JSONSymbolTable symbols;
+   private int position;
+
+   // The tape: the type of each entry, the offsets of its first and
+   // last-plus-one characters, and the index of the entry after it
+
+   private JSONTokenType[] types = new JSONTokenType[64];
+   private int[] starts = new int[64];
+   private int[] ends = new int[64];
+   private int[] next = new int[64];
+   private int size;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new empty index over the specified characters or bytes
+    */
+   private JSONIndex(
+         char[] chars,
+         ByteBuffer bytes,
+         int length,
+         JSONSymbolTable symbols) {
+      this.chars = chars;
+      this.bytes = bytes;
+      this.length = length;
+      this.symbols = symbols == null
+            ? JSONSymbolTable.newParseTable()
+            : symbols;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns the value at the specified entry. Strings, numbers and
+    * literals are decoded; objects and arrays are returned as lazy
+    * views.
+    * @param entry the tape index
+    * @return a JSONValue of the appropriate type
+    */
+   JSONValue getValue(int entry) {
+      switch (types[entry]) {
+         case START_OBJECT:
+            return new LazyJSONObject(this, entry);
+         case START_ARRAY:
+            return new LazyJSONArray(this, entry);
+         case STRING:
+            return decodeString(entry);
+         case NUMBER:
+            return JSONNumber.valueOf(getText(entry));
+         case TRUE:
+            return JSONTrue.VALUE;
+         case FALSE:
+            return JSONFalse.VALUE;
+         default:
+            return JSONNull.VALUE;
+      }
+   }
+
+   /**
+    * Returns the decoded Java string at the specified string entry
+    * @param entry the tape index
+    * @return the string
+    */
+   String getString(int entry) {
+      return decodeString(entry).getString();
+   }
+
+   /**
+    * Returns the decoded object key at the specified string entry,
+    * shared through the symbol table
+    * @param entry the tape index
+    * @return the key
+    */
+   String getKey(int entry) {
+      final int start = starts[entry] + 1;
+      final int end = ends[entry] - 1;
+      if (chars == null || !isPlain(start, end))
+         return symbols.intern(getString(entry));
+      return symbols.intern(chars, start, end - start);
+   }
+
+   /**
+    * Returns <code>true</code> if the string at the specified entry is
+    * equal to the specified Java string. Strings without escape
+    * sequences are compared without being decoded.
+    * @param entry the tape index of a string
+    * @param s the Java string
+    * @return <code>true</code> or <code>false</code>
+    */
+   boolean stringEquals(int entry, String s) {
+      final int start = starts[entry] + 1;
+      final int end = ends[entry] - 1;
+      if (!isPlain(start, end))
+         return getString(entry).equals(s);
+      if (end - start != s.length())
+         return false;
+      for (int p = start, i = 0; p < end; p++, i++) {
+         if (charAt(p) != s.charAt(i))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Returns the tape indexes of the children of an object or array.
+    * For an object, these are the indexes of the member keys, each of
+    * which is followed by the member value.
+    * @param entry the tape index of an object or array
+    * @return an array of tape indexes
+    */
+   int[] getChildren(int entry) {
+      final boolean isObject = types[entry] == JSONTokenType.START_OBJECT;
+      int count = 0;
+      int child = entry + 1;
+      while (child < next[entry]) {
+         count++;
+         child = nextChild(child, isObject);
+      }
+      final int[] children = new int[count];
+      child = entry + 1;
+      for (int i = 0; i < count; i++) {
+         children[i] = child;
+         child = nextChild(child, isObject);
+      }
+      return children;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Adds every entry on the tape to the statistics
+    */
+   private void count(ParseStatistics statistics) {
+
+      // The index of the entry after each object or array that the
+      // current entry is in
+
+      int[] stack = new int[16];
+      int depth = 0;
+      for (int entry = 0; entry < size; entry++) {
+         while (depth > 0 && entry >= stack[depth - 1])
+            depth--;
+         statistics.value(types[entry], depth);
+         if (types[entry] == JSONTokenType.START_OBJECT
+               || types[entry] == JSONTokenType.START_ARRAY) {
+            if (depth == stack.length)
+               stack = Arrays.copyOf(stack, depth * 2);
+            stack[depth++] = next[entry];
+         }
+      }
+   }
+
+   /**
+    * Returns the index of the entry after the specified child of an
+    * object or array, stepping over the member value of an object
+    */
+   private int nextChild(int child, boolean isObject) {
+      return next[isObject
+            ? child + 1
+            : child];
+   }
+
+   /**
+    * Decodes the string at the specified entry
+    */
+   private JSONString decodeString(int entry) {
+      try {
+         return JSONString.parseString(getText(entry));
+      }
+      catch (JSONException e) {
+         // Escape sequences are checked when the index is built
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * Returns the text of an entry as it appears in the input
+    */
+   private String getText(int entry) {
+      return getText(starts[entry], ends[entry]);
+   }
+
+   /**
+    * Returns the character at the specified offset, or for bytes, the
+    * byte as an unsigned value
+    */
+   private int charAt(int p) {
+      return chars != null
+            ? chars[p]
+            : bytes.get(p) & 0xFF;
+   }
+
+   /**
+    * Returns <code>true</code> if the input between two offsets has no
+    * escape sequences or multi-byte characters, so that each character
+    * or byte stands for itself
+    */
+   private boolean isPlain(int start, int end) {
+      for (int p = start; p < end; p++) {
+         final int c = charAt(p);
+         if (c == '\\' || c >= 0x80 && chars == null)
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Adds an entry to the tape, returning its index
+    */
+   private int add(JSONTokenType type, int start) {
+      if (size == types.length) {
+         final int capacity = size * 2;
+         types = Arrays.copyOf(types, capacity);
+         starts = Arrays.copyOf(starts, capacity);
+         ends = Arrays.copyOf(ends, capacity);
+         next = Arrays.copyOf(next, capacity);
+      }
+      types[size] = type;
+      starts[size] = start;
+      return size++;
+   }
+
+   /**
+    * Completes the entry at the specified index, which ends at the
+    * current position
+    */
+   private void end(int entry) {
+      ends[entry] = position;
+      next[entry] = size;
+   }
+
+   /**
+    * Skips whitespace, returning <code>false</code> at end of input
+    */
+   private boolean skipWhitespace() {
+      while (position < length
+            && AbstractJSONTokenizer.isWhitespace(charAt(position)))
+         position++;
+      return position < length;
+   }
+
+   /**
+    * Skips whitespace and consumes the specified character, which must
+    * come next
+    */
+   private void expect(char c, String what) throws JSONException {
+      if (!skipWhitespace())
+         throw error(ERRMSG_EOF, what);
+      if (charAt(position) != c)
+         throw unexpected(what);
+      position++;
+   }
+
+   /**
+    * Indexes the value at the current position, which is not
+    * whitespace
+    */
+   private void scanValue() throws JSONException {
+      final int c = charAt(position);
+      switch (c) {
+         case '{':
+            scanObject();
+            break;
+         case '[':
+            scanArray();
+            break;
+         case '"':
+            scanString();
+            break;
+         default:
+            if (AbstractJSONTokenizer.isNumberCharacter(c))
+               scanNumber();
+            else
+               scanLiteral();
+            break;
+      }
+   }
+
+   /**
+    * Indexes an object
+    */
+   private void scanObject() throws JSONException {
+      final int entry = add(JSONTokenType.START_OBJECT, position++);
+      if (!skipWhitespace())
+         throw error(ERRMSG_EOF, "key or }");
+      if (charAt(position) == '}') {
+         position++;
+         end(entry);
+         return;
+      }
+      for (;;) {
+         if (!skipWhitespace())
+            throw error(ERRMSG_EOF, "key");
+         if (charAt(position) != '"')
+            throw unexpected("key");
+         scanString();
+         expect(':', "colon");
+         if (!skipWhitespace())
+            throw error(ERRMSG_EOF, "value");
+         scanValue();
+         if (!skipWhitespace())
+            throw error(ERRMSG_EOF, "comma or }");
+         final int c = charAt(position++);
+         if (c == '}')
+            break;
+         if (c != ',') {
+            position--;
+            throw unexpected("comma or }");
+         }
+      }
+      end(entry);
+   }
+
+   /**
+    * Indexes an array
+    */
+   private void scanArray() throws JSONException {
+      final int entry = add(JSONTokenType.START_ARRAY, position++);
+      if (!skipWhitespace())
+         throw error(ERRMSG_EOF, "value or ]");
+      if (charAt(position) == ']') {
+         position++;
+         end(entry);
+         return;
+      }
+      for (;;) {
+         if (!skipWhitespace())
+            throw error(ERRMSG_EOF, "value");
+         scanValue();
+         if (!skipWhitespace())
+            throw error(ERRMSG_EOF, "comma or ]");
+         final int c = charAt(position++);
+         if (c == ']')
+            break;
+         if (c != ',') {
+            position--;
+            throw unexpected("comma or ]");
+         }
+      }
+      end(entry);
+   }
+
+   /**
+    * Indexes a string, checking its escape sequences but not decoding
+    * them
+    */
+   private void scanString() throws JSONException {
+      final int entry = add(JSONTokenType.STRING, position++);
+      for (;;) {
+         if (position == length)
+            throw error(ERRMSG_EOF, "closing quote");
+         final int c = charAt(position++);
+         if (c == '"')
+            break;
+         if (c == '\\') {
+            if (position == length)
+               throw error(ERRMSG_EOF, "escape character");
+            final int e = charAt(position++);
+            if (e == 'u') {
+               for (int i = 0; i < 4; i++) {
+                  if (position == length
+                        || !AbstractJSONTokenizer
+                              .isHexDigit(charAt(position++)))
+                     throw error(ERRMSG_ESCAPE, starts[entry]);
+               }
+            }
+            else if (!AbstractJSONTokenizer.isEscapedCharacter(e)) {
+               throw error(ERRMSG_ESCAPE, position - 2);
+            }
+         }
+         else if (c < ' ') {
+            throw error(ERRMSG_CONTROL_CHAR, c, position - 1);
+         }
+         else if (c >= 0x80 && chars == null) {
+            checkMultiByteCharacter(c);
+         }
+      }
+      end(entry);
+   }
+
+   /**
+    * Checks the rest of a multi-byte UTF-8 sequence, whose lead byte
+    * has been consumed, and steps over it
+    */
+   private void checkMultiByteCharacter(int lead) throws JSONException {
+      final int count;
+      final int min;
+      int codePoint;
+      if (lead >= 0xC2 && lead <= 0xDF) {
+         count = 1;
+         min = 0x80;
+         codePoint = lead & 0x1F;
+      }
+      else if (lead >= 0xE0 && lead <= 0xEF) {
+         count = 2;
+         min = 0x800;
+         codePoint = lead & 0x0F;
+      }
+      else if (lead >= 0xF0 && lead <= 0xF4) {
+         count = 3;
+         min = 0x10000;
+         codePoint = lead & 0x07;
+      }
+      else {
+         throw error(ERRMSG_UTF8, lead, position - 1);
+      }
+      for (int i = 0; i < count; i++) {
+         if (position == length || (charAt(position) & 0xC0) != 0x80)
+            throw error(ERRMSG_UTF8, lead, position - i - 1);
+         codePoint = (codePoint << 6) | (charAt(position++) & 0x3F);
+      }
+      if (codePoint < min
+            || codePoint > Character.MAX_CODE_POINT
+            || (codePoint >= Character.MIN_SURROGATE
+                  && codePoint <= Character.MAX_SURROGATE)) {
+         throw error(ERRMSG_UTF8, lead, position - count - 1);
+      }
+   }
+
+   /**
+    * Indexes a number
+    */
+   private void scanNumber() throws JSONException {
+      final int entry = add(JSONTokenType.NUMBER, position);
+      while (position < length
+            && AbstractJSONTokenizer.isNumberCharacter(charAt(position)))
+         position++;
+      final boolean valid = chars != null
+            ? JSONNumber.isNumberLiteral(chars, starts[entry], position)
+            : JSONNumber.isNumber(getText(starts[entry], position));
+      if (!valid)
+         throw error(ERRMSG_NUMBER, getText(starts[entry], position));
+      end(entry);
+   }
+
+   /**
+    * Indexes a literal (true, false, or null)
+    */
+   private void scanLiteral() throws JSONException {
+      final int start = position;
+      while (position < length && Character.isLetter(charAt(position)))
+         position++;
+      final String text = getText(start, position);
+      final JSONTokenType type;
+      if (text.equals("true"))
+         type = JSONTokenType.TRUE;
+      else if (text.equals("false"))
+         type = JSONTokenType.FALSE;
+      else if (text.equals("null"))
+         type = JSONTokenType.NULL;
+      else if (text.isEmpty())
+         throw unexpected("value");
+      else
+         throw error(ERRMSG_BAD_LITERAL, text);
+      end(add(type, start));
+   }
+
+   /**
+    * Returns the input text between two offsets
+    */
+   private String getText(int start, int end) {
+      if (chars != null)
+         return new String(chars, start, end - start);
+      final byte[] text = new byte[end - start];
+      final ByteBuffer source = bytes.duplicate();
+      source.position(start);
+      source.get(text);
+      return new String(text, StandardCharsets.UTF_8);
+   }
+
+   /**
+    * Returns the exception for an unexpected character
+    */
+   private JSONException unexpected(String what) {
+      return error(
+            ERRMSG_UNEXPECTED,
+            what,
+            String.valueOf((char) charAt(position)),
+            position);
+   }
+
+   /**
+    * Returns a new exception with a formatted detail message
+    */
+   private JSONException error(String format, Object... args) {
+      final String errmsg = String.format(format, args);
+      log.debug(errmsg);
+      return new JSONException(errmsg);
+   }
+}
@@ -0,0 +1,379 @@
+package com.philhanna.json;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Reads a sequence of JSON values in JSON Lines (newline-delimited JSON)
+ * format, one value per line. Blank lines are ignored.
+ * <p>
+ * If an <code>ExecutorService</code> is supplied, such as a
+ * <code>ForkJoinPool</code> or a virtual thread executor, lines are
+ * read ahead in batches and the batches are parsed in parallel. Values
+ * are still returned in the order of the input. The executor is not
+ * shut down when the reader is closed.
+ * <p>
+ * Unless a parser is supplied, the lines are parsed with a parser whose
+ * symbol table is shared by all of them, so that records with the same
+ * member names share one copy of each name.
+ * <p>
+ * Typical usage:
+ *
+ * <pre>
+ * JSONLinesReader reader = new JSONLinesReader(in, executor);
+ * JSONValue value;
+ * while ((value = reader.next()) != null) {
+ *    ...
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * or, as a stream that closes the reader when it is closed:
+ *
+ * <pre>
+ * try (Stream&lt;JSONValue&gt; values = reader.stream()) {
+ *    ...
+ * }
+ * </pre>
+ */
+public class JSONLinesReader implements Iterable<JSONValue>, Closeable {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger.getLogger(JSONLinesReader.class);
+
+   /**
+    * Number of lines parsed by each task
+    */
+   static final int BATCH_SIZE = 64;
+
+   private static final String ERRMSG_LINE = "Line %d: %s";
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Returns a new parser with its own shared symbol table
+    */
+   private static JSONParser newParser() {
+      final JSONParser parser = JSONParser.newParser();
+      parser.setSymbolTable(new JSONSymbolTable());
+      return parser;
+   }
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final BufferedReader in;
+   private final JSONParser parser;
+   private final ExecutorService executor;
+
+   // Batches being parsed, in input order, and the maximum number of
+   // them
+
+   private final Deque<Future<JSONValue[]>> pending = new ArrayDeque<Future<JSONValue[]>>();
+   private final int maxPending;
+
+   // The batch being returned
+
+   private JSONValue[] batch;
+   private int batchPosition;
+
+   // Number of lines read so far
+
+   private int lineNumber;
+   private boolean eof;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new reader that parses each line as it is read
+    * @param in an input reader
+    */
+   public JSONLinesReader(Reader in) {
+      this(in, newParser(), null);
+   }
+
+   /**
+    * Creates a new reader that parses lines in parallel with the
+    * specified executor
+    * @param in an input reader
+    * @param executor the executor, or <code>null</code> to parse each
+    *        line as it is read
+    */
+   public JSONLinesReader(Reader in, ExecutorService executor) {
+      this(in, newParser(), executor);
+   }
+
+   /**
+    * Creates a new reader for a UTF-8 input stream that parses lines in
+    * parallel with the specified executor
+    * @param in an input stream
+    * @param executor the executor, or <code>null</code> to parse each
+    *        line as it is read
+    */
+   public JSONLinesReader(InputStream in, ExecutorService executor) {
+      this(
+            new InputStreamReader(in, StandardCharsets.UTF_8),
+            newParser(),
+            executor);
+   }
+
+   /**
+    * Creates a new reader that parses lines with the specified parser
+    * in parallel with the specified executor
+    * @param in an input reader
+    * @param parser the parser used for each line, which may be lazy
+    * @param executor the executor, or <code>null</code> to parse each
+    *        line as it is read
+    */
+   public JSONLinesReader(
+         Reader in,
+         JSONParser parser,
+         ExecutorService executor) {
+      this.in = in instanceof BufferedReader
+            ? (BufferedReader) in
+            : new BufferedReader(in);
+      this.parser = parser;
+      this.executor = executor;
+      this.maxPending = executor == null
+            ? 1
+            : 2 * Runtime.getRuntime().availableProcessors();
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns the next value
+    * @return the value, or <code>null</code> at end of input
+    * @throws JSONException if a line is not well-formed JSON. The
+    *         detail message includes the line number.
+    * @throws IOException if an I/O error occurs
+    */
+   public JSONValue next() throws JSONException, IOException {
+      for (;;) {
+         if (batch != null && batchPosition < batch.length) {
+            final JSONValue value = batch[batchPosition];
+            batch[batchPosition++] = null;
+            return value;
+         }
+         fill();
+         if (pending.isEmpty()) {
+            batch = null;
+            return null;
+         }
+         batch = await(pending.removeFirst());
+         batchPosition = 0;
+      }
+   }
+
+   /**
+    * Returns an iterator over the remaining values. Because
+    * <code>Iterator</code> methods cannot throw checked exceptions, a
+    * <code>JSONException</code> or <code>IOException</code> is thrown
+    * as the cause of an <code>IllegalStateException</code>.
+    * @return an iterator
+    */
+   @Override
+   public Iterator<JSONValue> iterator() {
+      return new Iterator<JSONValue>() {
+         private JSONValue nextValue;
+
+         @Override
+         public boolean hasNext() {
+            if (nextValue == null) {
+               try {
+                  nextValue = JSONLinesReader.this.next();
+               }
+               catch (JSONException e) {
+                  throw new IllegalStateException(e);
+               }
+               catch (IOException e) {
+                  throw new IllegalStateException(e);
+               }
+            }
+            return nextValue != null;
+         }
+
+         @Override
+         public JSONValue next() {
+            if (!hasNext())
+               throw new NoSuchElementException();
+            final JSONValue value = nextValue;
+            nextValue = null;
+            return value;
+         }
+
+         @Override
+         public void remove() {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   /**
+    * Returns a sequential, ordered stream of the remaining values.
+    * Exceptions are thrown as by {@link #iterator()}. Closing the stream
+    * closes this reader; an <code>IOException</code> from closing it is
+    * thrown as an <code>UncheckedIOException</code>.
+    * @return a stream
+    */
+   public Stream<JSONValue> stream() {
+      final Spliterator<JSONValue> spliterator = Spliterators
+            .spliteratorUnknownSize(
+                  iterator(),
+                  Spliterator.ORDERED | Spliterator.NONNULL);
+      return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+         @Override
+         public void run() {
+            try {
+               close();
+            }
+            catch (IOException e) {
+               throw new UncheckedIOException(e);
+            }
+         }
+      });
+   }
+
+   /**
+    * Cancels any parsing in progress and closes the underlying input
+    * reader
+    * @throws IOException if an I/O error occurs
+    */
+   @Override
+   public void close() throws IOException {
+      for (final Future<JSONValue[]> future : pending)
+         future.cancel(false);
+      pending.clear();
+      in.close();
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Reads batches of lines and starts parsing them, until the maximum
+    * number of batches are pending or the input is exhausted
+    */
+   private void fill() throws IOException {
+      while (!eof && pending.size() < maxPending) {
+         final int firstLine = lineNumber + 1;
+         final List<String> lines = new ArrayList<String>(BATCH_SIZE);
+         String line;
+         while (lines.size() < BATCH_SIZE && (line = in.readLine()) != null)
+            lines.add(line);
+         lineNumber += lines.size();
+         if (lines.size() < BATCH_SIZE)
+            eof = true;
+         if (lines.isEmpty())
+            break;
+         final Callable<JSONValue[]> task = new Callable<JSONValue[]>() {
+            @Override
+            public JSONValue[] call() throws JSONException, IOException {
+               return parse(lines, firstLine);
+            }
+         };
+         if (executor == null) {
+            final FutureTask<JSONValue[]> future = new FutureTask<JSONValue[]>(
+                  task);
+            future.run();
+            pending.addLast(future);
+         }
+         else {
+            pending.addLast(executor.submit(task));
+         }
+      }
+   }
+
+   /**
+    * Parses a batch of lines, skipping blank lines. Anything after the
+    * value on a line is an error, so that a line holding two records
+    * is not silently cut short.
+    */
+   private JSONValue[] parse(List<String> lines, int firstLine)
+         throws JSONException, IOException {
+      final List<JSONValue> values = new ArrayList<JSONValue>(lines.size());
+      for (int i = 0; i < lines.size(); i++) {
+         final JSONValue value;
+         try {
+            value = parser.parseComplete(lines.get(i));
+         }
+         catch (JSONException e) {
+            final String errmsg = String
+                  .format(ERRMSG_LINE, firstLine + i, e.getMessage());
+            log.debug(errmsg);
+            throw new JSONException(errmsg, e);
+         }
+         if (value != null)
+            values.add(value);
+      }
+      return values.toArray(new JSONValue[values.size()]);
+   }
+
+   /**
+    * Waits for a batch to be parsed and returns its values
+    */
+   private JSONValue[] await(Future<JSONValue[]> future)
+         throws JSONException, IOException {
+      try {
+         return future.get();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         final InterruptedIOException cancelled = new InterruptedIOException(
+               "Interrupted while waiting for a batch to be parsed");
+         cancelled.initCause(e);
+         throw cancelled;
+      }
+      catch (ExecutionException e) {
+
+         // A fork-join pool wraps checked exceptions in runtime
+         // exceptions, so look for the original along the cause chain
+
+         for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            if (t instanceof JSONException)
+               throw (JSONException) t;
+            if (t instanceof IOException)
+               throw (IOException) t;
+         }
+         final Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+         throw new JSONException(cause);
+      }
+   }
+}
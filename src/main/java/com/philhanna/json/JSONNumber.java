@@ -1,7 +1,15 @@
 package com.philhanna.json;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
 /**
- * A JSON number.
+ * A JSON number. A number that has been parsed keeps the literal from
+ * the input, and converts it only when the value is first asked for.
+ * Integers that fit in a <code>long</code> and numbers that fit in a
+ * <code>double</code> are then held as primitives, and can be read
+ * without boxing with {@link #getLong()} and {@link #getDouble()}.
+ * Small integers are shared; see {@link #valueOf(long)}.
  */
 public class JSONNumber extends JSONValue {
 
@@ -9,6 +17,38 @@ public class JSONNumber extends JSONValue {
    // Class constants and variables
    // ====================================================================
 
+   private static final String ERRMSG_NUMBER = "%s is not a valid numeric literal";
+
+   /**
+    * Longest integer literal, not counting a minus sign, that is
+    * certain to fit in a <code>long</code>
+    */
+   private static final int MAX_LONG_DIGITS = 18;
+
+   // How the value is held: as a literal not yet converted, as a long
+   // or as the bits of a double, or as some other Number object
+
+   private static final byte LITERAL = 0;
+   private static final byte LONG = 1;
+   private static final byte DOUBLE = 2;
+   private static final byte OBJECT = 3;
+
+   // Shared instances for small integers
+
+   private static final int CACHE_LOW = -128;
+   private static final int CACHE_HIGH = 1023;
+   private static final JSONNumber[] CACHE = new JSONNumber[CACHE_HIGH
+         - CACHE_LOW + 1];
+   static {
+      for (int i = 0; i < CACHE.length; i++)
+         CACHE[i] = new JSONNumber((long) (i + CACHE_LOW));
+   }
+
+   /**
+    * Longest literal that is looked up in the small integer cache
+    */
+   private static final int MAX_CACHED_LENGTH = 4;
+
    // ====================================================================
    // Class methods
    // ====================================================================
@@ -20,8 +60,171 @@ public class JSONNumber extends JSONValue {
     * @throws NumberFormatException if the token is invalid
     */
    public static JSONNumber parseNumber(String token) {
-      final Number number = Double.parseDouble(token);
-      return new JSONNumber(number);
+      if (!isNumber(token)) {
+         final String errmsg = String.format(ERRMSG_NUMBER, token);
+         throw new NumberFormatException(errmsg);
+      }
+      return valueOf(token);
+   }
+
+   /**
+    * Returns a JSON number for the specified integer. Integers from -128
+    * to 1023 are shared rather than created each time.
+    * @param value the integer
+    * @return a JSONNumber instance
+    */
+   public static JSONNumber valueOf(long value) {
+      if (value >= CACHE_LOW && value <= CACHE_HIGH)
+         return CACHE[(int) value - CACHE_LOW];
+      return new JSONNumber(value);
+   }
+
+   /**
+    * Returns a JSON number for a literal that is already known to be
+    * valid. A short integer is looked up in the small integer cache;
+    * anything else is kept as a literal to be converted when needed.
+    * @param literal a valid JSON number literal
+    * @return a JSONNumber instance
+    */
+   static JSONNumber valueOf(String literal) {
+      final int n = literal.length();
+      if (n <= MAX_CACHED_LENGTH) {
+         final boolean negative = literal.charAt(0) == '-';
+         int value = 0;
+         int i = negative
+               ? 1
+               : 0;
+         for (; i < n; i++) {
+            final char c = literal.charAt(i);
+            if (c < '0' || c > '9')
+               break;
+            value = value * 10 + (c - '0');
+         }
+         if (i == n) {
+            final int cached = negative
+                  ? -value
+                  : value;
+            if (cached >= CACHE_LOW && cached <= CACHE_HIGH)
+               return CACHE[cached - CACHE_LOW];
+         }
+      }
+      return new JSONNumber(literal);
+   }
+
+   /**
+    * Converts a number literal to a Java number. An integer is converted
+    * to a <code>Long</code>, or a <code>BigInteger</code> if it is too
+    * large for a <code>long</code>. A number with a fraction or exponent
+    * is converted to a <code>Double</code>, or a <code>BigDecimal</code>
+    * if it is too large for a <code>double</code>.
+    * @param literal a valid JSON number literal
+    * @return the number
+    */
+   static Number decode(String literal) {
+      if (isIntegralLiteral(literal)) {
+         if (isLongLiteral(literal))
+            return Long.valueOf(Long.parseLong(literal));
+         final BigInteger bigInteger = new BigInteger(literal);
+         if (bigInteger.bitLength() < Long.SIZE)
+            return Long.valueOf(bigInteger.longValue());
+         return bigInteger;
+      }
+      final double d = Double.parseDouble(literal);
+      if (Double.isInfinite(d))
+         return new BigDecimal(literal);
+      return Double.valueOf(d);
+   }
+
+   /**
+    * Returns the JSON representation of a <code>double</code>. A whole
+    * number is written without a fraction.
+    * @param value the number
+    * @return the representation
+    */
+   static String toString(double value) {
+      return withoutZeroFraction(String.valueOf(value));
+   }
+
+   /**
+    * Removes a fraction of <code>.0</code> from the decimal
+    * representation of a floating point number. The digits are removed
+    * rather than converting the value to an integer type, which could
+    * overflow.
+    */
+   private static String withoutZeroFraction(String s) {
+      return s.endsWith(".0")
+            ? s.substring(0, s.length() - 2)
+            : s;
+   }
+
+   /**
+    * Returns <code>true</code> if a valid literal has no fraction or
+    * exponent
+    */
+   private static boolean isIntegralLiteral(String literal) {
+      for (int i = 0, n = literal.length(); i < n; i++) {
+         final char c = literal.charAt(i);
+         if (c == '.' || c == 'e' || c == 'E')
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * Returns <code>true</code> if a valid integer literal is short
+    * enough to be certain to fit in a <code>long</code>
+    */
+   private static boolean isLongLiteral(String literal) {
+      final int digits = literal.charAt(0) == '-'
+            ? literal.length() - 1
+            : literal.length();
+      return digits <= MAX_LONG_DIGITS;
+   }
+
+   /**
+    * Returns <code>true</code> if the specified characters are a number
+    * literal as defined by the JSON grammar: an optional minus sign, an
+    * integer part without leading zeros, an optional fraction and an
+    * optional exponent.
+    * @param chars the source array
+    * @param start the index of the first character
+    * @param end the index after the last character
+    * @return <code>true</code> or <code>false</code>
+    */
+   static boolean isNumberLiteral(char[] chars, int start, int end) {
+      int p = start;
+      if (p < end && chars[p] == '-')
+         p++;
+      if (p == end)
+         return false;
+      if (chars[p] == '0') {
+         p++;
+      }
+      else {
+         final int digits = p;
+         while (p < end && chars[p] >= '0' && chars[p] <= '9')
+            p++;
+         if (p == digits)
+            return false;
+      }
+      if (p < end && chars[p] == '.') {
+         final int digits = ++p;
+         while (p < end && chars[p] >= '0' && chars[p] <= '9')
+            p++;
+         if (p == digits)
+            return false;
+      }
+      if (p < end && (chars[p] == 'e' || chars[p] == 'E')) {
+         p++;
+         if (p < end && (chars[p] == '+' || chars[p] == '-'))
+            p++;
+         final int digits = p;
+         while (p < end && chars[p] >= '0' && chars[p] <= '9')
+            p++;
+         if (p == digits)
+            return false;
+      }
+      return p == end;
    }
 
    /**
@@ -31,20 +234,27 @@ public class JSONNumber extends JSONValue {
     * @return <code>true</code> or <code>false</code>
     */
    public static boolean isNumber(String token) {
-      try {
-         parseNumber(token);
-         return true;
-      }
-      catch (NumberFormatException e) {
-         return false;
-      }
+      return token != null
+            && isNumberLiteral(token.toCharArray(), 0, token.length());
    }
 
    // ====================================================================
    // Instance variables
    // ====================================================================
 
-   private final Number number;
+   // The literal until it has been converted, then the Number object if
+   // there is one: the value given to the constructor, a BigInteger or
+   // BigDecimal, or a box made by getNumber()
+
+   private Object object;
+
+   // A long value, or the bits of a double value, and which of the
+   // representations above holds the value. The kind is written last
+   // when a literal is converted, so that another thread that sees the
+   // new kind also sees the value.
+
+   private long bits;
+   private volatile byte kind;
 
    // ====================================================================
    // Constructors
@@ -56,7 +266,53 @@ public class JSONNumber extends JSONValue {
     */
    public JSONNumber(Number number) {
       super(JSONType.NUMBER);
-      this.number = number;
+      this.object = number;
+      if (number instanceof Long
+            || number instanceof Integer
+            || number instanceof Short
+            || number instanceof Byte) {
+         this.bits = number.longValue();
+         this.kind = LONG;
+      }
+      else if (number instanceof Double || number instanceof Float) {
+         this.bits = Double.doubleToRawLongBits(number.doubleValue());
+         this.kind = DOUBLE;
+      }
+      else {
+         this.kind = OBJECT;
+      }
+   }
+
+   /**
+    * Creates a new JSON number for an integer. See also
+    * {@link #valueOf(long)}.
+    * @param value the integer
+    */
+   public JSONNumber(long value) {
+      super(JSONType.NUMBER);
+      this.bits = value;
+      this.kind = LONG;
+   }
+
+   /**
+    * Creates a new JSON number for a <code>double</code>
+    * @param value the number
+    */
+   public JSONNumber(double value) {
+      super(JSONType.NUMBER);
+      this.bits = Double.doubleToRawLongBits(value);
+      this.kind = DOUBLE;
+   }
+
+   /**
+    * Creates a new JSON number from a literal that is already known to
+    * be valid. The literal is not converted until it is needed.
+    * @param literal a valid JSON number literal
+    */
+   JSONNumber(String literal) {
+      super(JSONType.NUMBER);
+      this.object = literal;
+      this.kind = LITERAL;
    }
 
    // ====================================================================
@@ -64,22 +320,160 @@ public class JSONNumber extends JSONValue {
    // ====================================================================
 
    /**
-    * Returns the number value
+    * Returns the number value, converting the literal from the input
+    * the first time it is called. See {@link #decode(String)} for the
+    * class of the result.
     */
    public Number getNumber() {
+      final byte kind = convert();
+      final Object object = this.object;
+      if (object != null)
+         return (Number) object;
+      final Number number = kind == LONG
+            ? (Number) Long.valueOf(bits)
+            : (Number) Double.valueOf(Double.longBitsToDouble(bits));
+      this.object = number;
       return number;
    }
 
+   /**
+    * Returns the value as a <code>long</code>. A number with a fraction
+    * is truncated, and one out of range is narrowed as by
+    * <code>Number.longValue()</code>.
+    */
+   public long getLong() {
+      switch (convert()) {
+         case LONG:
+            return bits;
+         case DOUBLE:
+            return (long) Double.longBitsToDouble(bits);
+         default:
+            return ((Number) object).longValue();
+      }
+   }
+
+   /**
+    * Returns the value as a <code>double</code>, which may lose
+    * precision
+    */
+   public double getDouble() {
+      switch (convert()) {
+         case LONG:
+            return bits;
+         case DOUBLE:
+            return Double.longBitsToDouble(bits);
+         default:
+            return ((Number) object).doubleValue();
+      }
+   }
+
+   /**
+    * Returns <code>true</code> if the number is an integer, that is, if
+    * it was written without a fraction or exponent, or was created from
+    * an integral Java type
+    */
+   public boolean isIntegral() {
+      switch (convert()) {
+         case LONG:
+            return true;
+         case DOUBLE:
+            return false;
+         default:
+            return object instanceof BigInteger;
+      }
+   }
+
+   /**
+    * Returns <code>true</code> if the value is no longer held as an
+    * unconverted literal, so that asking for it costs nothing
+    */
+   boolean isConverted() {
+      return kind != LITERAL;
+   }
+
+   /**
+    * Returns <code>true</code> if the value is held as a
+    * <code>long</code> and no other Number object is needed to
+    * reproduce it
+    */
+   boolean holdsLong() {
+      return convert() == LONG && (object == null || object instanceof Long);
+   }
+
+   /**
+    * Returns <code>true</code> if the value is held as a
+    * <code>double</code> and no other Number object is needed to
+    * reproduce it
+    */
+   boolean holdsDouble() {
+      return convert() == DOUBLE
+            && (object == null || object instanceof Double);
+   }
+
+   /**
+    * Returns the JSON representation of the number. A
+    * <code>double</code> or <code>float</code> that is a whole number is
+    * written without a fraction; any other Number object, such as a
+    * <code>BigDecimal</code>, is written as its <code>toString()</code>
+    * returns it, so that no digits are lost.
+    */
    @Override
    public String toString() {
-      String value = String.valueOf(number);
-      if (value.endsWith(".0"))
-         value = String.valueOf(number.intValue());
-      return value;
+      switch (convert()) {
+         case LONG:
+            return Long.toString(bits);
+         case DOUBLE:
+            if (object instanceof Float)
+               return withoutZeroFraction(object.toString());
+            return toString(Double.longBitsToDouble(bits));
+         default:
+            return object.toString();
+      }
    }
 
    @Override
    public void accept(Visitor visitor) throws JSONException {
       visitor.visit(this);
    }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Converts the literal, if that has not been done yet, and returns
+    * the kind of representation that holds the value
+    */
+   private byte convert() {
+      final byte kind = this.kind;
+      if (kind != LITERAL)
+         return kind;
+      synchronized (this) {
+         if (this.kind == LITERAL) {
+            final String literal = (String) object;
+            if (isIntegralLiteral(literal) && isLongLiteral(literal)) {
+               bits = Long.parseLong(literal);
+               object = null;
+               this.kind = LONG;
+               return LONG;
+            }
+            final Number number = decode(literal);
+            if (number instanceof Long) {
+               bits = number.longValue();
+               object = null;
+               this.kind = LONG;
+            }
+            else if (number instanceof Double) {
+               bits = Double.doubleToRawLongBits(number.doubleValue());
+               object = null;
+               this.kind = DOUBLE;
+            }
+            else {
+               object = number;
+               this.kind = OBJECT;
+            }
+         }
+         return this.kind;
+      }
+   }
 }
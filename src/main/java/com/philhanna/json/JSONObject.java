@@ -1,14 +1,24 @@
 package com.philhanna.json;
 
 import java.io.IOException;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.apache.log4j.Logger;
 
 /**
  * A JSON object.
+ * <p>
+ * Most objects have only a few members, so up to {@value #COMPACT_LIMIT}
+ * members are held in a pair of arrays of keys and values that are
+ * searched in order. A larger object moves its members into a hash
+ * table. Either way the members keep the order in which they were
+ * added.
  */
 public class JSONObject extends JSONValue {
 
@@ -25,6 +35,16 @@ public class JSONObject extends JSONValue {
 
    private static final Logger log = Logger.getLogger(JSONObject.class);
 
+   /**
+    * Largest number of members held in arrays rather than a hash table
+    */
+   static final int COMPACT_LIMIT = 8;
+
+   /**
+    * Initial capacity of the arrays of keys and values
+    */
+   private static final int INITIAL_CAPACITY = 4;
+
    // ====================================================================
    // Class methods
    // ====================================================================
@@ -50,21 +70,18 @@ public class JSONObject extends JSONValue {
    public static JSONObject parseObject(JSONTokenizer tokenizer)
          throws JSONException, IOException {
 
-      log.debug("Entry");
-
       // Result
 
       final JSONObject object = new JSONObject();
 
       // Member key and value
 
-      JSONString key = null;
+      String key = null;
       JSONValue value = null;
 
       // Parsing state
 
       State state = State.LOOKING_FOR_KEY;
-      log.debug(String.format("Entering state %s", state));
 
       // Read tokens until the closing bracket is found
 
@@ -72,9 +89,7 @@ public class JSONObject extends JSONValue {
 
          // Read the next token
 
-         final String token = tokenizer.readToken();
-         log.debug(
-               String.format("Received token [%s] in state %s", token, state));
+         final JSONTokenType token = tokenizer.nextToken();
          if (token == null)
             break;
 
@@ -83,28 +98,30 @@ public class JSONObject extends JSONValue {
          switch (state) {
 
             case LOOKING_FOR_KEY: {
-               if (token.equals("}")) {
-                  log.debug("Found closing bracket for object");
-                  log.debug("Exit");
+               if (token == JSONTokenType.END_OBJECT) {
+                  object.trimToSize();
                   return object;
                }
-               log.debug("Parsing key");
-               key = JSONString.parseString(token);
-               log.debug(String.format("Found key %s", key.getString()));
+               if (token != JSONTokenType.STRING) {
+                  final String errmsg = String.format(
+                        "Looking for key but found %s",
+                        tokenizer.getText());
+                  log.debug(errmsg);
+                  throw new JSONException(errmsg);
+               }
+               key = readKey(tokenizer);
                state = State.LOOKING_FOR_COLON;
-               log.debug(String.format("Entering state %s", state));
                break;
             }
 
             case LOOKING_FOR_COLON: {
-               if (token.equals(":")) {
-                  log.debug("Parsing colon");
+               if (token == JSONTokenType.COLON) {
                   state = State.LOOKING_FOR_VALUE;
-                  log.debug(String.format("Entering state %s", state));
                }
                else {
-                  final String errmsg = String
-                        .format("Looking for colon but found %s", token);
+                  final String errmsg = String.format(
+                        "Looking for colon but found %s",
+                        tokenizer.getText());
                   log.debug(errmsg);
                   throw new JSONException(errmsg);
                }
@@ -112,37 +129,24 @@ public class JSONObject extends JSONValue {
             }
 
             case LOOKING_FOR_VALUE: {
-               log.debug("Parsing value");
                value = JSONValue.parse(token, tokenizer);
-               log.debug(String.format("Value is type %s", value.getType()));
-
-               object.put(key.getString(), value);
-               log.debug(
-                     String.format(
-                           "Added %s->%s to object members",
-                           key.getString(),
-                           value.getType()));
-
+               object.put(key, value);
                state = State.LOOKING_FOR_COMMA;
-               log.debug(String.format("Entering state %s", state));
-
                break;
             }
 
             case LOOKING_FOR_COMMA: {
-               if (token.equals("}")) {
-                  log.debug("Found closing bracket for object");
-                  log.debug("Exit");
+               if (token == JSONTokenType.END_OBJECT) {
+                  object.trimToSize();
                   return object;
                }
-               if (token.equals(",")) {
-                  log.debug("Parsing comma");
+               if (token == JSONTokenType.COMMA) {
                   state = State.LOOKING_FOR_KEY;
-                  log.debug(String.format("Entering state %s", state));
                }
                else {
-                  final String errmsg = String
-                        .format("Looking for comma but found %s", token);
+                  final String errmsg = String.format(
+                        "Looking for comma but found %s",
+                        tokenizer.getText());
                   log.debug(errmsg);
                   throw new JSONException(errmsg);
                }
@@ -150,18 +154,34 @@ public class JSONObject extends JSONValue {
             }
          }
       }
-      log.debug("Exit");
+      object.trimToSize();
       return object;
    }
 
+   /**
+    * Returns the decoded key from the current string token, shared
+    * through the tokenizer's symbol table if it has one
+    */
+   private static String readKey(JSONTokenizer tokenizer)
+         throws JSONException {
+      if (tokenizer instanceof AbstractJSONTokenizer)
+         return ((AbstractJSONTokenizer) tokenizer).getKey();
+      return JSONString.parseString(tokenizer.getText()).getString();
+   }
+
    // ====================================================================
    // Instance variables
    // ====================================================================
 
-   /**
-    * The object's key/value pairs.
-    */
-   private Map<String, JSONValue> members = new LinkedHashMap<String, JSONValue>();
+   // The object's key/value pairs: in the first count entries of the
+   // keys and values arrays, or once there are too many for that, in
+   // the map, with both arrays null. The arrays are created when the
+   // first member is added.
+
+   private String[] keys;
+   private JSONValue[] values;
+   private int count;
+   private Map<String, JSONValue> members;
 
    // ====================================================================
    // Constructors
@@ -179,19 +199,48 @@ public class JSONObject extends JSONValue {
    // ====================================================================
 
    /**
-    * Returns the underlying key set for this object
+    * Returns the underlying key set for this object. Removing a key
+    * from the set removes the member from the object.
     */
    public Set<String> keySet() {
-      return members.keySet();
+      if (members != null)
+         return members.keySet();
+      return new KeySet();
    }
 
    /**
-    * Sets a key/value pair in the object
+    * Sets a key/value pair in the object. A key that is already present
+    * keeps its position.
     * @param string a Java String
     * @param value a JSONValue
     */
    public void put(String string, JSONValue value) {
-      members.put(string, value);
+      if (members != null) {
+         members.put(string, value);
+         return;
+      }
+      final int i = indexOf(string);
+      if (i >= 0) {
+         values[i] = value;
+         return;
+      }
+      if (count == COMPACT_LIMIT) {
+         expand();
+         members.put(string, value);
+         return;
+      }
+      if (keys == null) {
+         keys = new String[INITIAL_CAPACITY];
+         values = new JSONValue[INITIAL_CAPACITY];
+      }
+      else if (count == keys.length) {
+         final int capacity = Math.min(2 * count, COMPACT_LIMIT);
+         keys = Arrays.copyOf(keys, capacity);
+         values = Arrays.copyOf(values, capacity);
+      }
+      keys[count] = string;
+      values[count] = value;
+      count++;
    }
 
    /**
@@ -201,7 +250,10 @@ public class JSONObject extends JSONValue {
     *         present in the object
     */
    public JSONValue get(String key) {
-      return members.get(key);
+      if (members != null)
+         return members.get(key);
+      final int i = indexOf(key);
+      return i < 0 ? null : values[i];
    }
 
    /**
@@ -209,7 +261,26 @@ public class JSONObject extends JSONValue {
     * @return the number of members in the object
     */
    public int size() {
-      return members.size();
+      if (members != null)
+         return members.size();
+      return count;
+   }
+
+   /**
+    * Releases any space in the arrays of keys and values beyond the
+    * members already added. The parser calls this when it reaches the
+    * end of the object.
+    */
+   public void trimToSize() {
+      if (keys == null || count == keys.length)
+         return;
+      if (count == 0) {
+         keys = null;
+         values = null;
+         return;
+      }
+      keys = Arrays.copyOf(keys, count);
+      values = Arrays.copyOf(values, count);
    }
 
    @Override
@@ -222,12 +293,12 @@ public class JSONObject extends JSONValue {
       final StringBuilder sb = new StringBuilder();
       sb.append("{");
       int n = 0;
-      for (final String javaKey : members.keySet()) {
+      for (final String javaKey : keySet()) {
          n++;
          if (n > 1)
             sb.append(",");
-         final JSONString key = new JSONString(javaKey);
-         final JSONValue value = members.get(javaKey);
+         final String key = JSONString.escape(javaKey);
+         final JSONValue value = get(javaKey);
          sb.append(key);
          sb.append(":");
          sb.append(value);
@@ -237,4 +308,98 @@ public class JSONObject extends JSONValue {
       return output;
 
    }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Returns the position of a key in the array of keys, or -1 if it is
+    * not there
+    */
+   private int indexOf(Object key) {
+      for (int i = 0; i < count; i++) {
+         if (keys[i] == key || key != null && key.equals(keys[i]))
+            return i;
+      }
+      return -1;
+   }
+
+   /**
+    * Removes the member at the specified position in the arrays
+    */
+   private void remove(int i) {
+      final int moved = count - i - 1;
+      System.arraycopy(keys, i + 1, keys, i, moved);
+      System.arraycopy(values, i + 1, values, i, moved);
+      count--;
+      keys[count] = null;
+      values[count] = null;
+   }
+
+   /**
+    * Moves the members from the arrays into a hash table
+    */
+   private void expand() {
+      members = new LinkedHashMap<String, JSONValue>();
+      for (int i = 0; i < count; i++)
+         members.put(keys[i], values[i]);
+      keys = null;
+      values = null;
+      count = 0;
+   }
+
+   // ====================================================================
+   // Inner classes
+   // ====================================================================
+
+   /**
+    * A view of the keys held in the arrays, which follows the members
+    * into the hash table if the object grows
+    */
+   private class KeySet extends AbstractSet<String> {
+
+      @Override
+      public int size() {
+         return JSONObject.this.size();
+      }
+
+      @Override
+      public boolean contains(Object key) {
+         if (members != null)
+            return members.containsKey(key);
+         return indexOf(key) >= 0;
+      }
+
+      @Override
+      public Iterator<String> iterator() {
+         if (members != null)
+            return members.keySet().iterator();
+         return new Iterator<String>() {
+            private int next = 0;
+            private boolean removable;
+
+            @Override
+            public boolean hasNext() {
+               return next < count;
+            }
+
+            @Override
+            public String next() {
+               if (!hasNext())
+                  throw new NoSuchElementException();
+               removable = true;
+               return keys[next++];
+            }
+
+            @Override
+            public void remove() {
+               if (!removable)
+                  throw new IllegalStateException();
+               removable = false;
+               JSONObject.this.remove(--next);
+            }
+         };
+      }
+   }
 }
@@ -0,0 +1,420 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The buffered output shared by {@link JSONWriter} and
+ * {@link JSONGenerator}: a character buffer passed in large blocks to
+ * an <code>Appendable</code> target, or encoded as UTF-8 into a byte
+ * buffer that is sent to a channel or stream, and the escaping and
+ * formatting of the JSON punctuation written into it.
+ * <p>
+ * Because every character above 0xfe is written as an escape sequence,
+ * each character of output needs at most two bytes of UTF-8.
+ * <p>
+ * When the channel is a <code>GatheringByteChannel</code>, the output
+ * fills the byte buffer and then up to {@value #GATHER_BUFFERS} - 1
+ * spare buffers of the same size and kind before they are all sent in
+ * one gathering write, so a large document needs fewer system calls.
+ * The spare buffers are kept for the next document.
+ */
+abstract class JSONOutput {
+
+   /**
+    * Carries an I/O error from the target out through methods that can
+    * only throw JSONException, such as those of a visitor
+    */
+   static class OutputException extends JSONException {
+
+      private static final long serialVersionUID = 1L;
+
+      OutputException(IOException cause) {
+         super(cause);
+      }
+
+      IOException getIOException() {
+         return (IOException) getCause();
+      }
+   }
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   /**
+    * Number of characters collected before they are passed to the target
+    */
+   static final int BUFFER_SIZE = 8192;
+
+   /**
+    * Number of bytes in the buffer used to write to an output stream
+    */
+   static final int BYTE_BUFFER_SIZE = 2 * BUFFER_SIZE;
+
+   /**
+    * Number of byte buffers sent together to a gathering channel
+    */
+   static final int GATHER_BUFFERS = 4;
+
+   // Spaces written to indent pretty output, two for each level. Deeper
+   // levels are written in several pieces.
+
+   private static final String SPACES = "                                                                ";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   boolean pretty;
+   int indent;
+
+   // The character target, and the characters not yet passed to it
+
+   private Appendable out;
+   private final char[] buffer = new char[BUFFER_SIZE];
+   private int count;
+
+   // The buffer into which the output is encoded as UTF-8 instead, and
+   // the channel or stream to which it is sent when it is full
+
+   private ByteBuffer bytes;
+   private WritableByteChannel channel;
+   private OutputStream stream;
+
+   // The buffers sent together to a gathering channel, the first of
+   // which is the target buffer, and the number of them already full.
+   // The spare buffers are kept for the next target of the same size.
+
+   private ByteBuffer[] gather;
+   private int filled;
+   private ByteBuffer[] spares;
+
+   // Number of characters written since the last reset, and the current
+   // and greatest nesting depths
+
+   long written;
+   int depth;
+   int maxDepth;
+
+   // ====================================================================
+   // Package methods
+   // ====================================================================
+
+   /**
+    * Sets a character target
+    */
+   void setTarget(Appendable out) {
+      this.out = out;
+      this.bytes = null;
+      this.channel = null;
+      this.stream = null;
+      if (gather != null) {
+         gather[0] = null;
+         gather = null;
+      }
+   }
+
+   /**
+    * Sets a byte buffer as the target, with the channel or stream to
+    * which it is sent when it is full, if there is one
+    */
+   void setTarget(
+         ByteBuffer bytes,
+         WritableByteChannel channel,
+         OutputStream stream) {
+      this.out = null;
+      this.bytes = bytes;
+      this.channel = channel;
+      this.stream = stream;
+      this.gather = channel instanceof GatheringByteChannel
+            ? gatherBuffers(bytes)
+            : null;
+      this.filled = 0;
+   }
+
+   /**
+    * Discards any buffered characters and sets the counters and the
+    * indentation back to zero
+    */
+   void reset() {
+      count = 0;
+      indent = 0;
+      written = 0;
+      depth = 0;
+      maxDepth = 0;
+   }
+
+   /**
+    * Returns the number of characters written since the last reset,
+    * including any that are still buffered
+    */
+   long getCharsOutput() {
+      return written + count;
+   }
+
+   /**
+    * Passes all the buffered output to the target, including the bytes
+    * in the byte buffer if it is sent to a channel or stream
+    */
+   void flushOutput() throws OutputException {
+      flushBuffer();
+      if (channel != null || stream != null)
+         sendBytes();
+   }
+
+   /**
+    * Prints a character
+    */
+   void print(char c) throws OutputException {
+      if (count == buffer.length)
+         flushBuffer();
+      buffer[count++] = c;
+   }
+
+   /**
+    * Prints a string
+    */
+   void print(String s) throws OutputException {
+      print(s, 0, s.length());
+   }
+
+   /**
+    * Prints the characters of a string between two indexes
+    */
+   void print(String s, int start, int end) throws OutputException {
+      while (start < end) {
+         if (count == buffer.length)
+            flushBuffer();
+         final int n = Math.min(end - start, buffer.length - count);
+         s.getChars(start, start + n, buffer, count);
+         count += n;
+         start += n;
+      }
+   }
+
+   /**
+    * Prints the contents of a string builder
+    */
+   void print(StringBuilder s) throws OutputException {
+      for (int start = 0, end = s.length(); start < end;) {
+         if (count == buffer.length)
+            flushBuffer();
+         final int n = Math.min(end - start, buffer.length - count);
+         s.getChars(start, start + n, buffer, count);
+         count += n;
+         start += n;
+      }
+   }
+
+   /**
+    * Prints a Java string in quotes, escaping its characters directly
+    * into the buffer. The runs of characters between escapes are copied
+    * in bulk.
+    */
+   void printString(String s) throws OutputException {
+      print('"');
+      int run = 0;
+      for (int i = 0, n = s.length(); i < n; i++) {
+         final char c = s.charAt(i);
+         if (!JSONString.needsEscape(c))
+            continue;
+         print(s, run, i);
+         final String escape = JSONString.shortEscape(c);
+         if (escape != null) {
+            print(escape);
+         }
+         else {
+            print('\\');
+            print('u');
+            print(JSONString.HEX_DIGITS[(c >> 12) & 0xF]);
+            print(JSONString.HEX_DIGITS[(c >> 8) & 0xF]);
+            print(JSONString.HEX_DIGITS[(c >> 4) & 0xF]);
+            print(JSONString.HEX_DIGITS[c & 0xF]);
+         }
+         run = i + 1;
+      }
+      print(s, run, s.length());
+      print('"');
+   }
+
+   void printOpenBracket(char b) throws OutputException {
+      print(b);
+      if (++depth > maxDepth)
+         maxDepth = depth;
+      if (pretty) {
+         print('\n');
+         indent++;
+      }
+   }
+
+   void printCloseBracket(char b) throws OutputException {
+      depth--;
+      if (pretty) {
+         print('\n');
+         indent--;
+         printIndent();
+      }
+      print(b);
+   }
+
+   void printComma() throws OutputException {
+      print(',');
+      if (pretty)
+         print('\n');
+   }
+
+   void printColon() throws OutputException {
+      if (pretty)
+         print(" : ");
+      else
+         print(':');
+   }
+
+   void printIndent() throws OutputException {
+      if (!pretty)
+         return;
+      for (int n = 2 * indent; n > 0; n -= SPACES.length())
+         print(SPACES, 0, Math.min(n, SPACES.length()));
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Passes the buffered characters to the target
+    */
+   private void flushBuffer() throws OutputException {
+      if (count == 0)
+         return;
+      if (bytes != null) {
+         encodeBuffer();
+         return;
+      }
+      try {
+         if (out instanceof Writer)
+            ((Writer) out).write(buffer, 0, count);
+         else if (out instanceof StringBuilder)
+            ((StringBuilder) out).append(buffer, 0, count);
+         else
+            out.append(CharBuffer.wrap(buffer, 0, count));
+      }
+      catch (IOException e) {
+         throw new OutputException(e);
+      }
+      written += count;
+      count = 0;
+   }
+
+   /**
+    * Encodes the buffered characters into the byte buffer as UTF-8,
+    * sending the bytes to the channel or stream whenever it fills
+    */
+   private void encodeBuffer() throws OutputException {
+      ByteBuffer bytes = this.bytes;
+      for (int i = 0; i < count; i++) {
+         final char c = buffer[i];
+         if (c < 0x80) {
+            if (!bytes.hasRemaining())
+               bytes = nextBuffer();
+            bytes.put((byte) c);
+         }
+         else {
+            if (bytes.remaining() < 2)
+               bytes = nextBuffer();
+            bytes.put((byte) (0xC0 | (c >> 6)));
+            bytes.put((byte) (0x80 | (c & 0x3F)));
+         }
+      }
+      written += count;
+      count = 0;
+   }
+
+   /**
+    * Sends the bytes in the byte buffer, and any full buffers gathered
+    * before it, to the channel or stream and clears the buffer
+    * @throws BufferOverflowException if there is no channel or stream
+    */
+   private void sendBytes() throws OutputException {
+      if (channel == null && stream == null)
+         throw new BufferOverflowException();
+      bytes.flip();
+      try {
+         if (gather != null) {
+            sendGathered();
+         }
+         else if (channel != null) {
+            while (bytes.hasRemaining())
+               channel.write(bytes);
+         }
+         else {
+            stream.write(bytes.array(), bytes.arrayOffset(), bytes.limit());
+         }
+      }
+      catch (IOException e) {
+         throw new OutputException(e);
+      }
+      bytes.clear();
+   }
+
+   /**
+    * Makes the next spare buffer current when the current buffer is
+    * full, or sends the bytes if there are no more spare buffers
+    * @return the buffer into which to encode the rest of the output
+    */
+   private ByteBuffer nextBuffer() throws OutputException {
+      if (gather != null && filled < gather.length - 1) {
+         bytes.flip();
+         bytes = gather[++filled];
+         bytes.clear();
+      }
+      else {
+         sendBytes();
+      }
+      return bytes;
+   }
+
+   /**
+    * Sends the full buffers and the current one, which has been
+    * flipped, in gathering writes, and makes the first buffer current
+    */
+   private void sendGathered() throws IOException {
+      final GatheringByteChannel channel = (GatheringByteChannel) this.channel;
+      long remaining = 0;
+      for (int i = 0; i <= filled; i++)
+         remaining += gather[i].remaining();
+      while (remaining > 0)
+         remaining -= channel.write(gather, 0, filled + 1);
+      for (int i = 0; i <= filled; i++)
+         gather[i].clear();
+      filled = 0;
+      bytes = gather[0];
+   }
+
+   /**
+    * Returns the buffers to send together to a gathering channel, with
+    * a target buffer first, followed by spare buffers of the same size
+    * and kind
+    */
+   private ByteBuffer[] gatherBuffers(ByteBuffer target) {
+      if (spares == null
+            || spares[1].capacity() != target.capacity()
+            || spares[1].isDirect() != target.isDirect()) {
+         spares = new ByteBuffer[GATHER_BUFFERS];
+         for (int i = 1; i < GATHER_BUFFERS; i++) {
+            spares[i] = target.isDirect()
+                  ? ByteBuffer.allocateDirect(target.capacity())
+                  : ByteBuffer.allocate(target.capacity());
+         }
+      }
+      spares[0] = target;
+      return spares;
+   }
+}
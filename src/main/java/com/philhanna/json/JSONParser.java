@@ -1,10 +1,16 @@
 package com.philhanna.json;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.log4j.Logger;
 
@@ -19,6 +25,11 @@ public class JSONParser {
 
    private static final Logger log = Logger.getLogger(JSONParser.class);
 
+   private static final int BUFFER_SIZE = 8192;
+
+   private static final String ERRMSG_TRAILING = "Looking for end of input but found %s";
+   private static final String ERRMSG_TOO_LARGE = "File of %d bytes is too large to parse lazily (limit %d bytes)";
+
    // ====================================================================
    // Class methods
    // ====================================================================
@@ -35,6 +46,11 @@ public class JSONParser {
    // Instance variables
    // ====================================================================
 
+   private boolean lazy;
+   private ForkJoinPool pool;
+   private JSONSymbolTable symbolTable;
+   private ParseObserver observer;
+
    // ====================================================================
    // Constructors
    // ====================================================================
@@ -50,32 +66,158 @@ public class JSONParser {
    // ====================================================================
 
    /**
-    * Parses a JSON string. Creates a <code>StringReader</code> and
-    * delegates to the {@link #parse(Reader)} method.
+    * Returns <code>true</code> if the lazy attribute is true
+    * @return the lazy attribute
+    */
+   public boolean isLazy() {
+      return lazy;
+   }
+
+   /**
+    * Sets the lazy attribute. A lazy parser reads the whole input,
+    * checks its syntax and records where each value is, but returns
+    * objects and arrays whose members are decoded only when they are
+    * asked for with <code>get()</code> or <code>iterator()</code>. This
+    * is much cheaper when only a few members of a large document are
+    * used. The returned objects and arrays are copied into ordinary
+    * ones the first time they are changed. Parsing from a
+    * {@link JSONTokenizer} is never lazy.
+    * <p>
+    * UTF-8 input is indexed as bytes, without being decoded first, and
+    * a file is mapped into memory rather than read. Since the index
+    * records offsets as <code>int</code> values, lazy parsing is limited
+    * to {@value java.lang.Integer#MAX_VALUE} bytes or characters; a
+    * larger file causes a <code>JSONException</code>.
+    * @param lazy the lazy to set
+    */
+   public void setLazy(boolean lazy) {
+      this.lazy = lazy;
+   }
+
+   /**
+    * Returns the pool used to parse large arrays in parallel
+    * @return the pool, or <code>null</code> if parsing is sequential
+    */
+   public ForkJoinPool getPool() {
+      return pool;
+   }
+
+   /**
+    * Sets the pool used to parse large arrays in parallel. When a pool
+    * is set, a file, byte array or buffer whose top-level value is an
+    * array is first scanned quickly to find the boundaries between its
+    * elements. Chunks of elements are then parsed in the pool while the
+    * scan continues, and joined into one JSONArray in order. Other
+    * inputs, and documents that are not arrays, are parsed sequentially.
+    * A lazy parser does not use the pool.
+    * @param pool the pool, or <code>null</code> to parse sequentially
+    */
+   public void setPool(ForkJoinPool pool) {
+      this.pool = pool;
+   }
+
+   /**
+    * Returns the table used to share object keys across parses
+    * @return the table, or <code>null</code> if each parse uses its own
+    */
+   public JSONSymbolTable getSymbolTable() {
+      return symbolTable;
+   }
+
+   /**
+    * Sets the table used to share object keys. Every parse shares the
+    * keys of the objects it builds, so that members with the same name
+    * refer to one <code>String</code>. By default each parse has its
+    * own table, which keeps every key; setting a table here shares keys
+    * across parses as well, which helps when many small documents with
+    * the same keys are parsed, as in JSON Lines. A shared table has a
+    * fixed size and may forget keys that collide, and it may be used by
+    * several parsers in different threads at once. A parse that passes
+    * its contents to a {@link JSONHandler} builds no objects, and
+    * shares keys only if a table is set here.
+    * @param symbolTable the table, or <code>null</code> to use a new
+    *        table for each parse
+    */
+   public void setSymbolTable(JSONSymbolTable symbolTable) {
+      this.symbolTable = symbolTable;
+   }
+
+   /**
+    * Returns the observer told about each document parsed
+    * @return the observer, or <code>null</code> if there is none
+    */
+   public ParseObserver getObserver() {
+      return observer;
+   }
+
+   /**
+    * Sets the observer told about each document parsed, including
+    * documents passed to a {@link JSONHandler}, with statistics such as
+    * the time taken and the number of tokens read. Without an observer
+    * no statistics are collected, and the only cost is one test per
+    * token.
+    * @param observer the observer, or <code>null</code> for none
+    */
+   public void setObserver(ParseObserver observer) {
+      this.observer = observer;
+   }
+
+   /**
+    * Parses a JSON string.
     * @param input a string containing a JSON representation.
     * @return a JSONValue with the objects parsed from the string.
     * @throws JSONException if the JSON string is not well-formed
     * @throws IOException if there is an I/O error
     */
    public JSONValue parse(String input) throws JSONException, IOException {
-      final JSONValue output = parse(new StringReader(input));
-      return output;
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parse(input, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
    }
 
    /**
-    * Parses a JSON representation from a file. Creates a
-    * <code>FileReader</code> and delegates to the
-    * {@link #parse(Reader)} method.
+    * Parses a UTF-8 encoded JSON representation from a file. Delegates
+    * to the {@link #parse(Path)} method.
     * @param inputFile a file containing a JSON representation.
     * @return a JSONValue with the objects parsed from the file.
     * @throws JSONException if the JSON string is not well-formed
     * @throws IOException if there is an I/O error
     */
    public JSONValue parse(File inputFile) throws JSONException, IOException {
-      final JSONValue output = parse(new FileReader(inputFile));
+      final JSONValue output = parse(inputFile.toPath());
       return output;
    }
 
+   /**
+    * Parses a UTF-8 encoded JSON representation from a file by
+    * memory-mapping it and tokenizing the mapped bytes directly. Files
+    * larger than 2 GB are mapped one window at a time, except by a lazy
+    * parser, which maps the whole file at once.
+    * @param path the path of a file containing a JSON representation.
+    * @return a JSONValue with the objects parsed from the file.
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if there is an I/O error
+    */
+   public JSONValue parse(Path path) throws JSONException, IOException {
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parse(path, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
    /**
     * Parses a JSON representation from a <code>Reader</code>.
     * @param reader a <code>Reader</code> containing a JSON
@@ -85,17 +227,529 @@ public class JSONParser {
     * @throws IOException if there is an I/O error
     */
    public JSONValue parse(Reader reader) throws JSONException, IOException {
-      log.debug("Entry");
-      final JSONTokenizer tokenizer = new DefaultJSONTokenizer(reader);
-      final String token = tokenizer.readToken();
-      if (token == null) {
-         log.debug("No tokens found");
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parse(reader, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
+   /**
+    * Parses a UTF-8 encoded JSON representation from an
+    * <code>InputStream</code>. The bytes are tokenized directly,
+    * without first being decoded by an <code>InputStreamReader</code>.
+    * @param stream an <code>InputStream</code> containing a JSON
+    *        representation.
+    * @return a JSONValue with the objects parsed from the stream.
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if there is an I/O error
+    */
+   public JSONValue parse(InputStream stream)
+         throws JSONException, IOException {
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parse(stream, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
+   /**
+    * Parses a UTF-8 encoded JSON representation from a byte array.
+    * @param bytes an array containing a JSON representation.
+    * @return a JSONValue with the objects parsed from the array.
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if there is an I/O error
+    */
+   public JSONValue parse(byte[] bytes) throws JSONException, IOException {
+      final JSONValue output = parse(ByteBuffer.wrap(bytes));
+      return output;
+   }
+
+   /**
+    * Parses a UTF-8 encoded JSON representation from the remaining
+    * bytes of a heap or direct <code>ByteBuffer</code>. The position of
+    * the buffer is not changed.
+    * @param buffer a buffer containing a JSON representation.
+    * @return a JSONValue with the objects parsed from the buffer.
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if there is an I/O error
+    */
+   public JSONValue parse(ByteBuffer buffer)
+         throws JSONException, IOException {
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parse(buffer, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
+   /**
+    * Parses a JSON representation from the tokens provided by a
+    * tokenizer.
+    * @param tokenizer the source of tokens
+    * @return a JSONValue with the objects parsed from the tokens.
+    * @throws JSONException if the JSON string is not well-formed
+    * @throws IOException if there is an I/O error
+    */
+   public JSONValue parse(JSONTokenizer tokenizer)
+         throws JSONException, IOException {
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parse(tokenizer, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
+   /**
+    * Parses a JSON string, passing its contents to a handler. Creates a
+    * <code>StringReader</code> and delegates to the
+    * {@link #parse(Reader, JSONHandler)} method.
+    * @param input a string containing a JSON representation.
+    * @param handler the handler that receives the parsed contents
+    * @throws JSONException if the JSON string is not well-formed or the
+    *         handler throws an exception
+    * @throws IOException if there is an I/O error
+    */
+   public void parse(String input, JSONHandler handler)
+         throws JSONException, IOException {
+      parse(new StringReader(input), handler);
+   }
+
+   /**
+    * Parses a JSON representation from a <code>Reader</code>, passing
+    * its contents to a handler as they are read. No tree of JSONValue
+    * objects is built.
+    * @param reader a <code>Reader</code> containing a JSON
+    *        representation.
+    * @param handler the handler that receives the parsed contents
+    * @throws JSONException if the JSON string is not well-formed or the
+    *         handler throws an exception
+    * @throws IOException if there is an I/O error
+    */
+   public void parse(Reader reader, JSONHandler handler)
+         throws JSONException, IOException {
+      parse(configure(new DefaultJSONTokenizer(reader)), handler);
+   }
+
+   /**
+    * Parses a UTF-8 encoded JSON representation from an
+    * <code>InputStream</code>, passing its contents to a handler as
+    * they are read. No tree of JSONValue objects is built.
+    * @param stream an <code>InputStream</code> containing a JSON
+    *        representation.
+    * @param handler the handler that receives the parsed contents
+    * @throws JSONException if the JSON string is not well-formed or the
+    *         handler throws an exception
+    * @throws IOException if there is an I/O error
+    */
+   public void parse(InputStream stream, JSONHandler handler)
+         throws JSONException, IOException {
+      parse(configure(new UTF8JSONTokenizer(stream)), handler);
+   }
+
+   /**
+    * Parses a JSON representation from the tokens provided by a
+    * tokenizer, passing its contents to a handler as they are read.
+    * @param tokenizer the source of tokens
+    * @param handler the handler that receives the parsed contents
+    * @throws JSONException if the JSON string is not well-formed or the
+    *         handler throws an exception
+    * @throws IOException if there is an I/O error
+    */
+   public void parse(JSONTokenizer tokenizer, JSONHandler handler)
+         throws JSONException, IOException {
+      final ParseStatistics statistics = start();
+      try {
+         observe(tokenizer, statistics);
+         parse(new JSONEventReader(tokenizer), handler);
+         if (statistics != null)
+            statistics.end(null, offsetOf(tokenizer), isUTF8(tokenizer));
+         end(statistics, null);
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
+   /**
+    * Parses a string that must hold one JSON value and nothing after it
+    * but whitespace, as each line of a JSON Lines file must. The other
+    * <code>parse</code> methods ignore anything after the first value.
+    * @param input a string containing a JSON representation
+    * @return a JSONValue, or <code>null</code> if the string is blank
+    * @throws JSONException if the JSON string is not well-formed or
+    *         anything follows the value
+    * @throws IOException if there is an I/O error
+    */
+   JSONValue parseComplete(String input) throws JSONException, IOException {
+      final ParseStatistics statistics = start();
+      try {
+         return end(statistics, parseComplete(input, statistics));
+      }
+      catch (JSONException e) {
+         throw fail(statistics, e);
+      }
+      catch (IOException e) {
+         throw fail(statistics, e);
+      }
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Parses a string that must hold only one value, collecting
+    * statistics if they are not <code>null</code>
+    */
+   private JSONValue parseComplete(String input, ParseStatistics statistics)
+         throws JSONException, IOException {
+      if (lazy) {
+         final JSONValue value = JSONIndex.parse(
+               input.toCharArray(),
+               input.length(),
+               symbolTable,
+               statistics,
+               true);
+         if (statistics != null)
+            statistics.end(value, input.length(), false);
+         return value;
+      }
+      final DefaultJSONTokenizer tokenizer = configure(
+            new DefaultJSONTokenizer(new StringReader(input)));
+      final JSONValue value = parse(tokenizer, statistics);
+      if (value != null && tokenizer.nextToken() != null) {
+         final String errmsg = String
+               .format(ERRMSG_TRAILING, tokenizer.getText());
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
+      }
+      return value;
+   }
+
+   /**
+    * Passes the events of one top-level value to a handler
+    */
+   private void parse(JSONEventReader reader, JSONHandler handler)
+         throws JSONException, IOException {
+      JSONEvent event;
+      while ((event = reader.next()) != null) {
+         switch (event) {
+            case START_OBJECT:
+               handler.startObject();
+               continue;
+            case END_OBJECT:
+               handler.endObject();
+               break;
+            case START_ARRAY:
+               handler.startArray();
+               continue;
+            case END_ARRAY:
+               handler.endArray();
+               break;
+            case FIELD_NAME:
+               handler.key(reader.getString());
+               break;
+            case VALUE_STRING:
+               handler.stringValue(reader.getString());
+               break;
+            case VALUE_NUMBER:
+               handler.numberValue(reader.getNumber());
+               break;
+            case VALUE_TRUE:
+               handler.booleanValue(true);
+               break;
+            case VALUE_FALSE:
+               handler.booleanValue(false);
+               break;
+            case VALUE_NULL:
+               handler.nullValue();
+               break;
+         }
+
+         // Stop after one complete top-level value
+
+         if (reader.getDepth() == 0)
+            break;
+      }
+   }
+
+   /**
+    * Parses a string, collecting statistics if they are not
+    * <code>null</code>
+    */
+   private JSONValue parse(String input, ParseStatistics statistics)
+         throws JSONException, IOException {
+      if (lazy)
+         return parseLazy(input.toCharArray(), input.length(), statistics);
+      return parse(new StringReader(input), statistics);
+   }
+
+   /**
+    * Parses a file, collecting statistics if they are not
+    * <code>null</code>
+    */
+   private JSONValue parse(Path path, ParseStatistics statistics)
+         throws JSONException, IOException {
+      final FileChannel channel = FileChannel
+            .open(path, StandardOpenOption.READ);
+      try {
+         if (lazy) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+               final String errmsg = String
+                     .format(ERRMSG_TOO_LARGE, size, Integer.MAX_VALUE);
+               log.debug(errmsg);
+               throw new JSONException(errmsg);
+            }
+            return parseLazy(
+                  channel.map(FileChannel.MapMode.READ_ONLY, 0, size),
+                  statistics);
+         }
+         if (pool != null) {
+            final JSONArray array = ParallelArrayParser.parse(
+                  pool,
+                  channel,
+                  ParallelArrayParser.MIN_CHUNK_SIZE,
+                  MappedJSONTokenizer.WINDOW_SIZE,
+                  symbolTable,
+                  statistics);
+            if (array != null) {
+               if (statistics != null)
+                  statistics.end(array, channel.size(), true);
+               return array;
+            }
+         }
+         return parse(configure(new MappedJSONTokenizer(channel)), statistics);
+      }
+      finally {
+         channel.close();
+      }
+   }
+
+   /**
+    * Parses the characters from a reader, collecting statistics if they
+    * are not <code>null</code>
+    */
+   private JSONValue parse(Reader reader, ParseStatistics statistics)
+         throws JSONException, IOException {
+      if (lazy)
+         return parseLazy(reader, statistics);
+      return parse(configure(new DefaultJSONTokenizer(reader)), statistics);
+   }
+
+   /**
+    * Parses the bytes from an input stream, collecting statistics if
+    * they are not <code>null</code>
+    */
+   private JSONValue parse(InputStream stream, ParseStatistics statistics)
+         throws JSONException, IOException {
+      if (lazy)
+         return parseLazy(readAll(stream), statistics);
+      return parse(configure(new UTF8JSONTokenizer(stream)), statistics);
+   }
+
+   /**
+    * Parses the remaining bytes of a buffer, collecting statistics if
+    * they are not <code>null</code>
+    */
+   private JSONValue parse(ByteBuffer buffer, ParseStatistics statistics)
+         throws JSONException, IOException {
+      if (lazy)
+         return parseLazy(buffer, statistics);
+      if (pool != null) {
+         final JSONArray array = ParallelArrayParser.parse(
+               pool,
+               buffer,
+               ParallelArrayParser.MIN_CHUNK_SIZE,
+               symbolTable,
+               statistics);
+         if (array != null) {
+            if (statistics != null)
+               statistics.end(array, buffer.remaining(), true);
+            return array;
+         }
+      }
+      return parse(configure(new UTF8JSONTokenizer(buffer)), statistics);
+   }
+
+   /**
+    * Parses the tokens from a tokenizer, collecting statistics if they
+    * are not <code>null</code>
+    */
+   private JSONValue parse(
+         JSONTokenizer tokenizer,
+         ParseStatistics statistics) throws JSONException, IOException {
+      observe(tokenizer, statistics);
+      AbstractJSONTokenizer source = null;
+      if (tokenizer instanceof AbstractJSONTokenizer) {
+         source = (AbstractJSONTokenizer) tokenizer;
+         source.endParse();
+      }
+      try {
+         final JSONTokenType token = tokenizer.nextToken();
+         final JSONValue value = token == null
+               ? null
+               : JSONValue.parse(token, tokenizer);
+         if (statistics != null)
+            statistics.end(value, offsetOf(tokenizer), isUTF8(tokenizer));
+         return value;
+      }
+      finally {
+         if (source != null)
+            source.endParse();
+      }
+   }
+
+   /**
+    * Returns new statistics for a document and tells the observer that
+    * it has started, or returns <code>null</code> if there is no
+    * observer
+    */
+   private ParseStatistics start() {
+      if (observer == null)
          return null;
+      observer.documentStarted();
+      return new ParseStatistics();
+   }
+
+   /**
+    * Tells the observer, if there is one, that a document has been
+    * parsed, and returns its value
+    */
+   private JSONValue end(ParseStatistics statistics, JSONValue value) {
+      if (statistics != null)
+         observer.documentEnded(statistics);
+      return value;
+   }
+
+   /**
+    * Tells the observer, if there is one, that a document could not be
+    * parsed, and returns the exception to be thrown
+    */
+   private <E extends Exception> E fail(ParseStatistics statistics, E e) {
+      if (statistics != null) {
+         statistics.end(null, -1, false);
+         observer.documentFailed(statistics, e);
+      }
+      return e;
+   }
+
+   /**
+    * Has a tokenizer in this package count its tokens in the specified
+    * statistics
+    */
+   private static void observe(
+         JSONTokenizer tokenizer,
+         ParseStatistics statistics) {
+      if (statistics != null && tokenizer instanceof AbstractJSONTokenizer)
+         ((AbstractJSONTokenizer) tokenizer).setStatistics(statistics);
+   }
+
+   /**
+    * Returns the amount of input a tokenizer has consumed, or -1 if it
+    * is not known
+    */
+   private static long offsetOf(JSONTokenizer tokenizer) {
+      return tokenizer instanceof AbstractJSONTokenizer
+            ? ((AbstractJSONTokenizer) tokenizer).getOffset()
+            : -1;
+   }
+
+   /**
+    * Returns <code>true</code> if a tokenizer reads UTF-8 bytes
+    */
+   private static boolean isUTF8(JSONTokenizer tokenizer) {
+      return tokenizer instanceof UTF8JSONTokenizer;
+   }
+
+   /**
+    * Gives a tokenizer created by this parser the shared symbol table,
+    * if there is one
+    */
+   private <T extends AbstractJSONTokenizer> T configure(T tokenizer) {
+      tokenizer.setSymbolTable(symbolTable);
+      return tokenizer;
+   }
+
+   /**
+    * Reads all the characters from a reader and indexes them
+    */
+   private JSONValue parseLazy(Reader reader, ParseStatistics statistics)
+         throws JSONException, IOException {
+      char[] chars = new char[BUFFER_SIZE];
+      int length = 0;
+      int n;
+      while ((n = reader.read(chars, length, chars.length - length)) > 0) {
+         length += n;
+         if (length == chars.length)
+            chars = Arrays.copyOf(chars, length * 2);
       }
-      final JSONValue value = JSONValue.parse(token, tokenizer);
-      log.debug(String.format("Return JSON value of type %s", value.getType()));
-      log.debug("Exit");
+      return parseLazy(chars, length, statistics);
+   }
+
+   /**
+    * Indexes the remaining bytes of a UTF-8 buffer, without changing
+    * its position
+    */
+   private JSONValue parseLazy(ByteBuffer buffer, ParseStatistics statistics)
+         throws JSONException {
+      final JSONValue value = JSONIndex
+            .parse(buffer, symbolTable, statistics);
+      if (statistics != null)
+         statistics.end(value, buffer.remaining(), true);
       return value;
    }
 
+   /**
+    * Indexes an array of characters
+    */
+   private JSONValue parseLazy(
+         char[] chars,
+         int length,
+         ParseStatistics statistics) throws JSONException {
+      final JSONValue value = JSONIndex
+            .parse(chars, length, symbolTable, statistics);
+      if (statistics != null)
+         statistics.end(value, length, false);
+      return value;
+   }
+
+   /**
+    * Reads all the bytes from an input stream
+    */
+   private ByteBuffer readAll(InputStream stream) throws IOException {
+      byte[] bytes = new byte[BUFFER_SIZE];
+      int length = 0;
+      int n;
+      while ((n = stream.read(bytes, length, bytes.length - length)) > 0) {
+         length += n;
+         if (length == bytes.length)
+            bytes = Arrays.copyOf(bytes, length * 2);
+      }
+      return ByteBuffer.wrap(bytes, 0, length);
+   }
 }
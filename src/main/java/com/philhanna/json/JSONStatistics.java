@@ -0,0 +1,731 @@
+package com.philhanna.json;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Cumulative and recent counters for the documents read by parsers and
+ * written by writers, published as a JMX MBean. One instance may be
+ * shared by any number of parsers and writers in any threads:
+ *
+ * <pre>
+ * JSONStatistics statistics = new JSONStatistics();
+ * statistics.register("ingest");
+ * parser.setObserver(statistics);
+ * writer.setStatistics(statistics);
+ * </pre>
+ *
+ * The counters are then visible in a JMX console under the name
+ * <code>com.philhanna.json:type=JSONStatistics,name=ingest</code>.
+ * <p>
+ * The counters are updated without locking, so that parsers in many
+ * threads do not wait for each other. A set of counters read while
+ * documents are being counted may therefore include a document in some
+ * counters and not yet in others.
+ * <p>
+ * Parsing times are counted in a latency histogram, with a row for each
+ * document size bucket and a column for each parsing time bucket.
+ * <p>
+ * Each parse or write that takes longer than a threshold is also kept
+ * as a {@link SlowOperation}, with its size, root type, depth and
+ * thread, so that slow requests can be matched with the documents that
+ * caused them. Only the most recent slow operations are kept.
+ */
+public class JSONStatistics implements ParseObserver, JSONStatisticsMXBean {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   /**
+    * Number of seconds covered by the recent counters
+    */
+   public static final int WINDOW_SECONDS = 60;
+
+   /**
+    * Number of slow operations kept
+    */
+   public static final int MAX_SLOW_OPERATIONS = 64;
+
+   /**
+    * Default time above which an operation is slow: 100 milliseconds
+    */
+   public static final long DEFAULT_SLOW_NANOS = 100000000L;
+
+   /**
+    * Domain and type of the names under which statistics are registered
+    */
+   public static final String OBJECT_NAME = "com.philhanna.json:type=JSONStatistics,name=%s";
+
+   // Upper bounds of the document size buckets, in bytes or characters;
+   // the last bucket has no bound
+
+   private static final long[] BUCKET_LIMITS = { 1L << 10, 1L << 14, 1L << 18, 1L << 22, 1L << 26 };
+   private static final String[] BUCKET_LABELS = { "< 1K", "< 16K", "< 256K", "< 4M", "< 64M", ">= 64M" };
+
+   // Upper bounds of the parsing time buckets, in nanoseconds; the last
+   // bucket has no bound
+
+   private static final long[] LATENCY_LIMITS = { 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+   private static final String[] LATENCY_LABELS = { "< 10us", "< 100us", "< 1ms", "< 10ms", "< 100ms", "< 1s", ">= 1s" };
+
+   private static final long NANOS_PER_SECOND = 1000000000L;
+
+   // Seconds recorded for a recent counter slot that has not been used,
+   // and for one that is being cleared for reuse
+
+   private static final long UNUSED = Long.MIN_VALUE + 1;
+   private static final long CLEARING = Long.MIN_VALUE;
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   // Parser counters
+
+   private final LongAdder documentsParsed = new LongAdder();
+   private final LongAdder parseFailures = new LongAdder();
+   private final ConcurrentMap<String, LongAdder> parseFailuresByType = new ConcurrentHashMap<String, LongAdder>();
+   private final LongAdder bytesParsed = new LongAdder();
+   private final LongAdder charsParsed = new LongAdder();
+   private final LongAdder tokensParsed = new LongAdder();
+   private final LongAdder parseNanos = new LongAdder();
+   private final LongAdder byteParseNanos = new LongAdder();
+   private final LongAdder charParseNanos = new LongAdder();
+   private final LongAdder depthTotal = new LongAdder();
+   private final AtomicLong maxDepth = new AtomicLong();
+
+   // Latency histogram, one row for each size bucket and one column
+   // for each time bucket, stored by rows, with the total and longest
+   // time of each size bucket
+
+   private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_LABELS.length * LATENCY_LABELS.length);
+   private final AtomicLongArray bucketNanos = new AtomicLongArray(BUCKET_LABELS.length);
+   private final AtomicLongArray bucketMaxNanos = new AtomicLongArray(BUCKET_LABELS.length);
+
+   // Writer counters
+
+   private final LongAdder documentsWritten = new LongAdder();
+   private final LongAdder writeFailures = new LongAdder();
+   private final LongAdder charsWritten = new LongAdder();
+   private final LongAdder writeNanos = new LongAdder();
+
+   // Recent counters, one slot for each second of the window. A slot
+   // belongs to the second recorded for it, and is cleared when it is
+   // reused for a later second.
+
+   private final AtomicLongArray slotSeconds = new AtomicLongArray(WINDOW_SECONDS);
+   private final AtomicLongArray slotParsed = new AtomicLongArray(WINDOW_SECONDS);
+   private final AtomicLongArray slotFailures = new AtomicLongArray(WINDOW_SECONDS);
+   private final AtomicLongArray slotBytes = new AtomicLongArray(WINDOW_SECONDS);
+   private final AtomicLongArray slotChars = new AtomicLongArray(WINDOW_SECONDS);
+   private final AtomicLongArray slotWritten = new AtomicLongArray(WINDOW_SECONDS);
+   private volatile long firstSecond = currentSecond();
+
+   // Thresholds for slow operations, and the most recent slow
+   // operations in a ring, with the total number recorded. The ring is
+   // guarded by its own lock, which only slow operations take.
+
+   private volatile long slowParseNanos = DEFAULT_SLOW_NANOS;
+   private volatile long slowWriteNanos = DEFAULT_SLOW_NANOS;
+   private final SlowOperation[] slowOperations = new SlowOperation[MAX_SLOW_OPERATIONS];
+   private long slowOperationCount;
+
+   // The name under which this instance is registered
+
+   private ObjectName objectName;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new set of statistics with all counters at zero
+    */
+   public JSONStatistics() {
+      for (int i = 0; i < WINDOW_SECONDS; i++)
+         slotSeconds.set(i, UNUSED);
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Registers these statistics with the platform MBean server
+    * @param name the value of the <code>name</code> key of the object
+    *        name, which is quoted if necessary
+    * @return the object name
+    * @throws JMException if the statistics cannot be registered, for
+    *         example because the name is already in use
+    */
+   public synchronized ObjectName register(String name) throws JMException {
+      final ObjectName objectName = new ObjectName(
+            String.format(OBJECT_NAME, quote(name)));
+      ManagementFactory.getPlatformMBeanServer()
+            .registerMBean(this, objectName);
+      this.objectName = objectName;
+      return objectName;
+   }
+
+   /**
+    * Removes these statistics from the platform MBean server, if they
+    * were registered
+    * @throws JMException if the statistics cannot be unregistered
+    */
+   public synchronized void unregister() throws JMException {
+      if (objectName != null) {
+         ManagementFactory.getPlatformMBeanServer()
+               .unregisterMBean(objectName);
+         objectName = null;
+      }
+   }
+
+   // ====================================================================
+   // Implementation of ParseObserver
+   // ====================================================================
+
+   @Override
+   public void documentStarted() {
+   }
+
+   @Override
+   public void documentEnded(ParseStatistics statistics) {
+      final long nanos = statistics.getElapsedNanos();
+      final long length = statistics.getInputLength();
+      final int slot = slot();
+      documentsParsed.increment();
+      if (statistics.isInputBytes()) {
+         bytesParsed.add(length);
+         byteParseNanos.add(nanos);
+         add(slotBytes, slot, length);
+      }
+      else {
+         charsParsed.add(length);
+         charParseNanos.add(nanos);
+         add(slotChars, slot, length);
+      }
+      tokensParsed.add(statistics.getTokens());
+      parseNanos.add(nanos);
+      depthTotal.add(statistics.getMaxDepth());
+      max(maxDepth, statistics.getMaxDepth());
+      final int bucket = bucketOf(BUCKET_LIMITS, length);
+      histogram.incrementAndGet(bucket * LATENCY_LABELS.length
+            + bucketOf(LATENCY_LIMITS, nanos));
+      bucketNanos.addAndGet(bucket, nanos);
+      max(bucketMaxNanos, bucket, nanos);
+      add(slotParsed, slot, 1);
+      if (nanos > slowParseNanos)
+         recordSlowParse(statistics);
+   }
+
+   @Override
+   public void documentFailed(
+         ParseStatistics statistics,
+         Exception e) {
+      parseFailures.increment();
+      final JSONTokenType token = statistics.getLastToken();
+      final String type = e.getClass().getSimpleName()
+            + (token == null
+                  ? " at start"
+                  : " after " + token);
+      LongAdder count = parseFailuresByType.get(type);
+      if (count == null) {
+         final LongAdder newCount = new LongAdder();
+         count = parseFailuresByType.putIfAbsent(type, newCount);
+         if (count == null)
+            count = newCount;
+      }
+      count.increment();
+      add(slotFailures, slot(), 1);
+      if (statistics.getElapsedNanos() > slowParseNanos)
+         recordSlowParse(statistics);
+   }
+
+   // ====================================================================
+   // Implementation of JSONStatisticsMXBean
+   // ====================================================================
+
+   @Override
+   public long getDocumentsParsed() {
+      return documentsParsed.sum();
+   }
+
+   @Override
+   public long getParseFailures() {
+      return parseFailures.sum();
+   }
+
+   @Override
+   public Map<String, Long> getParseFailuresByType() {
+      final Map<String, Long> counts = new TreeMap<String, Long>();
+      for (final Map.Entry<String, LongAdder> entry : parseFailuresByType
+            .entrySet()) {
+         final long count = entry.getValue().sum();
+         if (count > 0)
+            counts.put(entry.getKey(), count);
+      }
+      return counts;
+   }
+
+   @Override
+   public long getBytesParsed() {
+      return bytesParsed.sum();
+   }
+
+   @Override
+   public long getCharsParsed() {
+      return charsParsed.sum();
+   }
+
+   @Override
+   public long getTokensParsed() {
+      return tokensParsed.sum();
+   }
+
+   @Override
+   public long getParseNanos() {
+      return parseNanos.sum();
+   }
+
+   @Override
+   public double getByteThroughput() {
+      return rate(bytesParsed.sum(), byteParseNanos.sum());
+   }
+
+   @Override
+   public double getCharThroughput() {
+      return rate(charsParsed.sum(), charParseNanos.sum());
+   }
+
+   @Override
+   public double getAverageDepth() {
+      final long documents = documentsParsed.sum();
+      return documents == 0
+            ? 0
+            : (double) depthTotal.sum() / documents;
+   }
+
+   @Override
+   public int getMaxDepth() {
+      return (int) maxDepth.get();
+   }
+
+   @Override
+   public String[] getSizeBuckets() {
+      return BUCKET_LABELS.clone();
+   }
+
+   @Override
+   public long[] getDocumentsBySize() {
+      final long[][] histogram = getLatencyHistogram();
+      final long[] documents = new long[histogram.length];
+      for (int i = 0; i < histogram.length; i++) {
+         for (final long count : histogram[i])
+            documents[i] += count;
+      }
+      return documents;
+   }
+
+   @Override
+   public long[] getAverageNanosBySize() {
+      final long[] documents = getDocumentsBySize();
+      final long[] averages = new long[documents.length];
+      for (int i = 0; i < averages.length; i++) {
+         if (documents[i] > 0)
+            averages[i] = bucketNanos.get(i) / documents[i];
+      }
+      return averages;
+   }
+
+   @Override
+   public long[] getMaxNanosBySize() {
+      return toArray(bucketMaxNanos);
+   }
+
+   @Override
+   public String[] getLatencyBuckets() {
+      return LATENCY_LABELS.clone();
+   }
+
+   @Override
+   public long[][] getLatencyHistogram() {
+      final long[][] counts = new long[BUCKET_LABELS.length][];
+      for (int i = 0; i < counts.length; i++) {
+         counts[i] = new long[LATENCY_LABELS.length];
+         for (int j = 0; j < counts[i].length; j++)
+            counts[i][j] = histogram.get(i * LATENCY_LABELS.length + j);
+      }
+      return counts;
+   }
+
+   @Override
+   public long getRecentDocumentsParsed() {
+      return recent(slotParsed);
+   }
+
+   @Override
+   public long getRecentParseFailures() {
+      return recent(slotFailures);
+   }
+
+   @Override
+   public double getRecentByteThroughput() {
+      return (double) recent(slotBytes) / recentSeconds();
+   }
+
+   @Override
+   public double getRecentCharThroughput() {
+      return (double) recent(slotChars) / recentSeconds();
+   }
+
+   @Override
+   public long getDocumentsWritten() {
+      return documentsWritten.sum();
+   }
+
+   @Override
+   public long getWriteFailures() {
+      return writeFailures.sum();
+   }
+
+   @Override
+   public long getCharsWritten() {
+      return charsWritten.sum();
+   }
+
+   @Override
+   public long getWriteNanos() {
+      return writeNanos.sum();
+   }
+
+   @Override
+   public double getWriteThroughput() {
+      return rate(charsWritten.sum(), writeNanos.sum());
+   }
+
+   @Override
+   public long getRecentDocumentsWritten() {
+      return recent(slotWritten);
+   }
+
+   @Override
+   public long getSlowParseNanos() {
+      return slowParseNanos;
+   }
+
+   @Override
+   public void setSlowParseNanos(long nanos) {
+      this.slowParseNanos = nanos;
+   }
+
+   @Override
+   public long getSlowWriteNanos() {
+      return slowWriteNanos;
+   }
+
+   @Override
+   public void setSlowWriteNanos(long nanos) {
+      this.slowWriteNanos = nanos;
+   }
+
+   @Override
+   public long getSlowOperationCount() {
+      synchronized (slowOperations) {
+         return slowOperationCount;
+      }
+   }
+
+   @Override
+   public SlowOperation[] getSlowOperations() {
+      synchronized (slowOperations) {
+         final int n = (int) Math
+               .min(slowOperationCount, MAX_SLOW_OPERATIONS);
+         final SlowOperation[] operations = new SlowOperation[n];
+         for (int i = 0; i < n; i++) {
+            operations[i] = slowOperations[(int) ((slowOperationCount - n
+                  + i) % MAX_SLOW_OPERATIONS)];
+         }
+         return operations;
+      }
+   }
+
+   /**
+    * Sets all the counters back to zero. Documents counted while the
+    * counters are being reset may be counted in part.
+    */
+   @Override
+   public void reset() {
+      documentsParsed.reset();
+      parseFailures.reset();
+      parseFailuresByType.clear();
+      bytesParsed.reset();
+      charsParsed.reset();
+      tokensParsed.reset();
+      parseNanos.reset();
+      byteParseNanos.reset();
+      charParseNanos.reset();
+      depthTotal.reset();
+      maxDepth.set(0);
+      for (int i = 0; i < histogram.length(); i++)
+         histogram.set(i, 0);
+      for (int i = 0; i < BUCKET_LABELS.length; i++) {
+         bucketNanos.set(i, 0);
+         bucketMaxNanos.set(i, 0);
+      }
+      documentsWritten.reset();
+      writeFailures.reset();
+      charsWritten.reset();
+      writeNanos.reset();
+      for (int i = 0; i < WINDOW_SECONDS; i++) {
+         clear(i);
+         slotSeconds.set(i, UNUSED);
+      }
+      firstSecond = currentSecond();
+      synchronized (slowOperations) {
+         for (int i = 0; i < MAX_SLOW_OPERATIONS; i++)
+            slowOperations[i] = null;
+         slowOperationCount = 0;
+      }
+   }
+
+   // ====================================================================
+   // Package methods
+   // ====================================================================
+
+   /**
+    * Counts a document written by a {@link JSONWriter}
+    * @param rootType the type of the value written
+    * @param chars the number of characters written
+    * @param depth the greatest nesting depth of the value
+    * @param nanos the time taken, in nanoseconds
+    */
+   void documentWritten(
+         JSONType rootType,
+         long chars,
+         int depth,
+         long nanos) {
+      documentsWritten.increment();
+      charsWritten.add(chars);
+      writeNanos.add(nanos);
+      add(slotWritten, slot(), 1);
+      if (nanos > slowWriteNanos) {
+         record(new SlowOperation(
+               SlowOperation.WRITE,
+               startTime(nanos),
+               Thread.currentThread().getName(),
+               chars,
+               "chars",
+               rootType,
+               depth,
+               nanos));
+      }
+   }
+
+   /**
+    * Counts a document that a {@link JSONWriter} failed to write
+    */
+   void writeFailed() {
+      writeFailures.increment();
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Keeps a record of a slow parse
+    */
+   private void recordSlowParse(ParseStatistics statistics) {
+      record(new SlowOperation(
+            SlowOperation.PARSE,
+            startTime(statistics.getElapsedNanos()),
+            Thread.currentThread().getName(),
+            statistics.getInputLength(),
+            statistics.isInputBytes()
+                  ? "bytes"
+                  : "chars",
+            statistics.getRootType(),
+            statistics.getMaxDepth(),
+            statistics.getElapsedNanos()));
+   }
+
+   /**
+    * Adds a slow operation to the ring, replacing the oldest if it is
+    * full
+    */
+   private void record(SlowOperation operation) {
+      synchronized (slowOperations) {
+         final int i = (int) (slowOperationCount++ % MAX_SLOW_OPERATIONS);
+         slowOperations[i] = operation;
+      }
+   }
+
+   /**
+    * Returns the slot for the current second, clearing it if it was
+    * last used for an earlier second, or -1 if the slot already belongs
+    * to a later second, as it may when another thread has moved on. A
+    * thread that finds the slot being cleared waits for it, so that no
+    * count is added to a slot before it is cleared.
+    */
+   private int slot() {
+      final long second = currentSecond();
+      final int slot = (int) ((second % WINDOW_SECONDS + WINDOW_SECONDS)
+            % WINDOW_SECONDS);
+      for (;;) {
+         final long owner = slotSeconds.get(slot);
+         if (owner == second)
+            return slot;
+         if (owner == CLEARING) {
+            Thread.yield();
+         }
+         else if (owner > second) {
+            return -1;
+         }
+         else if (slotSeconds.compareAndSet(slot, owner, CLEARING)) {
+            clear(slot);
+            slotSeconds.set(slot, second);
+            return slot;
+         }
+      }
+   }
+
+   /**
+    * Sets the counters of a slot to zero
+    */
+   private void clear(int slot) {
+      slotParsed.set(slot, 0);
+      slotFailures.set(slot, 0);
+      slotBytes.set(slot, 0);
+      slotChars.set(slot, 0);
+      slotWritten.set(slot, 0);
+   }
+
+   /**
+    * Returns the sum of the slots of a counter that are in the window
+    */
+   private long recent(AtomicLongArray counter) {
+      final long oldest = currentSecond() - WINDOW_SECONDS;
+      long sum = 0;
+      for (int i = 0; i < WINDOW_SECONDS; i++) {
+         if (slotSeconds.get(i) > oldest)
+            sum += counter.get(i);
+      }
+      return sum;
+   }
+
+   /**
+    * Returns the number of seconds covered by the recent counters, which
+    * is less than the window until the window has passed
+    */
+   private long recentSeconds() {
+      return Math.min(WINDOW_SECONDS, currentSecond() - firstSecond + 1);
+   }
+
+   // ====================================================================
+   // Private class methods
+   // ====================================================================
+
+   /**
+    * Returns the index of the bucket for a value, given the upper bounds
+    * of all the buckets but the last
+    */
+   private static int bucketOf(long[] limits, long value) {
+      int bucket = 0;
+      while (bucket < limits.length && value >= limits[bucket])
+         bucket++;
+      return bucket;
+   }
+
+   /**
+    * Adds to a recent counter, unless the slot is -1
+    */
+   private static void add(AtomicLongArray counter, int slot, long delta) {
+      if (slot >= 0)
+         counter.addAndGet(slot, delta);
+   }
+
+   /**
+    * Raises a maximum to a value, if the value is greater
+    */
+   private static void max(AtomicLong maximum, long value) {
+      long current;
+      while (value > (current = maximum.get())
+            && !maximum.compareAndSet(current, value))
+         ;
+   }
+
+   /**
+    * Raises an element of an array of maximums to a value, if the value
+    * is greater
+    */
+   private static void max(AtomicLongArray maximums, int i, long value) {
+      long current;
+      while (value > (current = maximums.get(i))
+            && !maximums.compareAndSet(i, current, value))
+         ;
+   }
+
+   /**
+    * Returns the elements of an atomic array
+    */
+   private static long[] toArray(AtomicLongArray array) {
+      final long[] values = new long[array.length()];
+      for (int i = 0; i < values.length; i++)
+         values[i] = array.get(i);
+      return values;
+   }
+
+   /**
+    * Returns a count per second of elapsed time
+    */
+   private static double rate(long count, long nanos) {
+      return nanos == 0
+            ? 0
+            : (double) count * NANOS_PER_SECOND / nanos;
+   }
+
+   /**
+    * Returns the wall clock time at which an operation that has just
+    * ended started
+    */
+   private static long startTime(long elapsedNanos) {
+      return System.currentTimeMillis() - elapsedNanos / 1000000L;
+   }
+
+   /**
+    * Returns the number of whole seconds on the monotonic clock
+    */
+   private static long currentSecond() {
+      return System.nanoTime() / NANOS_PER_SECOND;
+   }
+
+   /**
+    * Quotes a name for use as the value of an object name key, unless
+    * it can be used as it is
+    */
+   private static String quote(String name) {
+      for (int i = 0; i < name.length(); i++) {
+         switch (name.charAt(i)) {
+            case ',':
+            case '=':
+            case ':':
+            case '"':
+            case '*':
+            case '?':
+            case '\n':
+               return ObjectName.quote(name);
+         }
+      }
+      return name;
+   }
+}
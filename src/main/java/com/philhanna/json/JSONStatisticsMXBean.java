@@ -0,0 +1,248 @@
+package com.philhanna.json;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link JSONStatistics}, through which a
+ * JMX console reads the counters of the parsers and writers that share
+ * one instance. Counts described as recent cover the last
+ * {@link JSONStatistics#WINDOW_SECONDS} seconds; the others cover the
+ * time since the statistics were created or last reset.
+ */
+public interface JSONStatisticsMXBean {
+
+   // ====================================================================
+   // Parser counters
+   // ====================================================================
+
+   /**
+    * Returns the number of documents parsed successfully
+    * @return the document count
+    */
+   public long getDocumentsParsed();
+
+   /**
+    * Returns the number of documents whose parsing failed
+    * @return the failure count
+    */
+   public long getParseFailures();
+
+   /**
+    * Returns the number of failures for each kind of failure. The key is
+    * the simple name of the exception class followed by the type of the
+    * last token read, as in <code>JSONException after NUMBER</code>, or
+    * by <code>at start</code> if the parse failed before the first
+    * token.
+    * @return a map from kind of failure to count
+    */
+   public Map<String, Long> getParseFailuresByType();
+
+   /**
+    * Returns the number of UTF-8 bytes parsed
+    * @return the byte count
+    */
+   public long getBytesParsed();
+
+   /**
+    * Returns the number of characters parsed from strings and readers
+    * @return the character count
+    */
+   public long getCharsParsed();
+
+   /**
+    * Returns the number of tokens read
+    * @return the token count
+    */
+   public long getTokensParsed();
+
+   /**
+    * Returns the total time spent parsing documents
+    * @return the time in nanoseconds
+    */
+   public long getParseNanos();
+
+   /**
+    * Returns the number of UTF-8 bytes parsed per second of time spent
+    * parsing UTF-8 input
+    * @return the throughput
+    */
+   public double getByteThroughput();
+
+   /**
+    * Returns the number of characters parsed per second of time spent
+    * parsing strings and readers
+    * @return the throughput
+    */
+   public double getCharThroughput();
+
+   /**
+    * Returns the mean of the maximum nesting depths of the documents
+    * parsed
+    * @return the average depth
+    */
+   public double getAverageDepth();
+
+   /**
+    * Returns the greatest nesting depth of any document parsed
+    * @return the maximum depth
+    */
+   public int getMaxDepth();
+
+   /**
+    * Returns the labels of the document size buckets, which are the
+    * rows of the latency histogram
+    * @return the labels, from the smallest size to the largest
+    */
+   public String[] getSizeBuckets();
+
+   /**
+    * Returns the number of documents parsed in each size bucket
+    * @return the counts
+    */
+   public long[] getDocumentsBySize();
+
+   /**
+    * Returns the mean parsing time of the documents in each size bucket
+    * @return the times in nanoseconds
+    */
+   public long[] getAverageNanosBySize();
+
+   /**
+    * Returns the longest parsing time of the documents in each size
+    * bucket
+    * @return the times in nanoseconds
+    */
+   public long[] getMaxNanosBySize();
+
+   /**
+    * Returns the labels of the parsing time buckets, which are the
+    * columns of the latency histogram
+    * @return the labels, from the shortest time to the longest
+    */
+   public String[] getLatencyBuckets();
+
+   /**
+    * Returns the latency histogram: the number of documents parsed in
+    * each size bucket, the rows, that took a time in each parsing time
+    * bucket, the columns
+    * @return the counts, one row for each size bucket
+    */
+   public long[][] getLatencyHistogram();
+
+   /**
+    * Returns the number of documents parsed recently
+    * @return the document count
+    */
+   public long getRecentDocumentsParsed();
+
+   /**
+    * Returns the number of documents whose parsing failed recently
+    * @return the failure count
+    */
+   public long getRecentParseFailures();
+
+   /**
+    * Returns the number of UTF-8 bytes parsed per second, averaged over
+    * the recent window
+    * @return the throughput
+    */
+   public double getRecentByteThroughput();
+
+   /**
+    * Returns the number of characters parsed per second, averaged over
+    * the recent window
+    * @return the throughput
+    */
+   public double getRecentCharThroughput();
+
+   // ====================================================================
+   // Writer counters
+   // ====================================================================
+
+   /**
+    * Returns the number of documents written successfully
+    * @return the document count
+    */
+   public long getDocumentsWritten();
+
+   /**
+    * Returns the number of documents whose writing failed
+    * @return the failure count
+    */
+   public long getWriteFailures();
+
+   /**
+    * Returns the number of characters written
+    * @return the character count
+    */
+   public long getCharsWritten();
+
+   /**
+    * Returns the total time spent writing documents
+    * @return the time in nanoseconds
+    */
+   public long getWriteNanos();
+
+   /**
+    * Returns the number of characters written per second of writing
+    * time
+    * @return the throughput
+    */
+   public double getWriteThroughput();
+
+   /**
+    * Returns the number of documents written recently
+    * @return the document count
+    */
+   public long getRecentDocumentsWritten();
+
+   // ====================================================================
+   // Slow operations
+   // ====================================================================
+
+   /**
+    * Returns the time above which a parse is recorded as slow
+    * @return the threshold in nanoseconds
+    */
+   public long getSlowParseNanos();
+
+   /**
+    * Sets the time above which a parse is recorded as slow
+    * @param nanos the threshold in nanoseconds
+    */
+   public void setSlowParseNanos(long nanos);
+
+   /**
+    * Returns the time above which a write is recorded as slow
+    * @return the threshold in nanoseconds
+    */
+   public long getSlowWriteNanos();
+
+   /**
+    * Sets the time above which a write is recorded as slow
+    * @param nanos the threshold in nanoseconds
+    */
+   public void setSlowWriteNanos(long nanos);
+
+   /**
+    * Returns the number of slow operations recorded
+    * @return the count, including records no longer kept
+    */
+   public long getSlowOperationCount();
+
+   /**
+    * Returns the most recent slow operations, at most
+    * {@link JSONStatistics#MAX_SLOW_OPERATIONS} of them
+    * @return the records, oldest first
+    */
+   public SlowOperation[] getSlowOperations();
+
+   // ====================================================================
+   // Operations
+   // ====================================================================
+
+   /**
+    * Sets all the counters back to zero
+    */
+   public void reset();
+}
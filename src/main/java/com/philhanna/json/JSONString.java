@@ -3,7 +3,9 @@ package com.philhanna.json;
 import org.apache.log4j.Logger;
 
 /**
- * A JSON string.
+ * A JSON string. The escaped form written by {@link #toString()} is
+ * built the first time it is needed and kept, so a string that is
+ * written many times is escaped only once.
  */
 public class JSONString extends JSONValue {
 
@@ -13,6 +15,9 @@ public class JSONString extends JSONValue {
 
    private static final Logger log = Logger.getLogger(JSONString.class);
 
+   static final char[] HEX_DIGITS = "0123456789abcdef"
+         .toCharArray();
+
    private static final String ERRMSG_NO_STARTING_QUOTE = "[%s] is not a valid JSON string because it does not start with a quote character";
    private static final String ERRMSG_NO_CLOSING_QUOTE = "[%s] is not a valid JSON string because it does not end with a quote character";
    private static final String ERRMSG_BAD_CHAR = "0x%04x is not a valid escape character in %s";
@@ -39,7 +44,118 @@ public class JSONString extends JSONValue {
     * @return the string BACKSLASH + "u" + four hex digits
     */
    static String toUnicode(char c) {
-      return String.format("\\u%04x", (int) c);
+      return appendUnicode(new StringBuilder(6), c).toString();
+   }
+
+   /**
+    * Returns the JSON representation of a Java string: the string in
+    * quotes, with quotes, backslashes, slashes, control characters and
+    * characters outside the range 0x20 to 0xfe escaped. A string with
+    * nothing to escape is copied in one piece; otherwise the runs of
+    * characters between escapes are copied in bulk.
+    * @param string the Java string
+    * @return the quoted and escaped string
+    */
+   static String escape(String string) {
+      final int n = string.length();
+      int i = 0;
+      while (i < n && !needsEscape(string.charAt(i)))
+         i++;
+      if (i == n) {
+         final char[] quoted = new char[n + 2];
+         quoted[0] = '"';
+         string.getChars(0, n, quoted, 1);
+         quoted[n + 1] = '"';
+         return new String(quoted);
+      }
+      final StringBuilder sb = new StringBuilder(n + 16);
+      sb.append('"');
+      int run = 0;
+      for (; i < n; i++) {
+         final char c = string.charAt(i);
+         if (!needsEscape(c))
+            continue;
+         sb.append(string, run, i);
+         final String escape = shortEscape(c);
+         if (escape != null)
+            sb.append(escape);
+         else
+            appendUnicode(sb, c);
+         run = i + 1;
+      }
+      sb.append(string, run, n);
+      sb.append('"');
+      return sb.toString();
+   }
+
+   /**
+    * Returns the two-character escape sequence for a character that
+    * needs escaping
+    * @param c the character
+    * @return the escape sequence, or <code>null</code> if the character
+    *         is written as a unicode escape sequence
+    */
+   static String shortEscape(char c) {
+      switch (c) {
+         case '"':
+            return "\\\"";
+         case '\\':
+            return "\\\\";
+         case '/':
+            return "\\/";
+         case '\b':
+            return "\\b";
+         case '\f':
+            return "\\f";
+         case '\n':
+            return "\\n";
+         case '\r':
+            return "\\r";
+         case '\t':
+            return "\\t";
+         default:
+            return null;
+      }
+   }
+
+   /**
+    * Appends the unicode escape sequence for a character
+    */
+   private static StringBuilder appendUnicode(StringBuilder sb, char c) {
+      return sb
+            .append('\\')
+            .append('u')
+            .append(HEX_DIGITS[(c >> 12) & 0xF])
+            .append(HEX_DIGITS[(c >> 8) & 0xF])
+            .append(HEX_DIGITS[(c >> 4) & 0xF])
+            .append(HEX_DIGITS[c & 0xF]);
+   }
+
+   /**
+    * Returns <code>true</code> if a character is written as an escape
+    * sequence
+    */
+   static boolean needsEscape(char c) {
+      return c < '\u0020'
+            || c > '\u00fe'
+            || c == '"'
+            || c == '\\'
+            || c == '/';
+   }
+
+   /**
+    * Returns the decoded Java string for the current string token of a
+    * tokenizer. The tokenizers in this package decode escape sequences
+    * as they read a string, so their value is used directly; the text
+    * of any other tokenizer is decoded with {@link #parseString}.
+    * @param tokenizer a tokenizer whose current token is a string
+    * @return the Java string
+    * @throws JSONException if the string is not a valid JSON string
+    */
+   static String getString(JSONTokenizer tokenizer) throws JSONException {
+      if (tokenizer instanceof AbstractJSONTokenizer)
+         return ((AbstractJSONTokenizer) tokenizer).getString();
+      return parseString(tokenizer.getText()).getString();
    }
 
    /**
@@ -75,9 +191,9 @@ public class JSONString extends JSONValue {
 
       // Remove embedded escape characters, if any
 
-      if (token.contains("\\")) {
-         final StringBuffer sb = new StringBuffer();
+      if (token.indexOf('\\') >= 0) {
          final int n = token.length();
+         final StringBuilder sb = new StringBuilder(n);
          int state = 0;
          int hexDigitCount = 0;
          int hexValue = 0;
@@ -196,6 +312,11 @@ public class JSONString extends JSONValue {
 
    private final String string;
 
+   // The escaped form, once it has been built. Strings are immutable,
+   // so threads that race to build it each get a correct copy.
+
+   private String escaped;
+
    // ====================================================================
    // Constructors
    // ====================================================================
@@ -222,48 +343,12 @@ public class JSONString extends JSONValue {
 
    @Override
    public String toString() {
-      final StringBuilder sb = new StringBuilder();
-      sb.append("\"");
-      for (int i = 0, n = string.length(); i < n; i++) {
-         char c = string.charAt(i);
-         switch (c) {
-            case '"':
-               sb.append("\\\"");
-               break;
-            case '\\':
-               sb.append("\\\\");
-               break;
-            case '/':
-               sb.append("\\/");
-               break;
-            case '\b':
-               sb.append("\\b");
-               break;
-            case '\f':
-               sb.append("\\f");
-               break;
-            case '\n':
-               sb.append("\\n");
-               break;
-            case '\r':
-               sb.append("\\r");
-               break;
-            case '\t':
-               sb.append("\\t");
-               break;
-            default:
-               if (c >= '\u0020' && c <= '\u00fe') {
-                  sb.append(c);
-               }
-               else {
-                  sb.append(toUnicode(c));
-               }
-               break;
-         }
+      String escaped = this.escaped;
+      if (escaped == null) {
+         escaped = escape(string);
+         this.escaped = escaped;
       }
-      sb.append("\"");
-      final String output = sb.toString();
-      return output;
+      return escaped;
    }
 
    @Override
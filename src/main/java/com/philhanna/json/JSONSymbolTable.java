@@ -0,0 +1,229 @@
+package com.philhanna.json;
+
+/**
+ * A table of object keys, used by the parsers so that all the members
+ * with the same name share one <code>String</code>. A key that is
+ * already in the table is looked up directly from the characters of
+ * the input, without creating a new string.
+ * <p>
+ * A table created with a public constructor has a fixed number of
+ * slots and keeps at most one key in each, replacing it when a
+ * different key hashes to the same slot, so its size is bounded however
+ * many distinct keys it sees. Such a table can therefore be shared by
+ * many parses, including parses running in different threads: see
+ * {@link JSONParser#setSymbolTable}.
+ * <p>
+ * A parser without a shared table uses a new table for each parse,
+ * which keeps every key it sees and grows as needed, so that no key is
+ * created twice within the parse. That table is used by one thread
+ * only.
+ */
+public class JSONSymbolTable {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   /**
+    * Number of slots in a table created by the default constructor
+    */
+   public static final int DEFAULT_CAPACITY = 256;
+
+   /**
+    * Longest key that is kept in the table. Longer keys are returned as
+    * new strings each time.
+    */
+   static final int MAX_KEY_LENGTH = 64;
+
+   /**
+    * Initial number of slots in a table for one parse
+    */
+   private static final int PARSE_CAPACITY = 64;
+
+   private static final String ERRMSG_CAPACITY = "Capacity must be positive, not %d";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   // The slots, whose number is a power of two. In a shared table, a
+   // slot may be read and written by several threads at once without
+   // locking, because a String can be published safely without
+   // synchronization; a thread that misses another thread's key just
+   // creates its own.
+
+   private String[] slots;
+
+   // True for a table used by one parse, which finds a free slot for
+   // each new key by linear probing and doubles when it is three
+   // quarters full, instead of replacing keys
+
+   private final boolean growing;
+   private int count;
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Returns a new table for one parse in one thread, which keeps every
+    * key it sees
+    */
+   static JSONSymbolTable newParseTable() {
+      return new JSONSymbolTable(PARSE_CAPACITY, true);
+   }
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new table with the default number of slots
+    */
+   public JSONSymbolTable() {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+    * Creates a new table with at least the specified number of slots
+    * @param capacity the number of slots, which is rounded up to a
+    *        power of two
+    * @throws IllegalArgumentException if the capacity is not positive
+    */
+   public JSONSymbolTable(int capacity) {
+      this(capacity, false);
+   }
+
+   /**
+    * Creates a new table that either replaces colliding keys or grows
+    */
+   private JSONSymbolTable(int capacity, boolean growing) {
+      if (capacity < 1)
+         throw new IllegalArgumentException(
+               String.format(ERRMSG_CAPACITY, capacity));
+      int n = 1;
+      while (n < capacity && n < (1 << 30))
+         n <<= 1;
+      this.slots = new String[n];
+      this.growing = growing;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns the number of slots in the table
+    * @return the capacity
+    */
+   public int getCapacity() {
+      return slots.length;
+   }
+
+   /**
+    * Returns the key made of the specified characters, from the table
+    * if it is there, or as a new string that is added to the table
+    * @param chars the source array
+    * @param start the index of the first character
+    * @param length the number of characters
+    * @return the key
+    */
+   public String intern(char[] chars, int start, int length) {
+      if (length > MAX_KEY_LENGTH)
+         return new String(chars, start, length);
+      int hash = 0;
+      for (int i = start, end = start + length; i < end; i++)
+         hash = 31 * hash + chars[i];
+      final String[] slots = this.slots;
+      int slot = slotOf(hash);
+      for (;;) {
+         final String s = slots[slot];
+         if (s != null
+               && s.length() == length
+               && s.hashCode() == hash
+               && regionMatches(s, chars, start)) {
+            return s;
+         }
+         if (s == null || !growing)
+            break;
+         slot = (slot + 1) & (slots.length - 1);
+      }
+      final String key = new String(chars, start, length);
+      add(key, slot);
+      return key;
+   }
+
+   /**
+    * Returns the key equal to the specified string, from the table if it
+    * is there, or else the string itself, which is added to the table
+    * @param key the key
+    * @return the key
+    */
+   public String intern(String key) {
+      if (key.length() > MAX_KEY_LENGTH)
+         return key;
+      final String[] slots = this.slots;
+      int slot = slotOf(key.hashCode());
+      for (;;) {
+         final String s = slots[slot];
+         if (key.equals(s))
+            return s;
+         if (s == null || !growing)
+            break;
+         slot = (slot + 1) & (slots.length - 1);
+      }
+      add(key, slot);
+      return key;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Returns the slot for a string hash code, mixing the high bits into
+    * the low ones that select the slot
+    */
+   private int slotOf(int hash) {
+      return (hash ^ (hash >>> 16)) & (slots.length - 1);
+   }
+
+   /**
+    * Puts a new key in the specified slot, growing a table for one
+    * parse if it is getting full
+    */
+   private void add(String key, int slot) {
+      slots[slot] = key;
+      if (growing && ++count * 4 > slots.length * 3)
+         grow();
+   }
+
+   /**
+    * Doubles the number of slots of a table for one parse, putting each
+    * key in its new slot
+    */
+   private void grow() {
+      final String[] old = slots;
+      slots = new String[old.length * 2];
+      for (final String key : old) {
+         if (key == null)
+            continue;
+         int slot = slotOf(key.hashCode());
+         while (slots[slot] != null)
+            slot = (slot + 1) & (slots.length - 1);
+         slots[slot] = key;
+      }
+   }
+
+   /**
+    * Returns <code>true</code> if the characters starting at the
+    * specified index are those of the string
+    */
+   private static boolean regionMatches(String s, char[] chars, int start) {
+      for (int i = 0, n = s.length(); i < n; i++) {
+         if (s.charAt(i) != chars[start + i])
+            return false;
+      }
+      return true;
+   }
+}
@@ -0,0 +1,19 @@
+package com.philhanna.json;
+
+/**
+ * An enumeration of the kinds of token returned by a
+ * {@link JSONTokenizer}
+ */
+public enum JSONTokenType {
+   START_OBJECT,
+   END_OBJECT,
+   START_ARRAY,
+   END_ARRAY,
+   COMMA,
+   COLON,
+   STRING,
+   NUMBER,
+   TRUE,
+   FALSE,
+   NULL,
+}
@@ -4,9 +4,52 @@ import java.io.IOException;
 
 /**
  * Creates tokens from a JSON representation
+ * <p>
+ * The tokenizers in this package implement every method. A tokenizer
+ * written before {@link #nextToken()}, {@link #getTokenType()} and
+ * {@link #getText()} were added need implement only
+ * {@link #readToken()} and {@link #unread(String)}: the default
+ * methods read its tokens with <code>readToken()</code>, so it still
+ * compiles and can be passed to the parser, but each token is then a
+ * <code>String</code> and is classified after it is read. Such a
+ * tokenizer's current token is kept by its <code>equals()</code> and
+ * <code>hashCode()</code>, so two tokenizers that are equal should not
+ * be used at once.
  */
 public interface JSONTokenizer {
 
+   /**
+    * Advances to the next JSON token and returns its type. The text of
+    * the token is not materialized unless it is requested with
+    * {@link #getText()}.
+    * @return the token type, or <code>null</code> at end of input
+    * @throws JSONException if the syntax is invalid
+    * @throws IOException if an I/O error occurs
+    */
+   public default JSONTokenType nextToken()
+         throws JSONException, IOException {
+      return LegacyTokenizers.nextToken(this);
+   }
+
+   /**
+    * Returns the type of the current token, i.e., the value most
+    * recently returned by {@link #nextToken()}
+    * @return the token type, or <code>null</code> at end of input
+    */
+   public default JSONTokenType getTokenType() {
+      return LegacyTokenizers.getTokenType(this);
+   }
+
+   /**
+    * Returns the text of the current token as it appears in the input.
+    * For a string token, this includes the enclosing quotes and any
+    * escape sequences.
+    * @return the token text
+    */
+   public default String getText() {
+      return LegacyTokenizers.getText(this);
+   }
+
    /**
     * Returns the next JSON token
     * @return a string containing the token
@@ -17,9 +60,10 @@ public interface JSONTokenizer {
 
    /**
     * Pushes back a single token so that it will be returned again on
-    * the next call to <code>readToken()</code>.
+    * the next call to <code>readToken()</code> or
+    * <code>nextToken()</code>.
     * @param token the token to unread
     */
    public void unread(String token);
 
-}
\ No newline at end of file
+}
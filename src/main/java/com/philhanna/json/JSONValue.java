@@ -32,90 +32,61 @@ public abstract class JSONValue implements Visitable {
     */
    public static JSONValue parse(String token, JSONTokenizer tokenizer)
          throws JSONException, IOException {
-      log.debug("Entry");
-      log.debug(String.format("Token is %s", token));
-
-      // Check for string
-
-      if (JSONString.isString(token)) {
-         log.debug("Parsing JSON string");
-         final JSONString value = JSONString.parseString(token);
-         log.debug(
-               String.format(
-                     "Exit, returning string value %s",
-                     value.toString()));
-         return value;
+      if (token == null) {
+         final String errmsg = String.format(ERRMSG_INVALID_TOKEN, token);
+         log.debug(errmsg);
+         throw new JSONException(errmsg);
       }
+      tokenizer.unread(token);
+      return parse(tokenizer.nextToken(), tokenizer);
+   }
 
-      // Check for number
-
-      if (JSONNumber.isNumber(token)) {
-         log.debug("Parsing JSON number");
-         final JSONNumber value = JSONNumber.parseNumber(token);
-         log.debug(
-               String.format(
-                     "Exit, returning number value %s",
-                     String.valueOf(value.getNumber())));
-         return value;
-      }
-
-      // Check for object
-
-      if (JSONObject.isObjectStart(token)) {
-         log.debug("Parsing JSON object");
-         final JSONObject value = JSONObject.parseObject(tokenizer);
-         log.debug(
-               String.format(
-                     "Exit, returning object with %d members",
-                     value.size()));
-         return value;
-      }
-
-      // Check for array
-
-      if (JSONArray.isArrayStart(token)) {
-         log.debug("Parsing JSON array");
-         final JSONArray value = JSONArray.parseArray(tokenizer);
-         log.debug(
-               String.format(
-                     "Exit, returning array with %d elements",
-                     value.size()));
-         return value;
-      }
-
-      // Check for true
-
-      if (JSONTrue.isTrue(token)) {
-         log.debug("Parsing JSON true");
-         final JSONTrue value = JSONTrue.VALUE;
-         log.debug(String.format("Exit, returning JSON true"));
-         return value;
-      }
-
-      // Check for false
-
-      if (JSONFalse.isFalse(token)) {
-         log.debug("Parsing JSON false");
-         final JSONFalse value = JSONFalse.VALUE;
-         log.debug(String.format("Exit, returning JSON false"));
-         return value;
-      }
-
-      // Check for null
-
-      if (JSONNull.isNull(token)) {
-         log.debug("Parsing JSON null");
-         final JSONNull value = JSONNull.VALUE;
-         log.debug(String.format("Exit, returning JSON null"));
-         return value;
+   /**
+    * Parses a JSON value starting with the current token of the
+    * specified tokenizer. Reads more tokens if necessary (for Object or
+    * Array types). Nothing is logged unless the syntax is invalid; to
+    * measure parsing, install a {@link ParseObserver} in the
+    * {@link JSONParser}.
+    * @param token the type of the current token
+    * @param tokenizer the source of tokens
+    * @return a JSONValue of the appropriate type
+    * @throws JSONException if a parsing error occurs
+    * @throws IOException if an I/O error occurs
+    */
+   public static JSONValue parse(JSONTokenType token, JSONTokenizer tokenizer)
+         throws JSONException, IOException {
+      if (token != null) {
+         switch (token) {
+            case STRING:
+               return new JSONString(JSONString.getString(tokenizer));
+            case NUMBER:
+               return JSONNumber.valueOf(tokenizer.getText());
+            case START_OBJECT:
+               return JSONObject.parseObject(tokenizer);
+            case START_ARRAY:
+               return JSONArray.parseArray(tokenizer);
+            case TRUE:
+               return JSONTrue.VALUE;
+            case FALSE:
+               return JSONFalse.VALUE;
+            case NULL:
+               return JSONNull.VALUE;
+            default:
+               break;
+         }
       }
 
       // Unknown token type
 
-      final String errmsg = String.format(ERRMSG_INVALID_TOKEN, token);
+      final String errmsg = String.format(
+            ERRMSG_INVALID_TOKEN,
+            token == null
+                  ? null
+                  : tokenizer.getText());
       log.debug(errmsg);
       throw new JSONException(errmsg);
    }
+
    // ====================================================================
    // Instance variables
    // ====================================================================
@@ -1,20 +1,87 @@
 package com.philhanna.json;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
- * A visitor that write a JSON representation in string form
+ * A visitor that write a JSON representation in string form. The
+ * output is collected in a character buffer and passed to the target
+ * in large blocks, so a writer can be used directly with an unbuffered
+ * <code>Writer</code> or <code>OutputStream</code>.
+ * <p>
+ * Output to an <code>OutputStream</code>, <code>ByteBuffer</code> or
+ * <code>WritableByteChannel</code> is encoded in UTF-8 by the writer
+ * itself, without a <code>CharsetEncoder</code>. To write a document
+ * without first building a tree of values, use {@link JSONGenerator}.
+ * <p>
+ * If a pool is set, the members of large objects and arrays are written
+ * in parallel: see {@link #setPool(ForkJoinPool)}.
  */
-public class JSONWriter implements Visitor {
+public class JSONWriter extends JSONOutput implements Visitor {
+
+   /**
+    * The output of a task that writes some of the members of an object
+    * or array
+    */
+   private static class Chunk {
+      final StringBuilder text = new StringBuilder();
+      int maxDepth;
+   }
+
+   /**
+    * Carries an I/O error out of the visit methods for strings, numbers
+    * and literals, which throw no checked exceptions
+    */
+   private static class ScalarOutputException extends RuntimeException {
+
+      private static final long serialVersionUID = 1L;
+
+      ScalarOutputException(OutputException cause) {
+         super(cause);
+      }
+
+      OutputException getOutputException() {
+         return (OutputException) getCause();
+      }
+   }
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   /**
+    * Smallest number of members in an object or array that is written
+    * in parallel
+    */
+   static final int PARALLEL_THRESHOLD = 1024;
+
+   /**
+    * Smallest number of members written by one task
+    */
+   static final int MIN_CHUNK_SIZE = 256;
 
    // ====================================================================
    // Instance variables
    // ====================================================================
 
    private final JSONValue value;
-   private PrintWriter out;
-   private boolean pretty;
-   private int indent = 0;
+   private JSONStatistics statistics;
+   private ForkJoinPool pool;
+
+   // The buffer used to write to output streams
+
+   private ByteBuffer streamBytes;
 
    // ====================================================================
    // Constructors
@@ -29,14 +96,115 @@ public class JSONWriter implements Visitor {
    // ====================================================================
 
    /**
-    * Writes the JSON object to an output stream
+    * Writes the JSON object to a print writer. A print writer does not
+    * report I/O errors; use <code>checkError()</code> to find them, or
+    * use {@link #writeTo(Writer)} with the underlying writer instead.
     * @param out a PrintWriter
     * @throws JSONException if an application error occurs
     */
    public void writeTo(PrintWriter out) throws JSONException {
-      this.out = out;
-      this.indent = 0;
-      value.accept(this);
+      setTarget(out);
+      try {
+         write();
+      }
+      catch (IOException e) {
+         // A print writer never throws an IOException
+         throw new JSONException(e);
+      }
+   }
+
+   /**
+    * Writes the JSON object to a writer. The writer is not flushed.
+    * @param out a Writer
+    * @throws JSONException if an application error occurs
+    * @throws IOException if the writer throws an exception
+    */
+   public void writeTo(Writer out) throws JSONException, IOException {
+      setTarget(out);
+      write();
+   }
+
+   /**
+    * Writes the JSON object to any appendable target, such as a
+    * <code>CharBuffer</code>
+    * @param out an Appendable
+    * @throws JSONException if an application error occurs
+    * @throws IOException if the target throws an exception
+    */
+   public void writeTo(Appendable out) throws JSONException, IOException {
+      setTarget(out);
+      write();
+   }
+
+   /**
+    * Writes the JSON object to an output stream, encoded in UTF-8. The
+    * stream is flushed but not closed.
+    * @param out an OutputStream
+    * @throws JSONException if an application error occurs
+    * @throws IOException if the stream throws an exception
+    */
+   public void writeTo(OutputStream out) throws JSONException, IOException {
+      if (streamBytes == null)
+         streamBytes = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+      streamBytes.clear();
+      setTarget(streamBytes, null, out);
+      write();
+      out.flush();
+   }
+
+   /**
+    * Writes the JSON object to a channel, encoded in UTF-8 into a
+    * buffer that is sent to the channel each time it fills. Any bytes
+    * already in the buffer, before its position, are sent first, so
+    * the buffer may hold a header. The buffer is empty on return and
+    * can be used again. If the channel is a
+    * <code>GatheringByteChannel</code>, several buffers of the same
+    * size are filled and sent in one gathering write.
+    * @param buffer a heap or direct buffer of at least two bytes
+    * @param out a WritableByteChannel
+    * @throws JSONException if an application error occurs
+    * @throws IOException if the channel throws an exception
+    */
+   public void writeTo(ByteBuffer buffer, WritableByteChannel out)
+         throws JSONException, IOException {
+      setTarget(buffer, out, null);
+      write();
+   }
+
+   /**
+    * Writes the JSON object into the remaining space of a buffer,
+    * encoded in UTF-8. The position of the buffer is advanced past the
+    * output.
+    * @param buffer a heap or direct buffer
+    * @throws JSONException if an application error occurs
+    * @throws BufferOverflowException if the output does not fit, in
+    *         which case the position of the buffer is undefined
+    */
+   public void writeTo(ByteBuffer buffer) throws JSONException {
+      setTarget(buffer, null, null);
+      try {
+         write();
+      }
+      catch (IOException e) {
+         // Only a channel or stream throws an IOException
+         throw new JSONException(e);
+      }
+   }
+
+   /**
+    * Appends the JSON object to a string builder
+    * @param out a StringBuilder
+    * @throws JSONException if an application error occurs
+    */
+   public void writeTo(StringBuilder out) throws JSONException {
+      setTarget(out);
+      try {
+         write();
+      }
+      catch (IOException e) {
+         // A string builder never throws an IOException
+         throw new JSONException(e);
+      }
    }
 
    /**
@@ -55,6 +223,47 @@ public class JSONWriter implements Visitor {
       this.pretty = pretty;
    }
 
+   /**
+    * Returns the statistics in which each document written is counted
+    * @return the statistics, or <code>null</code> if there are none
+    */
+   public JSONStatistics getStatistics() {
+      return statistics;
+   }
+
+   /**
+    * Sets the statistics in which each document written is counted,
+    * with the number of characters written and the time taken
+    * @param statistics the statistics, or <code>null</code> for none
+    */
+   public void setStatistics(JSONStatistics statistics) {
+      this.statistics = statistics;
+   }
+
+   /**
+    * Returns the pool used to write large objects and arrays in
+    * parallel
+    * @return the pool, or <code>null</code> if writing is sequential
+    */
+   public ForkJoinPool getPool() {
+      return pool;
+   }
+
+   /**
+    * Sets the pool used to write large objects and arrays in parallel.
+    * When a pool is set, an object or array with at least
+    * {@value #PARALLEL_THRESHOLD} members has its members divided into
+    * chunks, each of which is written by a task in the pool into its
+    * own buffer. The chunks are then copied to the output in order, so
+    * the output is the same as when writing sequentially. Only a few
+    * chunks per thread are buffered at a time. The members of a chunk
+    * are written sequentially, however large they are.
+    * @param pool the pool, or <code>null</code> to write sequentially
+    */
+   public void setPool(ForkJoinPool pool) {
+      this.pool = pool;
+   }
+
    // ====================================================================
    // Implementation of Visitor
    // ====================================================================
@@ -64,104 +273,237 @@ public class JSONWriter implements Visitor {
     */
    @Override
    public void visit(JSONObject value) throws JSONException {
-      printOpenBracket("{");
-      int i = 0;
-      for (final String key : value.keySet()) {
-         i++;
-         if (i > 1)
-            printComma();
-         printIndent();
-         final JSONString string = new JSONString(key);
-         string.accept(this);
-         printColon();
-         final JSONValue memberValue = value.get(key);
-         memberValue.accept(this);
+      printOpenBracket('{');
+      if (pool != null && value.size() >= PARALLEL_THRESHOLD) {
+         final String[] keys = value.keySet().toArray(
+               new String[value.size()]);
+         final JSONValue[] values = new JSONValue[keys.length];
+         for (int i = 0; i < keys.length; i++)
+            values[i] = value.get(keys[i]);
+         printParallel(keys, values);
       }
-      printCloseBracket("}");
+      else {
+         int i = 0;
+         for (final String key : value.keySet())
+            printMember(i++, key, value.get(key));
+      }
+      printCloseBracket('}');
    }
 
    @Override
    public void visit(JSONArray value) throws JSONException {
-      printOpenBracket("[");
-      int i = 0;
-      for (final JSONValue element : value) {
-         i++;
-         if (i > 1)
-            printComma();
-         printIndent();
-         element.accept(this);
+      printOpenBracket('[');
+      if (value.isPacked()) {
+         for (int i = 0, n = value.size(); i < n; i++) {
+            if (i > 0)
+               printComma();
+            printIndent();
+            print(value.numberToString(i));
+         }
+         printCloseBracket(']');
+         return;
+      }
+      if (pool != null && value.size() >= PARALLEL_THRESHOLD) {
+         final JSONValue[] values = new JSONValue[value.size()];
+         for (int i = 0; i < values.length; i++)
+            values[i] = value.get(i);
+         printParallel(null, values);
+      }
+      else {
+         int i = 0;
+         for (final JSONValue element : value)
+            printMember(i++, null, element);
       }
-      printCloseBracket("]");
+      printCloseBracket(']');
    }
 
    @Override
    public void visit(JSONString value) {
-      out.print(value.toString());
+      printScalar(value);
    }
 
    @Override
    public void visit(JSONNumber value) {
-      out.print(value.toString());
+      printScalar(value);
    }
 
    @Override
    public void visit(JSONTrue value) {
-      out.print(value.toString());
+      printScalar(value);
    }
 
    @Override
    public void visit(JSONFalse value) {
-      out.print(value.toString());
+      printScalar(value);
    }
 
    @Override
    public void visit(JSONNull value) {
-      out.print(value.toString());
+      printScalar(value);
    }
 
    // ====================================================================
    // Private instance methods
    // ====================================================================
 
-   private String getIndent() {
-      final StringBuilder sb = new StringBuilder();
-      for (int i = 0; i < indent; i++)
-         sb.append("  ");
-      final String output = sb.toString();
-      return output;
+   /**
+    * Prints a string, number or literal, wrapping any I/O error in an
+    * unchecked exception that {@link #write()} unwraps again
+    */
+   private void printScalar(JSONValue value) {
+      try {
+         print(value.toString());
+      }
+      catch (OutputException e) {
+         throw new ScalarOutputException(e);
+      }
    }
 
-   private void printOpenBracket(String b) {
-      out.print(b);
-      if (pretty) {
-         out.print("\n");
-         indent++;
+   /**
+    * Prints a member of an object or an element of an array, after a
+    * comma if it is not the first
+    * @param i the index of the member
+    * @param key the key, or <code>null</code> for an array element
+    * @param value the value
+    */
+   private void printMember(int i, String key, JSONValue value)
+         throws JSONException {
+      if (i > 0)
+         printComma();
+      printIndent();
+      if (key != null) {
+         printString(key);
+         printColon();
       }
+      value.accept(this);
    }
 
-   private void printCloseBracket(String b) {
-      if (pretty) {
-         out.print("\n");
-         indent--;
-         out.print(getIndent());
+   /**
+    * Prints the members of an object or the elements of an array by
+    * writing chunks of them in the pool, keeping at most two chunks per
+    * thread in progress
+    * @param keys the keys, or <code>null</code> for an array
+    * @param values the values
+    */
+   private void printParallel(final String[] keys, final JSONValue[] values)
+         throws JSONException {
+      final int parallelism = pool.getParallelism();
+      final int chunkSize = Math
+            .max(MIN_CHUNK_SIZE, values.length / (4 * parallelism));
+      final Deque<Future<Chunk>> pending = new ArrayDeque<Future<Chunk>>();
+      try {
+         int next = 0;
+         while (next < values.length || !pending.isEmpty()) {
+            while (next < values.length && pending.size() < 2 * parallelism) {
+               final int start = next;
+               final int end = Math.min(values.length, start + chunkSize);
+               pending.addLast(pool.submit(new Callable<Chunk>() {
+                  @Override
+                  public Chunk call() throws JSONException {
+                     return writeChunk(keys, values, start, end);
+                  }
+               }));
+               next = end;
+            }
+            final Chunk chunk = await(pending.removeFirst());
+            print(chunk.text);
+            maxDepth = Math.max(maxDepth, chunk.maxDepth);
+         }
+      }
+      finally {
+         for (final Future<Chunk> future : pending)
+            future.cancel(false);
       }
-      out.print(b);
    }
 
-   private void printComma() {
-      out.print(",");
-      if (pretty)
-         out.print("\n");
+   /**
+    * Writes some members of an object or array into a new buffer, with
+    * the same indentation as this writer
+    */
+   private Chunk writeChunk(
+         String[] keys,
+         JSONValue[] values,
+         int start,
+         int end) throws JSONException {
+      final Chunk chunk = new Chunk();
+      final JSONWriter writer = new JSONWriter(null);
+      writer.pretty = pretty;
+      writer.setTarget(chunk.text);
+      writer.reset();
+      writer.indent = indent;
+      writer.depth = depth;
+      writer.maxDepth = depth;
+      for (int i = start; i < end; i++)
+         writer.printMember(i, keys == null ? null : keys[i], values[i]);
+      writer.flushOutput();
+      chunk.maxDepth = writer.maxDepth;
+      return chunk;
    }
 
-   private void printColon() {
-      out.print(pretty
-            ? " : "
-            : ":");
+   /**
+    * Waits for a chunk to be written and returns it
+    */
+   private static Chunk await(Future<Chunk> future) throws JSONException {
+      try {
+         return future.get();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new JSONException(e);
+      }
+      catch (ExecutionException e) {
+
+         // A fork-join pool wraps checked exceptions in runtime
+         // exceptions, so look for the original along the cause chain
+
+         for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            if (t instanceof JSONException)
+               throw (JSONException) t;
+         }
+         final Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+         throw new JSONException(cause);
+      }
    }
 
-   private void printIndent() {
-      if (pretty)
-         out.print(getIndent());
+   /**
+    * Writes the value to the target, counting it in the statistics if
+    * there are any
+    */
+   private void write() throws JSONException, IOException {
+      reset();
+      final long start = statistics == null
+            ? 0
+            : System.nanoTime();
+      try {
+         try {
+            value.accept(this);
+         }
+         catch (ScalarOutputException e) {
+            throw e.getOutputException();
+         }
+         flushOutput();
+      }
+      catch (OutputException e) {
+         if (statistics != null)
+            statistics.writeFailed();
+         throw e.getIOException();
+      }
+      catch (JSONException e) {
+         if (statistics != null)
+            statistics.writeFailed();
+         throw e;
+      }
+      finally {
+         setTarget(null);
+      }
+      if (statistics != null) {
+         statistics.documentWritten(
+               value.getType(),
+               written,
+               maxDepth,
+               System.nanoTime() - start);
+      }
    }
 }
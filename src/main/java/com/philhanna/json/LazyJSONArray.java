@@ -0,0 +1,137 @@
+package com.philhanna.json;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A JSON array whose elements are read from a {@link JSONIndex} as they
+ * are asked for. An element is decoded the first time it is returned
+ * by {@link #get(int)} or by the iterator. The first change to the
+ * array copies all its elements into an ordinary JSONArray, after
+ * which it behaves like one.
+ */
+class LazyJSONArray extends JSONArray {
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final JSONIndex index;
+   private final int entry;
+
+   // Tape indexes of the elements, and the decoded elements. Created
+   // when first needed.
+
+   private int[] elements;
+   private JSONValue[] values;
+
+   // True once the elements have been copied into the superclass
+
+   private boolean materialized;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new view of the array at the specified entry
+    * @param index the index
+    * @param entry the tape index of the array
+    */
+   LazyJSONArray(JSONIndex index, int entry) {
+      this.index = index;
+      this.entry = entry;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns an iterator over the elements, which decodes each one as
+    * it is reached. Elements cannot be removed with the iterator.
+    */
+   @Override
+   public Iterator<JSONValue> iterator() {
+      if (materialized)
+         return super.iterator();
+      return new Iterator<JSONValue>() {
+         private int i = 0;
+
+         @Override
+         public boolean hasNext() {
+            return i < size();
+         }
+
+         @Override
+         public JSONValue next() {
+            if (!hasNext())
+               throw new NoSuchElementException();
+            return get(i++);
+         }
+
+         @Override
+         public void remove() {
+            throw new UnsupportedOperationException();
+         }
+      };
+   }
+
+   @Override
+   public void add(JSONValue element) {
+      materialize();
+      super.add(element);
+   }
+
+   @Override
+   public JSONValue get(int i) {
+      if (materialized)
+         return super.get(i);
+      final int[] elements = getElements();
+      if (i < 0 || i >= elements.length)
+         throw new IndexOutOfBoundsException(
+               String.format("Index %d, size %d", i, elements.length));
+      JSONValue value = values[i];
+      if (value == null) {
+         value = index.getValue(elements[i]);
+         values[i] = value;
+      }
+      return value;
+   }
+
+   @Override
+   public int size() {
+      if (materialized)
+         return super.size();
+      return getElements().length;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Returns the tape indexes of the elements
+    */
+   private int[] getElements() {
+      if (elements == null) {
+         elements = index.getChildren(entry);
+         values = new JSONValue[elements.length];
+      }
+      return elements;
+   }
+
+   /**
+    * Copies all the elements into the superclass
+    */
+   private void materialize() {
+      if (materialized)
+         return;
+      final int n = getElements().length;
+      for (int i = 0; i < n; i++)
+         super.add(get(i));
+      materialized = true;
+      this.elements = null;
+      this.values = null;
+   }
+}
@@ -0,0 +1,146 @@
+package com.philhanna.json;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A JSON object whose members are read from a {@link JSONIndex} as they
+ * are asked for. A member value is decoded the first time it is
+ * returned by {@link #get(String)}; the other members remain
+ * undecoded. The first change to the object copies all its members
+ * into an ordinary JSONObject, after which it behaves like one.
+ */
+class LazyJSONObject extends JSONObject {
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final JSONIndex index;
+   private final int entry;
+
+   // Tape indexes of the member keys, and the decoded member values, by
+   // member number. Created when first needed.
+
+   private int[] keys;
+   private JSONValue[] values;
+   private Set<String> keySet;
+
+   // True once the members have been copied into the superclass
+
+   private boolean materialized;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new view of the object at the specified entry
+    * @param index the index
+    * @param entry the tape index of the object
+    */
+   LazyJSONObject(JSONIndex index, int entry) {
+      this.index = index;
+      this.entry = entry;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns the keys of the object. The keys are decoded, but the
+    * member values are not. The set cannot be changed.
+    */
+   @Override
+   public Set<String> keySet() {
+      if (materialized)
+         return super.keySet();
+      if (keySet == null) {
+         final int[] keys = getKeys();
+         final Set<String> set = new LinkedHashSet<String>();
+         for (int i = 0; i < keys.length; i++)
+            set.add(index.getKey(keys[i]));
+         keySet = Collections.unmodifiableSet(set);
+      }
+      return keySet;
+   }
+
+   @Override
+   public void put(String string, JSONValue value) {
+      materialize();
+      super.put(string, value);
+   }
+
+   /**
+    * Returns the value mapped to the specified key, decoding it if
+    * necessary. The keys are compared without being decoded unless
+    * they contain escape sequences.
+    */
+   @Override
+   public JSONValue get(String key) {
+      if (materialized)
+         return super.get(key);
+
+      // Search backwards, so that the last of any duplicate keys wins,
+      // as it does when the members are added with put()
+
+      final int[] keys = getKeys();
+      for (int i = keys.length - 1; i >= 0; i--) {
+         if (index.stringEquals(keys[i], key))
+            return getValue(i);
+      }
+      return null;
+   }
+
+   @Override
+   public int size() {
+      if (materialized)
+         return super.size();
+      return keySet().size();
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Returns the tape indexes of the member keys
+    */
+   private int[] getKeys() {
+      if (keys == null) {
+         keys = index.getChildren(entry);
+         values = new JSONValue[keys.length];
+      }
+      return keys;
+   }
+
+   /**
+    * Returns the value of the specified member, decoding it if it has
+    * not been decoded already
+    */
+   private JSONValue getValue(int member) {
+      JSONValue value = values[member];
+      if (value == null) {
+         value = index.getValue(keys[member] + 1);
+         values[member] = value;
+      }
+      return value;
+   }
+
+   /**
+    * Copies all the members into the superclass
+    */
+   private void materialize() {
+      if (materialized)
+         return;
+      final int[] keys = getKeys();
+      for (int i = 0; i < keys.length; i++)
+         super.put(index.getKey(keys[i]), getValue(i));
+      materialized = true;
+      this.keys = null;
+      this.values = null;
+      this.keySet = null;
+   }
+}
@@ -0,0 +1,88 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Supports the default methods of {@link JSONTokenizer} for tokenizers
+ * that implement only <code>readToken()</code> and
+ * <code>unread()</code>, by keeping the current token of each such
+ * tokenizer. A tokenizer is forgotten when it is garbage collected.
+ */
+final class LegacyTokenizers {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   // The current token of each tokenizer, keyed as a WeakHashMap keys
+   // them, by equals() and hashCode()
+
+   private static final Map<JSONTokenizer, String> tokens = new WeakHashMap<JSONTokenizer, String>();
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Not instantiable
+    */
+   private LegacyTokenizers() {
+   }
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Reads the next token with <code>readToken()</code> and makes it
+    * the current token
+    * @param tokenizer the tokenizer
+    * @return the token type, or <code>null</code> at end of input
+    * @throws JSONException if the token is not valid JSON
+    * @throws IOException if an I/O error occurs
+    */
+   static JSONTokenType nextToken(JSONTokenizer tokenizer)
+         throws JSONException, IOException {
+      final String token = tokenizer.readToken();
+      final JSONTokenType type = token == null
+            ? null
+            : AbstractJSONTokenizer.typeOf(token);
+      synchronized (tokens) {
+         tokens.put(tokenizer, token);
+      }
+      return type;
+   }
+
+   /**
+    * Returns the type of the current token
+    * @param tokenizer the tokenizer
+    * @return the token type, or <code>null</code> if there is no
+    *         current token
+    */
+   static JSONTokenType getTokenType(JSONTokenizer tokenizer) {
+      final String token = getText(tokenizer);
+      try {
+         return token == null
+               ? null
+               : AbstractJSONTokenizer.typeOf(token);
+      }
+      catch (JSONException e) {
+         // Checked when the token was read
+         throw new IllegalStateException(e);
+      }
+   }
+
+   /**
+    * Returns the text of the current token
+    * @param tokenizer the tokenizer
+    * @return the token text, or <code>null</code> if there is no
+    *         current token
+    */
+   static String getText(JSONTokenizer tokenizer) {
+      synchronized (tokens) {
+         return tokens.get(tokenizer);
+      }
+   }
+}
@@ -0,0 +1,95 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tokenizes a UTF-8 encoded JSON file, or a region of one, by
+ * memory-mapping it. Files of any size are supported: the file is
+ * mapped one window at a time, and each window is released to the
+ * garbage collector once it has been read.
+ */
+class MappedJSONTokenizer extends UTF8JSONTokenizer {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   /**
+    * Default number of bytes mapped at once
+    */
+   static final long WINDOW_SIZE = 1L << 28;
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final FileChannel channel;
+   private final long end;
+   private final long windowSize;
+   private long offset;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new tokenizer for the specified file channel
+    * @param channel a channel open for reading
+    * @throws IOException if an I/O error occurs
+    */
+   MappedJSONTokenizer(FileChannel channel) throws IOException {
+      this(channel, WINDOW_SIZE);
+   }
+
+   /**
+    * Creates a new tokenizer for the specified file channel that maps
+    * the specified number of bytes at a time
+    * @param channel a channel open for reading
+    * @param windowSize the number of bytes to map at once
+    * @throws IOException if an I/O error occurs
+    */
+   MappedJSONTokenizer(FileChannel channel, long windowSize)
+         throws IOException {
+      this(channel, 0, channel.size(), windowSize);
+   }
+
+   /**
+    * Creates a new tokenizer for the bytes of a file channel between
+    * two offsets, mapping the specified number of bytes at a time
+    * @param channel a channel open for reading
+    * @param start the offset of the first byte
+    * @param end the offset after the last byte
+    * @param windowSize the number of bytes to map at once
+    */
+   MappedJSONTokenizer(
+         FileChannel channel,
+         long start,
+         long end,
+         long windowSize) {
+      super(new byte[0]);
+      this.channel = channel;
+      this.offset = start;
+      this.end = end;
+      this.windowSize = windowSize;
+   }
+
+   // ====================================================================
+   // Implementation of UTF8JSONTokenizer
+   // ====================================================================
+
+   @Override
+   boolean fill() throws IOException {
+      if (offset >= end)
+         return false;
+      final long length = Math.min(windowSize, end - offset);
+      setBuffer(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+      offset += length;
+      return true;
+   }
+
+   @Override
+   public void close() throws IOException {
+      channel.close();
+   }
+}
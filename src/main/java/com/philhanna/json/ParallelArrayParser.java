@@ -0,0 +1,385 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Parses a UTF-8 encoded JSON array in parallel. A quick scan of the
+ * input, which tracks only bracket depth and strings, finds the commas
+ * that separate the elements of the array. The elements are divided
+ * into chunks at those commas, and each chunk is parsed by a separate
+ * task in a fork-join pool as soon as it has been found. The elements
+ * of the chunks are then added to one JSONArray in order.
+ * <p>
+ * Each chunk is parsed with the same code as a sequential parse, so
+ * syntax errors inside the array are reported the same way. If the
+ * scan does not find the end of the array, because the input is
+ * truncated or its brackets do not match, no array is returned and the
+ * caller parses the input sequentially instead, so that both paths
+ * give the same result for malformed input.
+ */
+class ParallelArrayParser {
+
+   /**
+    * A source of UTF-8 bytes, addressed by offset
+    */
+   private static interface Source {
+
+      /**
+       * Returns a tokenizer for the bytes between two offsets
+       */
+      UTF8JSONTokenizer getTokenizer(long start, long end)
+            throws IOException;
+   }
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger
+         .getLogger(ParallelArrayParser.class);
+
+   /**
+    * Smallest number of bytes in a chunk
+    */
+   static final int MIN_CHUNK_SIZE = 1 << 20;
+
+   /**
+    * Largest number of bytes in a chunk, unless one element is larger
+    */
+   static final int MAX_CHUNK_SIZE = 1 << 30;
+
+   // ====================================================================
+   // Class methods
+   // ====================================================================
+
+   /**
+    * Parses a file in parallel if it contains an array
+    * @param pool the pool in which chunks are parsed
+    * @param channel a channel open for reading
+    * @param minChunkSize the smallest number of bytes in a chunk
+    * @param windowSize the number of bytes to map at once while
+    *        scanning and while parsing each chunk
+    * @param symbols the table used to share object keys, or
+    *        <code>null</code> to use a new one for each chunk
+    * @param statistics the statistics to which the tokens of every
+    *        chunk are added, or <code>null</code>
+    * @return the array, or <code>null</code> if the file does not
+    *         contain a complete array and should be parsed
+    *         sequentially
+    * @throws JSONException if the JSON syntax is invalid
+    * @throws IOException if an I/O error occurs
+    */
+   static JSONArray parse(
+         ForkJoinPool pool,
+         final FileChannel channel,
+         int minChunkSize,
+         final long windowSize,
+         JSONSymbolTable symbols,
+         ParseStatistics statistics) throws JSONException, IOException {
+      final long size = channel.size();
+      final ParallelArrayParser parser = new ParallelArrayParser(
+            pool,
+            new Source() {
+               @Override
+               public UTF8JSONTokenizer getTokenizer(long start, long end) {
+
+                  // Map the chunk in windows, since one element may be
+                  // too large to map at once
+
+                  return new MappedJSONTokenizer(
+                        channel,
+                        start,
+                        end,
+                        windowSize);
+               }
+            },
+            chunkSize(pool, size, minChunkSize),
+            symbols,
+            statistics);
+      try {
+         for (long offset = 0; offset < size && !parser.done;) {
+            final long length = Math.min(windowSize, size - offset);
+            final ByteBuffer window = channel
+                  .map(FileChannel.MapMode.READ_ONLY, offset, length);
+            if (!parser.scan(window, offset))
+               return null;
+            offset += length;
+         }
+         return parser.finish();
+      }
+      finally {
+         parser.cancel();
+      }
+   }
+
+   /**
+    * Parses the remaining bytes of a buffer in parallel if they contain
+    * an array. The position of the buffer is not changed.
+    * @param pool the pool in which chunks are parsed
+    * @param buffer a heap or direct buffer
+    * @param minChunkSize the smallest number of bytes in a chunk
+    * @param symbols the table used to share object keys, or
+    *        <code>null</code> to use a new one for each chunk
+    * @param statistics the statistics to which the tokens of every
+    *        chunk are added, or <code>null</code>
+    * @return the array, or <code>null</code> if the buffer does not
+    *         contain a complete array and should be parsed
+    *         sequentially
+    * @throws JSONException if the JSON syntax is invalid
+    * @throws IOException if an I/O error occurs
+    */
+   static JSONArray parse(
+         ForkJoinPool pool,
+         ByteBuffer buffer,
+         int minChunkSize,
+         JSONSymbolTable symbols,
+         ParseStatistics statistics) throws JSONException, IOException {
+      final ByteBuffer input = buffer.duplicate();
+      final ParallelArrayParser parser = new ParallelArrayParser(
+            pool,
+            new Source() {
+               @Override
+               public UTF8JSONTokenizer getTokenizer(long start, long end) {
+                  final ByteBuffer region = input.duplicate();
+                  region.limit((int) end);
+                  region.position((int) start);
+                  return new UTF8JSONTokenizer(region);
+               }
+            },
+            chunkSize(pool, input.remaining(), minChunkSize),
+            symbols,
+            statistics);
+      try {
+         if (!parser.scan(input, 0))
+            return null;
+         return parser.finish();
+      }
+      finally {
+         parser.cancel();
+      }
+   }
+
+   /**
+    * Returns the chunk size that gives each thread in the pool a few
+    * chunks to parse
+    */
+   private static long chunkSize(
+         ForkJoinPool pool,
+         long size,
+         int minChunkSize) {
+      final long chunkSize = Math
+            .max(minChunkSize, size / (4 * pool.getParallelism()));
+      return Math.min(chunkSize, MAX_CHUNK_SIZE);
+   }
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final ForkJoinPool pool;
+   private final Source source;
+   private final long chunkSize;
+   private final JSONSymbolTable symbols;
+   private final ParseStatistics statistics;
+
+   // Scanning state
+
+   private boolean started;
+   private boolean done;
+   private int depth;
+   private boolean inString;
+   private boolean escaped;
+   private long chunkStart;
+
+   // Chunks being parsed, in input order
+
+   private final List<Future<JSONArray>> chunks = new ArrayList<Future<JSONArray>>();
+
+   // Statistics for each chunk, if statistics are being collected
+
+   private final List<ParseStatistics> parts = new ArrayList<ParseStatistics>();
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new parser for the specified source. All the chunks
+    * share one symbol table.
+    */
+   private ParallelArrayParser(
+         ForkJoinPool pool,
+         Source source,
+         long chunkSize,
+         JSONSymbolTable symbols,
+         ParseStatistics statistics) {
+      this.pool = pool;
+      this.source = source;
+      this.chunkSize = chunkSize;
+      this.symbols = symbols;
+      this.statistics = statistics;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Scans the remaining bytes of a buffer, starting a task for each
+    * chunk as it is found
+    * @param base the offset of index 0 of the buffer
+    * @return <code>false</code> if the input does not start with an
+    *         array, or its brackets do not match
+    */
+   private boolean scan(ByteBuffer buffer, long base) {
+      for (int i = buffer.position(), n = buffer.limit(); i < n; i++) {
+         final int c = buffer.get(i) & 0xFF;
+         if (inString) {
+            if (escaped)
+               escaped = false;
+            else if (c == '\\')
+               escaped = true;
+            else if (c == '"')
+               inString = false;
+            continue;
+         }
+         if (!started) {
+            if (AbstractJSONTokenizer.isWhitespace(c))
+               continue;
+            if (c != '[')
+               return false;
+            started = true;
+            depth = 1;
+            chunkStart = base + i + 1;
+            continue;
+         }
+         switch (c) {
+            case '"':
+               inString = true;
+               break;
+            case '{':
+            case '[':
+               depth++;
+               break;
+            case '}':
+
+               // A closing brace that ends the array is a syntax error
+               // for the sequential parser to report
+
+               if (--depth == 0)
+                  return false;
+               break;
+            case ']':
+               if (--depth == 0) {
+                  submit(chunkStart, base + i);
+                  done = true;
+                  return true;
+               }
+               break;
+            case ',':
+               if (depth == 1 && base + i - chunkStart >= chunkSize) {
+                  submit(chunkStart, base + i);
+                  chunkStart = base + i + 1;
+               }
+               break;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Starts a task that parses the elements between two offsets
+    */
+   private void submit(final long start, final long end) {
+      final ParseStatistics part = statistics == null
+            ? null
+            : new ParseStatistics();
+      if (part != null)
+         parts.add(part);
+      chunks.add(pool.submit(new Callable<JSONArray>() {
+         @Override
+         public JSONArray call() throws JSONException, IOException {
+            final UTF8JSONTokenizer tokenizer = source
+                  .getTokenizer(start, end);
+            // Without a shared table, each chunk gets its own, which
+            // is not safe to share between threads
+            tokenizer.setSymbolTable(symbols);
+            tokenizer.setStatistics(part);
+            return JSONArray.parseArray(tokenizer);
+         }
+      }));
+   }
+
+   /**
+    * Waits for the chunks to be parsed and joins them into one array.
+    * Returns <code>null</code> if the end of the array was not found.
+    */
+   private JSONArray finish() throws JSONException, IOException {
+      if (!done) {
+         if (started)
+            log.debug("End of array not found; parsing sequentially");
+         return null;
+      }
+      log.debug(String.format("Parsing array in %d chunks", chunks.size()));
+      final JSONArray array = new JSONArray();
+      for (final Future<JSONArray> chunk : chunks)
+         array.addAll(await(chunk));
+      chunks.clear();
+      array.trimToSize();
+      if (statistics != null) {
+         statistics.token(JSONTokenType.START_ARRAY);
+         for (final ParseStatistics part : parts)
+            statistics.add(part, 1);
+         statistics.token(JSONTokenType.END_ARRAY);
+      }
+      return array;
+   }
+
+   /**
+    * Cancels any chunks still being parsed
+    */
+   private void cancel() {
+      for (final Future<JSONArray> chunk : chunks)
+         chunk.cancel(false);
+   }
+
+   /**
+    * Waits for a chunk to be parsed and returns its elements
+    */
+   private JSONArray await(Future<JSONArray> chunk)
+         throws JSONException, IOException {
+      try {
+         return chunk.get();
+      }
+      catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IOException(e);
+      }
+      catch (ExecutionException e) {
+
+         // A fork-join pool wraps checked exceptions in runtime
+         // exceptions, so look for the original along the cause chain
+
+         for (Throwable t = e.getCause(); t != null; t = t.getCause()) {
+            if (t instanceof JSONException)
+               throw (JSONException) t;
+            if (t instanceof IOException)
+               throw (IOException) t;
+         }
+         final Throwable cause = e.getCause();
+         if (cause instanceof RuntimeException)
+            throw (RuntimeException) cause;
+         throw new JSONException(cause);
+      }
+   }
+}
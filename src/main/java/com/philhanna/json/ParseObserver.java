@@ -0,0 +1,30 @@
+package com.philhanna.json;
+
+/**
+ * An interface for objects that are told about each document a
+ * {@link JSONParser} parses, for example to collect metrics. See
+ * {@link JSONParser#setObserver(ParseObserver)}. The methods are called
+ * in the thread that called the parser, and should return quickly.
+ */
+public interface ParseObserver {
+
+   /**
+    * Receives notice that a document is about to be parsed
+    */
+   public void documentStarted();
+
+   /**
+    * Receives the statistics for a document that has been parsed
+    * @param statistics the statistics
+    */
+   public void documentEnded(ParseStatistics statistics);
+
+   /**
+    * Receives the statistics for a document whose parsing failed, as
+    * far as it went, and the exception that will be thrown to the
+    * caller
+    * @param statistics the statistics
+    * @param e a <code>JSONException</code> or <code>IOException</code>
+    */
+   public void documentFailed(ParseStatistics statistics, Exception e);
+}
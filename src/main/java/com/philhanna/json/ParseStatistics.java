@@ -0,0 +1,290 @@
+package com.philhanna.json;
+
+/**
+ * Statistics about one parsed document, passed to a
+ * {@link ParseObserver}. The counts of tokens, strings and numbers, and
+ * the depth, are collected by the tokenizers in this package; a parse
+ * from any other {@link JSONTokenizer} reports only its duration and
+ * root type. For a lazy parse, which does not tokenize, the token count
+ * is the number of values indexed.
+ */
+public class ParseStatistics {
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final long startTime = System.nanoTime();
+   private long elapsedNanos;
+   private long inputLength;
+   private boolean inputBytes;
+   private long tokens;
+   private long strings;
+   private long numbers;
+   private long objects;
+   private long arrays;
+   private int depth;
+   private int maxDepth;
+   private JSONType rootType;
+   private JSONTokenType lastToken;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates new statistics, starting the clock
+    */
+   ParseStatistics() {
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns the time taken to parse the document
+    * @return the elapsed time in nanoseconds
+    */
+   public long getElapsedNanos() {
+      return elapsedNanos;
+   }
+
+   /**
+    * Returns the amount of input consumed: bytes for UTF-8 input, or
+    * characters for a <code>String</code> or <code>Reader</code>
+    * @return the input length, or zero if it is not known
+    */
+   public long getInputLength() {
+      return inputLength;
+   }
+
+   /**
+    * Returns <code>true</code> if the input length is a number of bytes
+    * @return <code>true</code> for UTF-8 input, <code>false</code> for
+    *         characters
+    */
+   public boolean isInputBytes() {
+      return inputBytes;
+   }
+
+   /**
+    * Returns the number of tokens read, including brackets, commas and
+    * colons
+    * @return the token count
+    */
+   public long getTokens() {
+      return tokens;
+   }
+
+   /**
+    * Returns the number of strings read, including object keys
+    * @return the string count
+    */
+   public long getStrings() {
+      return strings;
+   }
+
+   /**
+    * Returns the number of numbers read
+    * @return the number count
+    */
+   public long getNumbers() {
+      return numbers;
+   }
+
+   /**
+    * Returns the number of objects read
+    * @return the object count
+    */
+   public long getObjects() {
+      return objects;
+   }
+
+   /**
+    * Returns the number of arrays read
+    * @return the array count
+    */
+   public long getArrays() {
+      return arrays;
+   }
+
+   /**
+    * Returns the greatest nesting depth of objects and arrays. A
+    * document whose root is a scalar has depth 0, one whose root is an
+    * empty object has depth 1.
+    * @return the maximum depth
+    */
+   public int getMaxDepth() {
+      return maxDepth;
+   }
+
+   /**
+    * Returns the type of the root value
+    * @return the type, or <code>null</code> if the input was empty or
+    *         the parse failed before the first token
+    */
+   public JSONType getRootType() {
+      return rootType;
+   }
+
+   /**
+    * Returns the type of the last token read. If the parse failed, this
+    * is where it failed: the token that was not expected, or the one
+    * before input that could not be read as a token.
+    * @return the type, or <code>null</code> if no token was read
+    */
+   public JSONTokenType getLastToken() {
+      return lastToken;
+   }
+
+   @Override
+   public String toString() {
+      return String.format(
+            "%s: %d tokens, %d strings, %d numbers, %d objects, "
+                  + "%d arrays, depth %d, %d %s in %d ns",
+            rootType,
+            tokens,
+            strings,
+            numbers,
+            objects,
+            arrays,
+            maxDepth,
+            inputLength,
+            inputBytes
+                  ? "bytes"
+                  : "chars",
+            elapsedNanos);
+   }
+
+   // ====================================================================
+   // Package methods
+   // ====================================================================
+
+   /**
+    * Counts a token
+    * @param type the token type
+    */
+   void token(JSONTokenType type) {
+      if (tokens++ == 0)
+         rootType = rootTypeOf(type);
+      lastToken = type;
+      switch (type) {
+         case START_OBJECT:
+            objects++;
+            enter();
+            break;
+         case START_ARRAY:
+            arrays++;
+            enter();
+            break;
+         case END_OBJECT:
+         case END_ARRAY:
+            depth--;
+            break;
+         case STRING:
+            strings++;
+            break;
+         case NUMBER:
+            numbers++;
+            break;
+         default:
+            break;
+      }
+   }
+
+   /**
+    * Counts a value found by the lazy index, which is not tokenized
+    * @param type the token type of the value
+    * @param depth the number of objects and arrays the value is in
+    */
+   void value(JSONTokenType type, int depth) {
+      if (tokens++ == 0)
+         rootType = rootTypeOf(type);
+      lastToken = type;
+      switch (type) {
+         case START_OBJECT:
+            objects++;
+            maxDepth = Math.max(maxDepth, depth + 1);
+            break;
+         case START_ARRAY:
+            arrays++;
+            maxDepth = Math.max(maxDepth, depth + 1);
+            break;
+         case STRING:
+            strings++;
+            break;
+         case NUMBER:
+            numbers++;
+            break;
+         default:
+            break;
+      }
+   }
+
+   /**
+    * Adds the counts from the statistics for part of a document
+    * @param part the statistics for the part
+    * @param depth the depth at which the part starts
+    */
+   void add(ParseStatistics part, int depth) {
+      tokens += part.tokens;
+      strings += part.strings;
+      numbers += part.numbers;
+      objects += part.objects;
+      arrays += part.arrays;
+      maxDepth = Math.max(maxDepth, depth + part.maxDepth);
+   }
+
+   /**
+    * Stops the clock
+    * @param root the parsed value, or <code>null</code>
+    * @param inputLength the amount of input consumed, or -1 if it is
+    *        not known
+    * @param bytes <code>true</code> if the input length is in bytes
+    */
+   void end(JSONValue root, long inputLength, boolean bytes) {
+      elapsedNanos = System.nanoTime() - startTime;
+      if (root != null)
+         rootType = root.getType();
+      if (inputLength >= 0)
+         this.inputLength = inputLength;
+      this.inputBytes = bytes;
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Enters an object or array
+    */
+   private void enter() {
+      if (++depth > maxDepth)
+         maxDepth = depth;
+   }
+
+   /**
+    * Returns the type of value that starts with a token
+    */
+   private static JSONType rootTypeOf(JSONTokenType type) {
+      switch (type) {
+         case START_OBJECT:
+            return JSONType.OBJECT;
+         case START_ARRAY:
+            return JSONType.ARRAY;
+         case STRING:
+            return JSONType.STRING;
+         case NUMBER:
+            return JSONType.NUMBER;
+         case TRUE:
+            return JSONType.TRUE;
+         case FALSE:
+            return JSONType.FALSE;
+         case NULL:
+            return JSONType.NULL;
+         default:
+            return null;
+      }
+   }
+}
@@ -0,0 +1,164 @@
+package com.philhanna.json;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A record of one parse or write that took longer than the threshold
+ * set in {@link JSONStatistics}. A JMX console shows each record as a
+ * row with the thread and time, so that a slow request can be matched
+ * with the document that made it slow.
+ */
+public class SlowOperation {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   /**
+    * Operation name of a parse
+    */
+   public static final String PARSE = "parse";
+
+   /**
+    * Operation name of a write
+    */
+   public static final String WRITE = "write";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final String operation;
+   private final long startTime;
+   private final String threadName;
+   private final long length;
+   private final String unit;
+   private final JSONType rootType;
+   private final int depth;
+   private final long elapsedNanos;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new record
+    * @param operation {@link #PARSE} or {@link #WRITE}
+    * @param startTime the time the operation started, in milliseconds
+    *        since the epoch
+    * @param threadName the name of the thread that did the operation
+    * @param length the size of the input parsed or the output written
+    * @param unit <code>"bytes"</code> or <code>"chars"</code>
+    * @param rootType the type of the root value, or <code>null</code>
+    * @param depth the greatest nesting depth of objects and arrays
+    * @param elapsedNanos the time taken, in nanoseconds
+    */
+   @ConstructorProperties({
+         "operation",
+         "startTime",
+         "threadName",
+         "length",
+         "unit",
+         "rootType",
+         "depth",
+         "elapsedNanos" })
+   public SlowOperation(
+         String operation,
+         long startTime,
+         String threadName,
+         long length,
+         String unit,
+         JSONType rootType,
+         int depth,
+         long elapsedNanos) {
+      this.operation = operation;
+      this.startTime = startTime;
+      this.threadName = threadName;
+      this.length = length;
+      this.unit = unit;
+      this.rootType = rootType;
+      this.depth = depth;
+      this.elapsedNanos = elapsedNanos;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Returns the kind of operation
+    * @return {@link #PARSE} or {@link #WRITE}
+    */
+   public String getOperation() {
+      return operation;
+   }
+
+   /**
+    * Returns the time the operation started
+    * @return the time in milliseconds since the epoch
+    */
+   public long getStartTime() {
+      return startTime;
+   }
+
+   /**
+    * Returns the name of the thread that did the operation
+    * @return the thread name
+    */
+   public String getThreadName() {
+      return threadName;
+   }
+
+   /**
+    * Returns the size of the input parsed or the output written
+    * @return the size, in the unit given by {@link #getUnit()}
+    */
+   public long getLength() {
+      return length;
+   }
+
+   /**
+    * Returns the unit of the length
+    * @return <code>"bytes"</code> or <code>"chars"</code>
+    */
+   public String getUnit() {
+      return unit;
+   }
+
+   /**
+    * Returns the type of the root value
+    * @return the type, or <code>null</code> if it is not known
+    */
+   public JSONType getRootType() {
+      return rootType;
+   }
+
+   /**
+    * Returns the greatest nesting depth of objects and arrays
+    * @return the depth
+    */
+   public int getDepth() {
+      return depth;
+   }
+
+   /**
+    * Returns the time taken
+    * @return the time in nanoseconds
+    */
+   public long getElapsedNanos() {
+      return elapsedNanos;
+   }
+
+   @Override
+   public String toString() {
+      return String.format(
+            "Slow %s in thread %s: %s, depth %d, %d %s in %d ns",
+            operation,
+            threadName,
+            rootType,
+            depth,
+            length,
+            unit,
+            elapsedNanos);
+   }
+}
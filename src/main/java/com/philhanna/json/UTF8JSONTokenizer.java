@@ -0,0 +1,250 @@
+package com.philhanna.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Tokenizes a JSON representation encoded in UTF-8, reading bytes
+ * directly from an <code>InputStream</code>, a byte array or a
+ * <code>ByteBuffer</code>. Only the contents of strings are decoded;
+ * everything else in JSON is ASCII and is lexed from the bytes as is.
+ */
+public class UTF8JSONTokenizer extends AbstractJSONTokenizer {
+
+   // ====================================================================
+   // Class constants and variables
+   // ====================================================================
+
+   private static final Logger log = Logger
+         .getLogger(UTF8JSONTokenizer.class);
+
+   private static final int BUFFER_SIZE = 8192;
+
+   private static final String ERRMSG_UTF8 = "Invalid UTF-8 sequence starting with byte 0x%02x";
+
+   // ====================================================================
+   // Instance variables
+   // ====================================================================
+
+   private final InputStream in;
+   private final byte[] streamBuffer;
+
+   // Input buffer and the range of it not yet read
+
+   private ByteBuffer buffer;
+   private int position;
+   private int limit;
+
+   // Number of bytes consumed from the buffers before this one, and
+   // the index at which this one started
+
+   private long consumed;
+   private int start;
+
+   // ====================================================================
+   // Constructors
+   // ====================================================================
+
+   /**
+    * Creates a new JSON tokenizer for the specified input stream.
+    * @param in an input stream of UTF-8 bytes
+    */
+   public UTF8JSONTokenizer(InputStream in) {
+      this.in = in;
+      this.streamBuffer = new byte[BUFFER_SIZE];
+      this.buffer = ByteBuffer.wrap(streamBuffer);
+   }
+
+   /**
+    * Creates a new JSON tokenizer for the specified byte array.
+    * @param bytes an array of UTF-8 bytes
+    */
+   public UTF8JSONTokenizer(byte[] bytes) {
+      this(ByteBuffer.wrap(bytes));
+   }
+
+   /**
+    * Creates a new JSON tokenizer for the remaining bytes in the
+    * specified buffer, which may be a heap or a direct buffer. The
+    * position of the buffer is not changed.
+    * @param buffer a buffer of UTF-8 bytes
+    */
+   public UTF8JSONTokenizer(ByteBuffer buffer) {
+      this.in = null;
+      this.streamBuffer = null;
+      setBuffer(buffer);
+   }
+
+   // ====================================================================
+   // Implementation of AbstractJSONTokenizer
+   // ====================================================================
+
+   @Override
+   int read() throws IOException {
+      if (position == limit && !fill())
+         return -1;
+      return buffer.get(position++) & 0xFF;
+   }
+
+   @Override
+   void unread() {
+      position--;
+   }
+
+   @Override
+   long getOffset() {
+      return consumed + position - start;
+   }
+
+   @Override
+   void copyStringCharacters() throws JSONException, IOException {
+      int p = position;
+      int n = limit;
+      int length = getTextLength();
+      char[] text = ensureCapacity(1);
+      while (p < n) {
+         final int b = buffer.get(p);
+         if (b >= ' ') {
+            if (b == '"' || b == '\\')
+               break;
+
+            // Grow the token text as the string needs it, not by the
+            // size of the rest of the input, which may be a mapped
+            // window of hundreds of megabytes
+
+            if (length == text.length) {
+               setTextLength(length);
+               text = ensureCapacity(1);
+            }
+            text[length++] = (char) b;
+            p++;
+         }
+         else if (b >= 0) {
+            break;
+         }
+         else {
+            position = p + 1;
+            setTextLength(length);
+            decodeMultiByteCharacter(b & 0xFF);
+            p = position;
+            n = limit;
+            length = getTextLength();
+            text = ensureCapacity(1);
+         }
+      }
+      setTextLength(length);
+      position = p;
+   }
+
+   // ====================================================================
+   // Instance methods
+   // ====================================================================
+
+   /**
+    * Closes the tokenizer and the underlying input stream, if any
+    * @throws IOException
+    */
+   public void close() throws IOException {
+      if (in != null)
+         in.close();
+   }
+
+   /**
+    * Refills the input buffer. Subclasses that supply their input in
+    * pieces override this and call {@link #setBuffer(ByteBuffer)}.
+    * @return <code>false</code> at end of input
+    * @throws IOException if an I/O error occurs
+    */
+   boolean fill() throws IOException {
+      if (in == null)
+         return false;
+      consumed += position - start;
+      start = 0;
+      final int n = in.read(streamBuffer, 0, streamBuffer.length);
+      if (n <= 0) {
+         position = limit = 0;
+         return false;
+      }
+      position = 0;
+      limit = n;
+      return true;
+   }
+
+   /**
+    * Makes the remaining bytes of the specified buffer the next input
+    * @param buffer the buffer
+    */
+   final void setBuffer(ByteBuffer buffer) {
+      if (this.buffer != null)
+         consumed += position - start;
+      this.start = buffer.position();
+      this.buffer = buffer;
+      this.position = buffer.position();
+      this.limit = buffer.limit();
+   }
+
+   // ====================================================================
+   // Private instance methods
+   // ====================================================================
+
+   /**
+    * Decodes the remainder of a multi-byte UTF-8 sequence and appends
+    * the resulting character(s) to the token text.
+    * @param lead the first byte of the sequence, already consumed
+    */
+   private void decodeMultiByteCharacter(int lead)
+         throws JSONException, IOException {
+      final int count;
+      final int min;
+      int codePoint;
+      if (lead >= 0xC2 && lead <= 0xDF) {
+         count = 1;
+         min = 0x80;
+         codePoint = lead & 0x1F;
+      }
+      else if (lead >= 0xE0 && lead <= 0xEF) {
+         count = 2;
+         min = 0x800;
+         codePoint = lead & 0x0F;
+      }
+      else if (lead >= 0xF0 && lead <= 0xF4) {
+         count = 3;
+         min = 0x10000;
+         codePoint = lead & 0x07;
+      }
+      else {
+         throw invalidSequence(lead);
+      }
+      for (int i = 0; i < count; i++) {
+         final int c = read();
+         if ((c & 0xC0) != 0x80)
+            throw invalidSequence(lead);
+         codePoint = (codePoint << 6) | (c & 0x3F);
+      }
+      if (codePoint < min
+            || codePoint > Character.MAX_CODE_POINT
+            || (codePoint >= Character.MIN_SURROGATE
+                  && codePoint <= Character.MAX_SURROGATE)) {
+         throw invalidSequence(lead);
+      }
+      if (count == 3) {
+         append(Character.highSurrogate(codePoint));
+         append(Character.lowSurrogate(codePoint));
+      }
+      else {
+         append(codePoint);
+      }
+   }
+
+   /**
+    * Returns the exception for an invalid UTF-8 sequence
+    */
+   private JSONException invalidSequence(int lead) {
+      final String errmsg = String.format(ERRMSG_UTF8, lead);
+      log.trace(errmsg);
+      return new JSONException(errmsg);
+   }
+}
@@ -158,6 +158,94 @@ public class TestDefaultJSONTokenizer extends BaseTest {
       }
    }
 
+   @Test
+   public void returnsTokenTypes() throws Exception {
+      final String input = "{\"a\":[1,-2.5e3,true,false,null,\"x\"]}";
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader(input));
+      try {
+         final JSONTokenType[] expectedTypes = {
+               JSONTokenType.START_OBJECT,
+               JSONTokenType.STRING,
+               JSONTokenType.COLON,
+               JSONTokenType.START_ARRAY,
+               JSONTokenType.NUMBER,
+               JSONTokenType.COMMA,
+               JSONTokenType.NUMBER,
+               JSONTokenType.COMMA,
+               JSONTokenType.TRUE,
+               JSONTokenType.COMMA,
+               JSONTokenType.FALSE,
+               JSONTokenType.COMMA,
+               JSONTokenType.NULL,
+               JSONTokenType.COMMA,
+               JSONTokenType.STRING,
+               JSONTokenType.END_ARRAY,
+               JSONTokenType.END_OBJECT, };
+         for (final JSONTokenType expectedType : expectedTypes) {
+            assertEquals(expectedType, tokenizer.nextToken());
+            assertEquals(expectedType, tokenizer.getTokenType());
+         }
+         assertNull(tokenizer.nextToken());
+      }
+      finally {
+         tokenizer.close();
+      }
+   }
+
+   @Test
+   public void returnsTokenText() throws Exception {
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader("[\"a\\tb\", -2.5e3]"));
+      try {
+         assertEquals(JSONTokenType.START_ARRAY, tokenizer.nextToken());
+         assertEquals("[", tokenizer.getText());
+         assertEquals(JSONTokenType.STRING, tokenizer.nextToken());
+         assertEquals("\"a\\tb\"", tokenizer.getText());
+         tokenizer.nextToken();
+         assertEquals(JSONTokenType.NUMBER, tokenizer.nextToken());
+         assertEquals("-2.5e3", tokenizer.getText());
+      }
+      finally {
+         tokenizer.close();
+      }
+   }
+
+   @Test
+   public void decodesStrings() throws Exception {
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader("\"plain\" \"\\ud834\\udd1e\\/\\t\""));
+      try {
+         assertEquals(JSONTokenType.STRING, tokenizer.nextToken());
+         assertEquals("plain", tokenizer.getString());
+         assertEquals("\"plain\"", tokenizer.getText());
+         assertEquals(JSONTokenType.STRING, tokenizer.nextToken());
+         assertEquals("\ud834\udd1e/\t", tokenizer.getString());
+         final String text = tokenizer.getText();
+         assertEquals("\"\\ud834\\udd1e\\/\\t\"", text);
+         tokenizer.unread(text);
+         assertEquals(JSONTokenType.STRING, tokenizer.nextToken());
+         assertEquals("\ud834\udd1e/\t", tokenizer.getString());
+         assertEquals(text, tokenizer.getText());
+      }
+      finally {
+         tokenizer.close();
+      }
+   }
+
+   @Test
+   public void returnsNumberAtEndOfInput() throws Exception {
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader("123"));
+      try {
+         assertEquals("123", tokenizer.readToken());
+         assertNull(tokenizer.readToken());
+      }
+      finally {
+         tokenizer.close();
+      }
+   }
+
    // Some unit tests that are expected to pass
 
    private void tokenizeValidJSON(String input) throws Exception {
@@ -206,6 +294,34 @@ public class TestDefaultJSONTokenizer extends BaseTest {
       tokenizeValidJSON("{ \"number\" : 12 }, { \"location\" : \"Africa\" }");
    }
 
+   @Test
+   public void skipsValues() throws Exception {
+      final DefaultJSONTokenizer jt = new DefaultJSONTokenizer(
+            new StringReader(
+                  "[ {\"a\":[1,\"]}\\\"\"]} , "
+                        + "\"x\\\"y\" -1.5e3 true null ] 7"));
+      try {
+         assertEquals(JSONTokenType.START_ARRAY, jt.nextToken());
+         assertEquals(JSONTokenType.START_OBJECT, jt.skipValue());
+         assertEquals(JSONTokenType.COMMA, jt.nextToken());
+         assertEquals(JSONTokenType.STRING, jt.skipValue());
+         assertEquals(JSONTokenType.NUMBER, jt.skipValue());
+         assertEquals(JSONTokenType.TRUE, jt.skipValue());
+         assertEquals(JSONTokenType.NULL, jt.skipValue());
+         assertEquals(JSONTokenType.END_ARRAY, jt.skipValue());
+         assertEquals("7", jt.readToken());
+         assertNull(jt.skipValue());
+      }
+      finally {
+         jt.close();
+      }
+   }
+
+   @Test(expected = JSONException.class)
+   public void catchesUnterminatedSkippedValue() throws Exception {
+      new DefaultJSONTokenizer(new StringReader("{\"a\":[1,2}")).skipValue();
+   }
+
    // Now some unit tests that are expected to fail
 
    private void tokenizeInvalidJSON(String input) throws Exception {
@@ -230,6 +346,29 @@ public class TestDefaultJSONTokenizer extends BaseTest {
       }
    }
 
+   @Test
+   public void computesNumberValuesWhileReading() throws Exception {
+      final DefaultJSONTokenizer jt = new DefaultJSONTokenizer(
+            new StringReader("12 -0.25e1 0.30000000000000004 1e400"));
+      try {
+         jt.nextToken();
+         assertTrue(jt.hasLongValue());
+         assertTrue(jt.hasDoubleValue());
+         assertEquals(12, jt.getDoubleValue(), 0);
+         jt.nextToken();
+         assertFalse(jt.hasLongValue());
+         assertTrue(jt.hasDoubleValue());
+         assertEquals(-2.5, jt.getDoubleValue(), 0);
+         jt.nextToken();
+         assertFalse(jt.hasDoubleValue());
+         jt.nextToken();
+         assertFalse(jt.hasDoubleValue());
+      }
+      finally {
+         jt.close();
+      }
+   }
+
    @Test
    public void catchesBadNumberFormat() throws Exception {
       tokenizeInvalidJSON("{ \"age\" : 3+3+3 }");
@@ -245,4 +384,9 @@ public class TestDefaultJSONTokenizer extends BaseTest {
       tokenizeInvalidJSON("{ TRUE }");
    }
 
+   @Test
+   public void catchesUnterminatedString() throws Exception {
+      tokenizeInvalidJSON("[ \"abc");
+   }
+
 }
@@ -2,6 +2,8 @@ package com.philhanna.json;
 
 import static org.junit.Assert.*;
 
+import java.math.BigInteger;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -35,4 +37,177 @@ public class TestJSONArray extends BaseTest {
       assertEquals(4, array.size());
    }
 
+   @Test
+   public void packsIntegers() throws Exception {
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse("[1, -2, 9223372036854775807]");
+      assertTrue(array.isPacked());
+      assertEquals(Long.MAX_VALUE, array.getLong(2));
+      assertArrayEquals(
+            new long[] { 1, -2, Long.MAX_VALUE },
+            array.toLongArray());
+      assertEquals("[1,-2,9223372036854775807]", array.toString());
+   }
+
+   @Test
+   public void packsMixedNumbersAsDoubles() throws Exception {
+      final JSONArray array = new JSONArray();
+      array.add(new JSONNumber(3));
+      array.add(new JSONNumber(0.5));
+      array.add(new JSONNumber(2.0));
+      final JSONNumber small = JSONNumber.parseNumber("-1e-3");
+      small.getDouble();
+      array.add(small);
+      array.add(JSONNumber.valueOf(40));
+      assertTrue(array.isPacked());
+      assertArrayEquals(
+            new double[] { 3, 0.5, 2, -0.001, 40 },
+            array.toDoubleArray(),
+            0);
+      assertTrue(((JSONNumber) array.get(0)).isIntegral());
+      assertFalse(((JSONNumber) array.get(2)).isIntegral());
+      assertEquals("[3,0.5,2,-0.001,40]", array.toString());
+   }
+
+   @Test
+   public void unpacksWhenNeeded() throws Exception {
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse("[1.5, 9007199254740993, \"x\"]");
+      assertFalse(array.isPacked());
+      assertEquals("[1.5,9007199254740993,\"x\"]", array.toString());
+      final JSONArray numbers = new JSONArray();
+      numbers.add(new JSONNumber(1));
+      numbers.add(new JSONNumber(Integer.valueOf(2)));
+      assertFalse(numbers.isPacked());
+      assertEquals(2, numbers.getLong(1));
+   }
+
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void checksPackedIndex() {
+      final JSONArray array = new JSONArray();
+      array.add(new JSONNumber(1));
+      array.get(1);
+   }
+
+   @Test
+   public void growsAfterTrimming() throws Exception {
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse("[[1], [1.5], [\"x\"], []]");
+      for (final JSONValue element : array) {
+         final JSONArray inner = (JSONArray) element;
+         inner.trimToSize();
+         for (int i = 0; i < 3; i++)
+            inner.add(new JSONNumber(i));
+      }
+      assertEquals(
+            "[[1,0,1,2],[1.5,0,1,2],[\"x\",0,1,2],[0,1,2]]",
+            array.toString());
+      assertTrue(((JSONArray) array.get(0)).isPacked());
+      assertTrue(((JSONArray) array.get(1)).isPacked());
+      assertFalse(((JSONArray) array.get(2)).isPacked());
+   }
+
+   @Test
+   public void packsIntegersWithoutConverting() throws Exception {
+      final String input = "[0, -9223372036854775808, 9223372036854775807]";
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse(input);
+      assertTrue(array.isPacked());
+      assertEquals(Long.MIN_VALUE, array.getLong(1));
+      final JSONEventReader reader = new JSONEventReader(
+            new DefaultJSONTokenizer(new java.io.StringReader(input)));
+      reader.next();
+      final JSONArray read = (JSONArray) reader.readValue();
+      assertTrue(read.isPacked());
+      assertEquals(array.toString(), read.toString());
+   }
+
+   @Test
+   public void packsFractionsAsDoubles() throws Exception {
+      final String[] inputs = { "[0.5,1.5,2.5]", "[1,2.5]", "[1.5, 2.5e3]" };
+      final double[][] expected = {
+            { 0.5, 1.5, 2.5 },
+            { 1, 2.5 },
+            { 1.5, 2500 }, };
+      for (int i = 0; i < inputs.length; i++) {
+         final JSONArray array = (JSONArray) JSONParser.newParser()
+               .parse(inputs[i]);
+         assertTrue(inputs[i], array.isPacked());
+         assertArrayEquals(expected[i], array.toDoubleArray(), 0);
+      }
+   }
+
+   @Test
+   public void convertsDoublesAsJavaDoes() throws Exception {
+      final String[] literals = {
+            "0.1",
+            "-0.0",
+            "2.5E-3",
+            "100e-2",
+            "1e22",
+            "1e23",
+            "123456789012345e-22",
+            "9007199254740993.0",
+            "0.30000000000000004",
+            "4.9e-324",
+            "1.7976931348623157e308",
+            "0.000001e10",
+            "-3.14159", };
+      final StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < literals.length; i++)
+         sb.append(i == 0 ? "" : ",").append(literals[i]);
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse(sb.append("]").toString());
+      assertTrue(array.isPacked());
+      for (int i = 0; i < literals.length; i++) {
+         final double expected = Double.parseDouble(literals[i]);
+         assertEquals(
+               literals[i],
+               Double.doubleToLongBits(expected),
+               Double.doubleToLongBits(array.getDouble(i)));
+      }
+   }
+
+   @Test
+   public void keepsNumbersThatDoublesCannotHold() throws Exception {
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse("[0.5, 9007199254740993, 1e400, 18446744073709551616]");
+      assertTrue(array.isPacked());
+      assertEquals(9007199254740993L, array.getLong(1));
+      assertEquals(
+            new BigInteger("18446744073709551616"),
+            ((JSONNumber) array.get(3)).getNumber());
+      assertTrue(Double.isInfinite(array.getDouble(2)));
+      assertEquals(
+            "[0.5,9007199254740993,1E+400,18446744073709551616]",
+            array.toString());
+      final JSONArray longs = (JSONArray) JSONParser.newParser()
+            .parse("[9007199254740993, 1, 0.5]");
+      assertTrue(longs.isPacked());
+      assertEquals("[9007199254740993,1,0.5]", longs.toString());
+      assertTrue(((JSONNumber) longs.get(1)).isIntegral());
+   }
+
+   @Test
+   public void keepsNumbersInListsUnconverted() throws Exception {
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse("[\"x\", 1.5, 7]");
+      assertFalse(array.isPacked());
+      assertFalse(((JSONNumber) array.get(1)).isConverted());
+   }
+
+   @Test
+   public void streamsNumbers() throws Exception {
+      final JSONArray doubles = (JSONArray) JSONParser.newParser()
+            .parse("[0.5, 1, 2.5]");
+      assertEquals(4, doubles.doubleStream().sum(), 0);
+      assertArrayEquals(new long[] { 0, 1, 2 }, doubles.longStream().toArray());
+      final JSONArray longs = (JSONArray) JSONParser.newParser()
+            .parse("[3, 4]");
+      assertEquals(7, longs.longStream().sum());
+      assertEquals(3.5, longs.doubleStream().average().getAsDouble(), 0);
+      final JSONArray empty = new JSONArray();
+      assertEquals(0, empty.doubleStream().count());
+      assertEquals(0, empty.longStream().count());
+   }
 }
@@ -0,0 +1,175 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONEventReader
+ */
+public class TestJSONEventReader extends BaseTest {
+
+   // ==================================================================
+   // Class constants and variables
+   // ==================================================================
+
+   private static final Logger log = Logger
+         .getLogger(TestJSONEventReader.class);
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private static JSONEventReader reader(String input) {
+      return new JSONEventReader(new StringReader(input));
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void returnsEvents() throws Exception {
+      final JSONEventReader reader = reader(
+            "{\"a\":[1,\"x\\ty\",true,false,null],\"b\":{}}");
+      final JSONEvent[] expectedEvents = {
+            JSONEvent.START_OBJECT,
+            JSONEvent.FIELD_NAME,
+            JSONEvent.START_ARRAY,
+            JSONEvent.VALUE_NUMBER,
+            JSONEvent.VALUE_STRING,
+            JSONEvent.VALUE_TRUE,
+            JSONEvent.VALUE_FALSE,
+            JSONEvent.VALUE_NULL,
+            JSONEvent.END_ARRAY,
+            JSONEvent.FIELD_NAME,
+            JSONEvent.START_OBJECT,
+            JSONEvent.END_OBJECT,
+            JSONEvent.END_OBJECT, };
+      final int[] expectedDepths = { 0, 1, 1, 2, 2, 2, 2, 2, 1, 1, 1, 1, 0 };
+      for (int i = 0; i < expectedEvents.length; i++) {
+         assertEquals(expectedEvents[i], reader.next());
+         assertEquals(expectedDepths[i], reader.getDepth());
+         if (i == 1)
+            assertEquals("a", reader.getString());
+         if (i == 3)
+            assertEquals(1, reader.getNumber().intValue());
+         if (i == 4)
+            assertEquals("x\ty", reader.getString());
+      }
+      assertNull(reader.next());
+   }
+
+   @Test
+   public void readsSeveralTopLevelValues() throws Exception {
+      final JSONEventReader reader = reader("{} [] 3 \"s\"");
+      assertEquals(JSONEvent.START_OBJECT, reader.next());
+      assertEquals(JSONEvent.END_OBJECT, reader.next());
+      assertEquals(JSONEvent.START_ARRAY, reader.next());
+      assertEquals(JSONEvent.END_ARRAY, reader.next());
+      assertEquals(JSONEvent.VALUE_NUMBER, reader.next());
+      assertEquals(JSONEvent.VALUE_STRING, reader.next());
+      assertNull(reader.next());
+   }
+
+   @Test
+   public void readsValue() throws Exception {
+      final JSONEventReader reader = reader(
+            "[{\"status\":\"OK\",\"n\":[1,2]},true]");
+      assertEquals(JSONEvent.START_ARRAY, reader.next());
+      assertEquals(JSONEvent.START_OBJECT, reader.next());
+      final JSONObject object = (JSONObject) reader.readValue();
+      assertEquals(JSONEvent.END_OBJECT, reader.getEvent());
+      assertEquals("{\"status\":\"OK\",\"n\":[1,2]}", object.toString());
+      assertEquals(JSONEvent.VALUE_TRUE, reader.next());
+      assertEquals(JSONEvent.END_ARRAY, reader.next());
+      assertNull(reader.next());
+   }
+
+   @Test
+   public void skipsValues() throws Exception {
+      final JSONEventReader reader = reader(
+            "{\"a\":{\"b\":[1,{}]},\"c\":\"s\",\"d\":[true],\"e\":2}");
+      assertEquals(JSONEvent.START_OBJECT, reader.next());
+      assertEquals(JSONEvent.FIELD_NAME, reader.next());
+      reader.skipValue();
+      assertEquals(JSONEvent.END_OBJECT, reader.getEvent());
+      assertEquals(1, reader.getDepth());
+      assertEquals(JSONEvent.FIELD_NAME, reader.next());
+      reader.skipValue();
+      assertEquals(JSONEvent.VALUE_STRING, reader.getEvent());
+      assertEquals(JSONEvent.FIELD_NAME, reader.next());
+      assertEquals(JSONEvent.START_ARRAY, reader.next());
+      reader.skipValue();
+      assertEquals(JSONEvent.END_ARRAY, reader.getEvent());
+      assertEquals(JSONEvent.FIELD_NAME, reader.next());
+      assertEquals("e", reader.getString());
+      assertEquals(JSONEvent.VALUE_NUMBER, reader.next());
+      assertEquals(JSONEvent.END_OBJECT, reader.next());
+      assertNull(reader.next());
+   }
+
+   @Test
+   public void readsLargeFile() throws Exception {
+      final InputStream stream = getClass()
+            .getResourceAsStream("/testdata/sample_input.json");
+      final JSONEventReader reader = new JSONEventReader(stream);
+      int count = 0;
+      JSONEvent event;
+      while ((event = reader.next()) != null) {
+         if (event == JSONEvent.FIELD_NAME && reader.getString().equals("Key"))
+            count++;
+      }
+      stream.close();
+      assertTrue(count > 0);
+   }
+
+   // Tests that are expected to throw an exception
+
+   private void shouldFail(String input) throws Exception {
+      final JSONEventReader reader = reader(input);
+      try {
+         while (reader.next() != null)
+            ;
+         fail("Should have thrown exception for " + input);
+      }
+      catch (JSONException isExpected) {
+         log.debug(
+               String.format(
+                     "Got expected exception %s",
+                     isExpected.getMessage()));
+      }
+   }
+
+   @Test
+   public void catchesSyntaxErrors() throws Exception {
+      shouldFail("{\"a\" 1}");
+      shouldFail("{\"a\":1,}");
+      shouldFail("[1,]");
+      shouldFail("[1}");
+      shouldFail("{1:2}");
+      shouldFail("[1 2]");
+      shouldFail("]");
+      shouldFail("[[1]");
+      shouldFail("{\"a\":");
+   }
+}
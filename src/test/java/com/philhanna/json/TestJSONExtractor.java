@@ -0,0 +1,103 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONExtractor
+ */
+public class TestJSONExtractor extends BaseTest {
+
+   // ==================================================================
+   // Instance variables
+   // ==================================================================
+
+   private JSONExtractor extractor;
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      extractor = new JSONExtractor();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private Map<String, List<JSONValue>> extract(String input)
+         throws Exception {
+      return extractor.extract(new StringReader(input));
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void extractsPaths() throws Exception {
+      extractor.add("/user/id");
+      extractor.add("/items/*/price");
+      extractor.add("/items/1");
+      extractor.add("/missing");
+      final Map<String, List<JSONValue>> results = extract(
+            "{\"skip\":{\"a\":[1,{\"b\":2}]},"
+                  + "\"user\":{\"name\":\"x\",\"id\":7},"
+                  + "\"items\":[{\"price\":1.5},{\"price\":2,\"n\":[]},{}]}");
+      assertEquals("[7]", results.get("/user/id").toString());
+      assertEquals("[1.5, 2]", results.get("/items/*/price").toString());
+      assertEquals(
+            "[{\"price\":2,\"n\":[]}]",
+            results.get("/items/1").toString());
+      assertEquals(0, results.get("/missing").size());
+   }
+
+   @Test
+   public void matchesNestedPaths() throws Exception {
+      extractor.add("/a");
+      extractor.add("/a/b");
+      extractor.add("/*/c");
+      extractor.add("");
+      final Map<String, List<JSONValue>> results = extract(
+            "{\"a\":{\"b\":1,\"c\":2},\"d\":{\"c\":3}}");
+      assertEquals("[{\"b\":1,\"c\":2}]", results.get("/a").toString());
+      assertEquals("[1]", results.get("/a/b").toString());
+      assertEquals("[2, 3]", results.get("/*/c").toString());
+      assertEquals(1, results.get("").size());
+   }
+
+   @Test
+   public void unescapesPointer() throws Exception {
+      extractor.add("/a~1b/c~0d");
+      final Map<String, List<JSONValue>> results = extractor.extract(
+            new ByteArrayInputStream(
+                  "{\"a/b\":{\"c~d\":\"ok\"}}".getBytes("UTF-8")));
+      assertEquals("[\"ok\"]", results.get("/a~1b/c~0d").toString());
+   }
+
+   @Test(expected = JSONException.class)
+   public void rejectsRelativePath() throws Exception {
+      extractor.add("a/b");
+   }
+
+   @Test(expected = JSONException.class)
+   public void rejectsMalformedInput() throws Exception {
+      extractor.add("/a");
+      extract("{\"skip\":[1,}");
+   }
+}
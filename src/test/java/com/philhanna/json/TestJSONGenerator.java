@@ -0,0 +1,210 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONGenerator
+ */
+public class TestJSONGenerator extends BaseTest {
+
+   private static final String DOCUMENT = "{\"id\":7,\"name\":\"a\\/b\",\"tags\":[\"x\",true,null,2.5,[]],\"o\":{}}";
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private static void generate(JSONGenerator generator) throws Exception {
+      generator.writeStartObject();
+      generator.writeFieldName("id");
+      generator.writeNumber(7);
+      generator.writeFieldName("name");
+      generator.writeString("a/b");
+      generator.writeFieldName("tags");
+      generator.writeStartArray();
+      generator.writeString("x");
+      generator.writeBoolean(true);
+      generator.writeNull();
+      generator.writeNumber(2.5);
+      generator.writeStartArray();
+      generator.writeEndArray();
+      generator.writeEndArray();
+      generator.writeFieldName("o");
+      generator.writeStartObject();
+      generator.writeEndObject();
+      generator.writeEndObject();
+   }
+
+   private static void shouldFail(JSONGenerator generator) throws Exception {
+      try {
+         generate(generator);
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         // Expected
+      }
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void writesSameAsWriter() throws Exception {
+      final StringBuilder sb = new StringBuilder();
+      final JSONGenerator generator = new JSONGenerator(sb);
+      generate(generator);
+      generator.flush();
+      assertEquals(DOCUMENT, sb.toString());
+      assertEquals(DOCUMENT.length(), generator.getCharsWritten());
+
+      final JSONValue value = JSONParser.newParser().parse(DOCUMENT);
+      for (final boolean pretty : new boolean[] { false, true }) {
+         final StringWriter expected = new StringWriter();
+         final JSONWriter writer = new JSONWriter(value);
+         writer.setPretty(pretty);
+         writer.writeTo(expected);
+         final StringWriter actual = new StringWriter();
+         final JSONGenerator g = new JSONGenerator(actual);
+         g.setPretty(pretty);
+         generate(g);
+         g.close();
+         assertEquals(expected.toString(), actual.toString());
+      }
+   }
+
+   @Test
+   public void writesUTF8() throws Exception {
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      final JSONGenerator generator = new JSONGenerator(stream);
+      generator.writeStartArray();
+      for (int i = 0; i < 5000; i++)
+         generator.writeString("caf\u00e9 " + i);
+      generator.writeEndArray();
+      generator.close();
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse(stream.toByteArray());
+      assertEquals(5000, array.size());
+      assertEquals("\"caf\u00e9 4999\"", array.get(4999).toString());
+
+      final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+      final JSONGenerator channel = new JSONGenerator(
+            ByteBuffer.allocate(64),
+            Channels.newChannel(sink));
+      generate(channel);
+      channel.flush();
+      assertEquals(DOCUMENT, sink.toString("UTF-8"));
+   }
+
+   @Test
+   public void writesNumbers() throws Exception {
+      final StringBuilder sb = new StringBuilder();
+      final JSONGenerator generator = new JSONGenerator(sb);
+      generator.writeStartArray();
+      generator.writeNumber(Long.MIN_VALUE);
+      generator.writeNumber(3.0);
+      generator.writeNumber(new BigDecimal("1e400"));
+      generator.writeNumber(Float.valueOf(0.5f));
+      generator.writeNumber((Number) null);
+      generator.writeEndArray();
+      generator.flush();
+      assertEquals("[-9223372036854775808,3,1E+400,0.5,null]", sb.toString());
+      try {
+         new JSONGenerator(sb).writeNumber(Double.NaN);
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         // Expected
+      }
+   }
+
+   @Test
+   public void writesLargeNumbersExactly() throws Exception {
+      final StringBuilder sb = new StringBuilder();
+      final JSONGenerator generator = new JSONGenerator(sb);
+      generator.writeStartArray();
+      generator.writeNumber(new BigDecimal("3000000000.0"));
+      generator.writeNumber(new BigInteger("-18446744073709551616"));
+      generator.writeNumber(Long.valueOf(3000000000L));
+      generator.writeNumber(Double.valueOf(3e9));
+      generator.writeEndArray();
+      generator.flush();
+      assertEquals(
+            "[3000000000.0,-18446744073709551616,3000000000,3.0E9]",
+            sb.toString());
+   }
+
+   @Test
+   public void checksStructure() throws Exception {
+      final StringBuilder sb = new StringBuilder();
+
+      // Field name in an array
+
+      JSONGenerator generator = new JSONGenerator(sb);
+      generator.writeStartArray();
+      try {
+         generator.writeFieldName("a");
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         // Expected
+      }
+
+      // Value without a field name
+
+      generator = new JSONGenerator(sb);
+      generator.writeStartObject();
+      try {
+         generator.writeNumber(1);
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         // Expected
+      }
+
+      // Mismatched end
+
+      generator = new JSONGenerator(sb);
+      generator.writeStartArray();
+      try {
+         generator.writeEndObject();
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         // Expected
+      }
+
+      // Second top-level value
+
+      generator = new JSONGenerator(sb);
+      generator.writeNull();
+      try {
+         generator.writeNull();
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         // Expected
+      }
+      shouldFail(generator);
+   }
+}
@@ -0,0 +1,218 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for lazy parsing with JSONIndex
+ */
+public class TestJSONIndex extends BaseTest {
+
+   // ==================================================================
+   // Class constants and variables
+   // ==================================================================
+
+   private static final Logger log = Logger.getLogger(TestJSONIndex.class);
+
+   // ==================================================================
+   // Instance variables
+   // ==================================================================
+
+   private JSONParser parser;
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      parser = JSONParser.newParser();
+      parser.setLazy(true);
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private static String readResource(String name) throws IOException {
+      final Reader reader = new InputStreamReader(
+            TestJSONIndex.class.getResourceAsStream(name),
+            "UTF-8");
+      final StringBuilder sb = new StringBuilder();
+      final char[] buffer = new char[4096];
+      int n;
+      while ((n = reader.read(buffer)) > 0)
+         sb.append(buffer, 0, n);
+      reader.close();
+      return sb.toString();
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void matchesEagerParser() throws Exception {
+      final JSONParser eager = JSONParser.newParser();
+      for (final String name : new String[] {
+            "/testdata/googlemap.json",
+            "/testdata/sample_input.json",
+            "/testdata/students.json", }) {
+         final String input = readResource(name);
+         assertEquals(
+               name,
+               eager.parse(input).toString(),
+               parser.parse(input).toString());
+         assertEquals(
+               name,
+               eager.parse(input).toString(),
+               parser.parse(input.getBytes("UTF-8")).toString());
+      }
+   }
+
+   @Test
+   public void getsMembers() throws Exception {
+      final JSONObject object = (JSONObject) parser.parse(
+            "{\"status\":\"OK\",\"results\":[{\"lat\":35.82},true],"
+                  + "\"tab\\tkey\":null}");
+      assertEquals(3, object.size());
+      assertEquals("OK", ((JSONString) object.get("status")).getString());
+      assertEquals(JSONNull.VALUE, object.get("tab\tkey"));
+      assertNull(object.get("missing"));
+      final JSONArray results = (JSONArray) object.get("results");
+      assertEquals(2, results.size());
+      assertEquals(JSONTrue.VALUE, results.get(1));
+      final JSONObject location = (JSONObject) results.get(0);
+      assertEquals(35.82, ((JSONNumber) location.get("lat")).getNumber()
+            .doubleValue(), 0);
+      assertSame(results, object.get("results"));
+   }
+
+   @Test
+   public void lastDuplicateKeyWins() throws Exception {
+      final JSONObject object = (JSONObject) parser
+            .parse("{\"a\":1,\"b\":2,\"a\":3}");
+      assertEquals(2, object.size());
+      assertEquals(3, ((JSONNumber) object.get("a")).getNumber().intValue());
+      assertEquals("{\"a\":3,\"b\":2}", object.toString());
+   }
+
+   @Test
+   public void copiesOnChange() throws Exception {
+      final JSONObject object = (JSONObject) parser
+            .parse("{\"a\":[1,2],\"b\":\"x\"}");
+      object.put("c", JSONFalse.VALUE);
+      assertEquals(3, object.size());
+      final JSONArray array = (JSONArray) object.get("a");
+      array.add(new JSONNumber(3));
+      assertEquals(3, array.size());
+      assertEquals(
+            "{\"a\":[1,2,3],\"b\":\"x\",\"c\":false}",
+            object.toString());
+   }
+
+   @Test
+   public void parsesScalarsAndEmptyInput() throws Exception {
+      assertEquals(
+            42,
+            ((JSONNumber) parser.parse(" 42 ")).getNumber().intValue());
+      assertEquals("[]", parser.parse("[] ignored").toString());
+      assertEquals("{}", parser.parse(new StringReader("{}")).toString());
+      assertNull(parser.parse("  "));
+      final ByteBuffer buffer = ByteBuffer
+            .wrap("[\"\u00e9\"]".getBytes("UTF-8"));
+      assertEquals("[\"\u00e9\"]", parser.parse(buffer).toString());
+      assertEquals(0, buffer.position());
+   }
+
+   // Tests that are expected to throw an exception
+
+   private void shouldFail(String input) throws Exception {
+      try {
+         parser.parse(input);
+         fail("Should have thrown exception for " + input);
+      }
+      catch (JSONException isExpected) {
+         log.debug(
+               String.format(
+                     "Got expected exception %s",
+                     isExpected.getMessage()));
+      }
+      shouldFail(input.getBytes("UTF-8"));
+   }
+
+   private void shouldFail(byte[] input) throws Exception {
+      try {
+         parser.parse(input);
+         fail("Should have thrown exception for " + Arrays.toString(input));
+      }
+      catch (JSONException isExpected) {
+         log.debug(
+               String.format(
+                     "Got expected exception %s",
+                     isExpected.getMessage()));
+      }
+   }
+
+   @Test
+   public void catchesSyntaxErrors() throws Exception {
+      shouldFail("{\"a\" 1}");
+      shouldFail("{\"a\":1,}");
+      shouldFail("[1,]");
+      shouldFail("[1}");
+      shouldFail("{1:2}");
+      shouldFail("[1 2]");
+      shouldFail("]");
+      shouldFail("[[1]");
+      shouldFail("{\"a\":");
+      shouldFail("[\"a\\x\"]");
+      shouldFail("[\"\\u12\"]");
+      shouldFail("[\"unterminated]");
+      shouldFail("[01]");
+      shouldFail("[1.]");
+      shouldFail("[nul]");
+   }
+
+   @Test
+   public void indexesUTF8Bytes() throws Exception {
+      final byte[] bytes = ("{\"caf\u00e9\":\"\u6771\u4eac \ud83d\ude00\","
+            + "\"plain\":[1.5,\"a\\u00e9\"],\"\\u00e9\":true}")
+                  .getBytes("UTF-8");
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 3);
+      buffer.put(new byte[] { 'x', 'y', 'z' }).put(bytes).flip();
+      buffer.position(3);
+      final JSONObject object = (JSONObject) parser.parse(buffer);
+      assertEquals(3, buffer.position());
+      assertEquals(
+            "\u6771\u4eac \ud83d\ude00",
+            ((JSONString) object.get("caf\u00e9")).getString());
+      assertEquals(JSONTrue.VALUE, object.get("\u00e9"));
+      assertNull(object.get("cafe"));
+      assertEquals(
+            JSONParser
+                  .newParser()
+                  .parse(new String(bytes, "UTF-8"))
+                  .toString(),
+            object.toString());
+
+      shouldFail(new byte[] { '"', (byte) 0xC3, '"' });
+      shouldFail(new byte[] { '"', (byte) 0xC0, (byte) 0x80, '"' });
+      shouldFail(new byte[] { '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"' });
+      shouldFail(new byte[] { '"', (byte) 0xF0, (byte) 0x9F, (byte) 0x98 });
+      shouldFail(new byte[] { '[', (byte) 0xC3, (byte) 0xA9, ']' });
+   }
+}
@@ -0,0 +1,157 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONLinesReader
+ */
+public class TestJSONLinesReader extends BaseTest {
+
+   // ==================================================================
+   // Instance variables
+   // ==================================================================
+
+   private ExecutorService executor;
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      executor = Executors.newFixedThreadPool(4);
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private static String records(int count) {
+      final StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < count; i++)
+         sb.append("{\"n\":").append(i).append(",\"s\":\"x\"}\n");
+      return sb.toString();
+   }
+
+   private static void assertRecords(JSONLinesReader reader, int count)
+         throws Exception {
+      for (int i = 0; i < count; i++) {
+         final JSONObject record = (JSONObject) reader.next();
+         assertEquals(i, ((JSONNumber) record.get("n")).getNumber().intValue());
+      }
+      assertNull(reader.next());
+      reader.close();
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void readsSequentially() throws Exception {
+      assertRecords(new JSONLinesReader(new StringReader(records(200))), 200);
+   }
+
+   @Test
+   public void readsInParallelInOrder() throws Exception {
+      assertRecords(
+            new JSONLinesReader(new StringReader(records(5000)), executor),
+            5000);
+      assertRecords(
+            new JSONLinesReader(
+                  new ByteArrayInputStream(records(300).getBytes("UTF-8")),
+                  executor),
+            300);
+   }
+
+   @Test
+   public void streamsInOrderAndCloses() throws Exception {
+      final boolean[] closed = new boolean[1];
+      final Reader in = new StringReader(records(1000)) {
+         @Override
+         public void close() {
+            closed[0] = true;
+            super.close();
+         }
+      };
+      final Stream<JSONValue> values = new JSONLinesReader(in, executor)
+            .stream();
+      final Iterator<JSONValue> it = values.iterator();
+      for (int i = 0; i < 1000; i++) {
+         final JSONObject record = (JSONObject) it.next();
+         assertEquals(i, ((JSONNumber) record.get("n")).getLong());
+      }
+      assertFalse(it.hasNext());
+      assertFalse(closed[0]);
+      values.close();
+      assertTrue(closed[0]);
+   }
+
+   @Test
+   public void skipsBlankLines() throws Exception {
+      final JSONLinesReader reader = new JSONLinesReader(
+            new StringReader("1\n\n  \n[2]\r\n\"3\""));
+      final StringBuilder sb = new StringBuilder();
+      for (final JSONValue value : reader)
+         sb.append(value).append(" ");
+      assertEquals("1 [2] \"3\" ", sb.toString());
+   }
+
+   @Test
+   public void reportsLineNumber() throws Exception {
+      final JSONLinesReader reader = new JSONLinesReader(
+            new StringReader(records(100) + "{\"bad\" 1}\n" + records(10)),
+            executor);
+      try {
+         while (reader.next() != null)
+            ;
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         assertTrue(isExpected.getMessage().startsWith("Line 101:"));
+      }
+      finally {
+         reader.close();
+      }
+   }
+
+   @Test
+   public void rejectsTwoValuesOnOneLine() throws Exception {
+      for (final boolean lazy : new boolean[] { false, true }) {
+         final JSONParser parser = JSONParser.newParser();
+         parser.setLazy(lazy);
+         final JSONLinesReader reader = new JSONLinesReader(
+               new StringReader("{\"a\":1}  \n{\"a\":1} {\"b\":2}\n[1]"),
+               parser,
+               null);
+         try {
+            while (reader.next() != null)
+               ;
+            fail("Should have thrown exception");
+         }
+         catch (JSONException isExpected) {
+            assertTrue(isExpected.getMessage().startsWith("Line 2:"));
+         }
+         finally {
+            reader.close();
+         }
+      }
+   }
+}
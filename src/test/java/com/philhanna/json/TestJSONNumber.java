@@ -2,6 +2,9 @@ package com.philhanna.json;
 
 import static org.junit.Assert.*;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
 import org.apache.log4j.Logger;
 import org.junit.After;
 import org.junit.Before;
@@ -62,6 +65,84 @@ public class TestJSONNumber extends BaseTest {
       assertEquals(0.001, actual.getNumber().doubleValue(), 1e-10);
    }
 
+   @Test
+   public void decodesToNarrowestClass() {
+      assertEquals(
+            Long.valueOf(-42),
+            JSONNumber.parseNumber("-42").getNumber());
+      assertEquals(
+            Long.valueOf(Long.MIN_VALUE),
+            JSONNumber.parseNumber("-9223372036854775808").getNumber());
+      assertEquals(
+            new BigInteger("9223372036854775808"),
+            JSONNumber.parseNumber("9223372036854775808").getNumber());
+      assertEquals(
+            Double.valueOf(0.5),
+            JSONNumber.parseNumber("5e-1").getNumber());
+      assertEquals(
+            new BigDecimal("1e400"),
+            JSONNumber.parseNumber("1e400").getNumber());
+      assertEquals("1000", JSONNumber.parseNumber("1E+3").toString());
+   }
+
+   @Test
+   public void readsPrimitives() {
+      final JSONNumber integer = JSONNumber.parseNumber("-9007199254740993");
+      assertTrue(integer.isIntegral());
+      assertEquals(-9007199254740993L, integer.getLong());
+      assertEquals(-9007199254740992.0, integer.getDouble(), 0);
+      final JSONNumber fraction = JSONNumber.parseNumber("2.75");
+      assertFalse(fraction.isIntegral());
+      assertEquals(2, fraction.getLong());
+      assertEquals(2.75, fraction.getDouble(), 0);
+      final JSONNumber big = JSONNumber.parseNumber("18446744073709551616");
+      assertTrue(big.isIntegral());
+      assertEquals(1.8446744073709552e19, big.getDouble(), 0);
+      assertFalse(new JSONNumber(new BigDecimal("1.5")).isIntegral());
+      assertEquals(7, new JSONNumber(Integer.valueOf(7)).getLong());
+      assertEquals("0.25", new JSONNumber(0.25).toString());
+      assertEquals("3", new JSONNumber(3.0).toString());
+   }
+
+   @Test
+   public void writesLargeNumbersWithoutNarrowing() {
+      assertEquals(
+            "3000000000.0",
+            new JSONNumber(new BigDecimal("3000000000.0")).toString());
+      assertEquals(
+            "18446744073709551616",
+            new JSONNumber(new BigInteger("18446744073709551616")).toString());
+      assertEquals(
+            "3000000000",
+            new JSONNumber(Long.valueOf(3000000000L)).toString());
+      assertEquals("3.0E9", new JSONNumber(3e9).toString());
+      assertEquals("-2", new JSONNumber(Float.valueOf(-2f)).toString());
+      assertEquals("0.1", new JSONNumber(Float.valueOf(0.1f)).toString());
+   }
+
+   @Test
+   public void sharesSmallIntegers() throws Exception {
+      assertSame(JSONNumber.valueOf(1023), JSONNumber.valueOf(1023));
+      assertSame(JSONNumber.valueOf(-128), JSONNumber.parseNumber("-128"));
+      assertNotSame(JSONNumber.valueOf(1024), JSONNumber.valueOf(1024));
+      final JSONArray array = (JSONArray) JSONParser.newParser()
+            .parse("[5, 5000]");
+      assertSame(JSONNumber.valueOf(5), array.get(0));
+      assertEquals(5000, ((JSONNumber) array.get(1)).getLong());
+   }
+
+   @Test
+   public void checksGrammar() {
+      assertTrue(JSONNumber.isNumber("-0.5e+3"));
+      assertFalse(JSONNumber.isNumber("01"));
+      assertFalse(JSONNumber.isNumber("1."));
+      assertFalse(JSONNumber.isNumber(".5"));
+      assertFalse(JSONNumber.isNumber("+1"));
+      assertFalse(JSONNumber.isNumber("1e"));
+      assertFalse(JSONNumber.isNumber("-"));
+      assertFalse(JSONNumber.isNumber(""));
+   }
+
    // Tests that are expected to throw an exception
 
    private void shouldFail(String token) {
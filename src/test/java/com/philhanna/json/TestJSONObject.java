@@ -0,0 +1,94 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONObject
+ */
+public class TestJSONObject extends BaseTest {
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   @Test
+   public void putsAndGetsMembers() {
+      final JSONObject object = new JSONObject();
+      object.put("b", new JSONNumber(1));
+      object.put("a", new JSONNumber(2));
+      object.put("b", new JSONNumber(3));
+      assertEquals(2, object.size());
+      assertEquals("{\"b\":3,\"a\":2}", object.toString());
+      assertEquals(new JSONNumber(2).toString(), object.get("a").toString());
+      assertNull(object.get("c"));
+   }
+
+   @Test
+   public void growsIntoHashTable() {
+      final int n = 3 * JSONObject.COMPACT_LIMIT;
+      final JSONObject object = new JSONObject();
+      final Set<String> keys = object.keySet();
+      for (int i = 0; i < n; i++) {
+         object.put("k" + i, new JSONNumber(i));
+         assertEquals(i + 1, object.size());
+         assertEquals(i + 1, keys.size());
+      }
+      object.put("k0", JSONNull.VALUE);
+      assertEquals(n, object.size());
+      int i = 0;
+      for (final String key : object.keySet()) {
+         assertEquals("k" + i, key);
+         i++;
+      }
+      assertTrue(keys.contains("k" + (n - 1)));
+      assertEquals(JSONNull.VALUE, object.get("k0"));
+      assertEquals(String.valueOf(n - 1), object.get("k" + (n - 1)).toString());
+   }
+
+   @Test
+   public void removesThroughKeySet() throws Exception {
+      final JSONObject object = (JSONObject) JSONParser.newParser()
+            .parse("{\"a\":1,\"b\":2,\"c\":3,\"d\":4}");
+      final Iterator<String> it = object.keySet().iterator();
+      while (it.hasNext()) {
+         final String key = it.next();
+         if (key.equals("b") || key.equals("c"))
+            it.remove();
+      }
+      assertTrue(object.keySet().remove("d"));
+      assertFalse(object.keySet().remove("x"));
+      assertEquals("{\"a\":1}", object.toString());
+      object.put("e", JSONTrue.VALUE);
+      assertEquals(
+            Arrays.asList("a", "e"),
+            Arrays.asList(object.keySet().toArray()));
+   }
+
+   @Test
+   public void trimsAfterParsing() throws Exception {
+      final JSONObject object = (JSONObject) JSONParser.newParser()
+            .parse("{\"a\":{},\"b\":[true],\"c\":{\"d\":null}}");
+      object.trimToSize();
+      object.put("e", new JSONString("x"));
+      assertEquals(
+            "{\"a\":{},\"b\":[true],\"c\":{\"d\":null},\"e\":\"x\"}",
+            object.toString());
+      final JSONObject empty = (JSONObject) object.get("a");
+      empty.put("f", JSONFalse.VALUE);
+      assertEquals("{\"f\":false}", empty.toString());
+   }
+}
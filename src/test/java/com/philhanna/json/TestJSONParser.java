@@ -53,6 +53,81 @@ public class TestJSONParser extends BaseTest {
    // Helper methods
    // ==================================================================
 
+   /**
+    * A handler that records the callbacks it receives as a string
+    */
+   private static class RecordingHandler implements JSONHandler {
+      final StringBuilder sb = new StringBuilder();
+
+      @Override
+      public void startObject() {
+         sb.append("{ ");
+      }
+
+      @Override
+      public void key(String key) {
+         sb.append("key:").append(key).append(" ");
+      }
+
+      @Override
+      public void endObject() {
+         sb.append("} ");
+      }
+
+      @Override
+      public void startArray() {
+         sb.append("[ ");
+      }
+
+      @Override
+      public void endArray() {
+         sb.append("] ");
+      }
+
+      @Override
+      public void stringValue(String value) {
+         sb.append("string:").append(value).append(" ");
+      }
+
+      @Override
+      public void numberValue(Number value) {
+         sb.append("number:").append(value).append(" ");
+      }
+
+      @Override
+      public void booleanValue(boolean value) {
+         sb.append("boolean:").append(value).append(" ");
+      }
+
+      @Override
+      public void nullValue() {
+         sb.append("null ");
+      }
+   }
+
+   /**
+    * A tokenizer that implements only <code>readToken()</code> and
+    * <code>unread()</code>, as tokenizers written for the original
+    * interface do
+    */
+   private static class LegacyTokenizer implements JSONTokenizer {
+      private final DefaultJSONTokenizer source;
+
+      LegacyTokenizer(String input) {
+         source = new DefaultJSONTokenizer(new StringReader(input));
+      }
+
+      @Override
+      public String readToken() throws JSONException, IOException {
+         return source.readToken();
+      }
+
+      @Override
+      public void unread(String token) {
+         source.unread(token);
+      }
+   }
+
    // ==================================================================
    // Unit tests
    // ==================================================================
@@ -85,4 +160,51 @@ public class TestJSONParser extends BaseTest {
       assertNotNull(jsonValue);
    }
 
+   @Test
+   public void parsesScalarDocument() throws JSONException, IOException {
+      final JSONValue value = parser.parse(" 42 ");
+      assertEquals(JSONType.NUMBER, value.getType());
+      assertEquals(42, ((JSONNumber) value).getNumber().intValue());
+   }
+
+   @Test(expected = JSONException.class)
+   public void rejectsNonStringKey() throws JSONException, IOException {
+      parser.parse("{ 1 : 2 }");
+   }
+
+   @Test
+   public void parsesWithHandler() throws JSONException, IOException {
+      final RecordingHandler handler = new RecordingHandler();
+      parser.parse(
+            "{\"a\":[1.5,\"x\",true,false,null],\"b\":{}} [\"ignored\"]",
+            handler);
+      assertEquals(
+            "{ key:a [ number:1.5 string:x boolean:true boolean:false null ] "
+                  + "key:b { } } ",
+            handler.sb.toString());
+   }
+
+   @Test
+   public void parsesWithLegacyTokenizer() throws JSONException, IOException {
+      final JSONTokenizer tokenizer = new LegacyTokenizer(
+            "{\"a\":[1.5,\"x\\ty\",true,null],\"b\":{}}");
+      final JSONObject object = (JSONObject) parser.parse(tokenizer);
+      final JSONArray array = (JSONArray) object.get("a");
+      assertEquals(1.5, ((JSONNumber) array.get(0)).getDouble(), 0);
+      assertEquals("x\ty", ((JSONString) array.get(1)).getString());
+      assertEquals(JSONType.TRUE, array.get(2).getType());
+      assertEquals(JSONType.OBJECT, object.get("b").getType());
+      assertNull(tokenizer.nextToken());
+      assertNull(tokenizer.getTokenType());
+   }
+
+   @Test
+   public void parsesScalarWithHandler() throws JSONException, IOException {
+      final RecordingHandler handler = new RecordingHandler();
+      parser.parse(
+            new ByteArrayInputStream("\"only\"".getBytes("UTF-8")),
+            handler);
+      assertEquals("string:only ", handler.sb.toString());
+   }
+
 }
@@ -0,0 +1,242 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONStatistics
+ */
+public class TestJSONStatistics extends BaseTest {
+
+   private JSONStatistics statistics;
+   private JSONParser parser;
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      statistics = new JSONStatistics();
+      parser = JSONParser.newParser();
+      parser.setObserver(statistics);
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      statistics.unregister();
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void countsDocumentsParsed() throws Exception {
+      parser.parse("{\"a\": [1, 2]}");
+      parser.parse("[[[]]]".getBytes("UTF-8"));
+      assertEquals(2, statistics.getDocumentsParsed());
+      assertEquals(13, statistics.getCharsParsed());
+      assertEquals(6, statistics.getBytesParsed());
+      assertEquals(15, statistics.getTokensParsed());
+      assertEquals(3, statistics.getMaxDepth());
+      assertEquals(2.5, statistics.getAverageDepth(), 0);
+      assertEquals(2, statistics.getRecentDocumentsParsed());
+      assertEquals(2, statistics.getDocumentsBySize()[0]);
+      assertEquals(0, statistics.getDocumentsBySize()[1]);
+      assertTrue(
+            statistics.getMaxNanosBySize()[0] >= statistics
+                  .getAverageNanosBySize()[0]);
+      assertEquals(
+            statistics.getSizeBuckets().length,
+            statistics.getDocumentsBySize().length);
+   }
+
+   @Test
+   public void countsLatencyHistogram() throws Exception {
+      final StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < 1000; i++)
+         sb.append(i).append(", ");
+      sb.append("0]");
+      parser.parse("[1]");
+      parser.parse("[2]");
+      parser.parse(sb.toString());
+      final long[][] histogram = statistics.getLatencyHistogram();
+      final long[] documents = statistics.getDocumentsBySize();
+      assertEquals(statistics.getSizeBuckets().length, histogram.length);
+      for (int i = 0; i < histogram.length; i++) {
+         assertEquals(
+               statistics.getLatencyBuckets().length,
+               histogram[i].length);
+         long sum = 0;
+         for (final long count : histogram[i])
+            sum += count;
+         assertEquals(documents[i], sum);
+      }
+      assertEquals(2, documents[0]);
+      assertEquals(1, documents[1]);
+      statistics.reset();
+      for (final long[] row : statistics.getLatencyHistogram()) {
+         for (final long count : row)
+            assertEquals(0, count);
+      }
+   }
+
+   @Test
+   public void countsParsesInManyThreads() throws Exception {
+      final int threads = 8;
+      final int documents = 2000;
+      final Thread[] workers = new Thread[threads];
+      final Throwable[] failures = new Throwable[threads];
+      for (int t = 0; t < threads; t++) {
+         final int index = t;
+         workers[t] = new Thread(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  final JSONParser parser = JSONParser.newParser();
+                  parser.setObserver(statistics);
+                  for (int i = 0; i < documents; i++)
+                     parser.parse("[1, [2]]".getBytes("UTF-8"));
+               }
+               catch (Throwable e) {
+                  failures[index] = e;
+               }
+            }
+         });
+         workers[t].start();
+      }
+      for (final Thread worker : workers)
+         worker.join();
+      for (final Throwable failure : failures)
+         assertNull(failure);
+      final long total = (long) threads * documents;
+      assertEquals(total, statistics.getDocumentsParsed());
+      assertEquals(total * 8, statistics.getBytesParsed());
+      assertEquals(total * 7, statistics.getTokensParsed());
+      assertEquals(2, statistics.getMaxDepth());
+      assertEquals(total, statistics.getDocumentsBySize()[0]);
+      assertTrue(statistics.getRecentDocumentsParsed() <= total);
+   }
+
+   @Test
+   public void separatesByteAndCharThroughput() throws Exception {
+      parser.parse("[1, 2, 3]");
+      assertEquals(0, statistics.getByteThroughput(), 0);
+      assertEquals(0, statistics.getRecentByteThroughput(), 0);
+      assertTrue(statistics.getCharThroughput() > 0);
+      assertTrue(statistics.getRecentCharThroughput() > 0);
+      statistics.reset();
+      parser.parse("[1, 2, 3]".getBytes("UTF-8"));
+      assertTrue(statistics.getByteThroughput() > 0);
+      assertTrue(statistics.getRecentByteThroughput() > 0);
+      assertEquals(0, statistics.getCharThroughput(), 0);
+      assertEquals(0, statistics.getRecentCharThroughput(), 0);
+   }
+
+   @Test
+   public void countsFailuresByType() throws Exception {
+      final String[] inputs = { "[1 2]", "{1}", "[1, }", "x", "[]" };
+      for (final String input : inputs) {
+         try {
+            parser.parse(input);
+         }
+         catch (JSONException isExpected) {
+            // Counted below
+         }
+      }
+      assertEquals(1, statistics.getDocumentsParsed());
+      assertEquals(4, statistics.getParseFailures());
+      assertEquals(4, statistics.getRecentParseFailures());
+      final Map<String, Long> byType = statistics.getParseFailuresByType();
+      assertEquals(3, byType.size());
+      assertEquals(
+            Long.valueOf(2),
+            byType.get("JSONException after NUMBER"));
+      assertEquals(
+            Long.valueOf(1),
+            byType.get("JSONException after END_OBJECT"));
+      assertEquals(
+            Long.valueOf(1),
+            byType.get("JSONException at start"));
+      statistics.reset();
+      assertEquals(0, statistics.getParseFailures());
+      assertEquals(0, statistics.getRecentParseFailures());
+      assertTrue(statistics.getParseFailuresByType().isEmpty());
+   }
+
+   @Test
+   public void countsDocumentsWritten() throws Exception {
+      final JSONWriter writer = new JSONWriter(parser.parse("{\"a\":[1,2]}"));
+      writer.setStatistics(statistics);
+      final StringWriter sw = new StringWriter();
+      writer.writeTo(new PrintWriter(sw));
+      assertEquals(1, statistics.getDocumentsWritten());
+      assertEquals(1, statistics.getRecentDocumentsWritten());
+      assertEquals(sw.toString().length(), statistics.getCharsWritten());
+      assertEquals(0, statistics.getWriteFailures());
+   }
+
+   @Test
+   public void recordsSlowOperations() throws Exception {
+      statistics.setSlowParseNanos(Long.MAX_VALUE);
+      parser.parse("[1]");
+      assertEquals(0, statistics.getSlowOperationCount());
+      statistics.setSlowParseNanos(-1);
+      statistics.setSlowWriteNanos(-1);
+      final JSONValue value = parser.parse("{\"a\":[[2]]}");
+      final JSONWriter writer = new JSONWriter(value);
+      writer.setStatistics(statistics);
+      writer.writeTo(new PrintWriter(new StringWriter()));
+      final SlowOperation[] operations = statistics.getSlowOperations();
+      assertEquals(2, operations.length);
+      assertEquals(SlowOperation.PARSE, operations[0].getOperation());
+      assertEquals(11, operations[0].getLength());
+      assertEquals("chars", operations[0].getUnit());
+      assertEquals(SlowOperation.WRITE, operations[1].getOperation());
+      assertEquals(JSONType.OBJECT, operations[1].getRootType());
+      assertEquals(3, operations[1].getDepth());
+      assertEquals(
+            Thread.currentThread().getName(),
+            operations[1].getThreadName());
+      for (int i = 0; i < JSONStatistics.MAX_SLOW_OPERATIONS; i++)
+         parser.parse("[" + i + "]");
+      assertEquals(
+            JSONStatistics.MAX_SLOW_OPERATIONS + 2,
+            statistics.getSlowOperationCount());
+      final SlowOperation[] kept = statistics.getSlowOperations();
+      assertEquals(JSONStatistics.MAX_SLOW_OPERATIONS, kept.length);
+      assertEquals(4, kept[kept.length - 1].getLength());
+   }
+
+   @Test
+   public void publishesMBean() throws Exception {
+      final ObjectName name = statistics.register("test, one");
+      parser.parse("[1]");
+      final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      assertEquals(1L, server.getAttribute(name, "DocumentsParsed"));
+      assertEquals(3L, server.getAttribute(name, "CharsParsed"));
+      server.setAttribute(
+            name,
+            new Attribute("SlowParseNanos", -1L));
+      parser.parse("[2]");
+      final CompositeData[] operations = (CompositeData[]) server
+            .getAttribute(name, "SlowOperations");
+      assertEquals(1, operations.length);
+      assertEquals("ARRAY", operations[0].get("rootType"));
+      assertEquals(3L, operations[0].get("length"));
+      statistics.unregister();
+      assertFalse(server.isRegistered(name));
+   }
+}
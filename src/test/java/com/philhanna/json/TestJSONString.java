@@ -136,6 +136,17 @@ public class TestJSONString extends BaseTest {
       assertEquals("\\uffff", JSONString.toUnicode((char) -1));
    }
 
+   @Test
+   public void escapesRunsAndCachesResult() {
+      final JSONString string = new JSONString(
+            "plain \"q\" a/b \u00e9\u0100\u0001 end");
+      final String expected = "\"plain \\\"q\\\" a\\/b \u00e9\\u0100\\u0001 end\"";
+      assertEquals(expected, string.toString());
+      assertSame(string.toString(), string.toString());
+      assertEquals("\"clean\"", JSONString.escape("clean"));
+      assertEquals("\"\"", JSONString.escape(""));
+   }
+
    // Tests that are expected to throw an exception
 
    private void shouldFail(String token) {
@@ -0,0 +1,231 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for JSONSymbolTable
+ */
+public class TestJSONSymbolTable extends BaseTest {
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   /**
+    * A handler that counts the keys it receives
+    */
+   private static class KeyCounter implements JSONHandler {
+      int keys;
+
+      @Override
+      public void startObject() {
+      }
+
+      @Override
+      public void key(String key) {
+         keys++;
+      }
+
+      @Override
+      public void endObject() {
+      }
+
+      @Override
+      public void startArray() {
+      }
+
+      @Override
+      public void endArray() {
+      }
+
+      @Override
+      public void stringValue(String value) {
+      }
+
+      @Override
+      public void numberValue(Number value) {
+      }
+
+      @Override
+      public void booleanValue(boolean value) {
+      }
+
+      @Override
+      public void nullValue() {
+      }
+   }
+
+   private static String firstKey(JSONValue value) {
+      return ((JSONObject) value).keySet().iterator().next();
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void internsFromCharacters() {
+      final JSONSymbolTable symbols = new JSONSymbolTable(100);
+      assertEquals(128, symbols.getCapacity());
+      final char[] chars = "xnamex".toCharArray();
+      final String name = symbols.intern(chars, 1, 4);
+      assertEquals("name", name);
+      assertSame(name, symbols.intern(chars, 1, 4));
+      assertSame(name, symbols.intern(new String("name")));
+   }
+
+   @Test
+   public void replacesCollidingKeys() {
+      final JSONSymbolTable symbols = new JSONSymbolTable(1);
+      final String a = symbols.intern("a");
+      final String b = symbols.intern(new String("b"));
+      assertEquals("b", b);
+      assertNotSame(a, symbols.intern(new String("a")));
+   }
+
+   @Test
+   public void keepsEveryKeyInParseTable() {
+      final JSONSymbolTable symbols = JSONSymbolTable.newParseTable();
+      final String[] keys = new String[1000];
+      for (int i = 0; i < keys.length; i++)
+         keys[i] = symbols.intern(new String("key" + i));
+      assertTrue(symbols.getCapacity() >= keys.length);
+      for (int i = 0; i < keys.length; i++) {
+         final char[] chars = ("key" + i).toCharArray();
+         assertSame(keys[i], symbols.intern(chars, 0, chars.length));
+      }
+   }
+
+   @Test
+   public void sharesManyKeysWithinParse() throws Exception {
+      final StringBuilder sb = new StringBuilder("[");
+      for (int record = 0; record < 2; record++) {
+         sb.append(record == 0 ? "{" : ",{");
+         for (int i = 0; i < 500; i++)
+            sb.append(i == 0 ? "" : ",").append("\"k").append(i).append("\":0");
+         sb.append("}");
+      }
+      final String input = sb.append("]").toString();
+      for (final boolean lazy : new boolean[] { false, true }) {
+         final JSONParser parser = JSONParser.newParser();
+         parser.setLazy(lazy);
+         final JSONArray array = (JSONArray) parser.parse(input);
+         final Iterator<String> first = ((JSONObject) array.get(0))
+               .keySet()
+               .iterator();
+         final Iterator<String> second = ((JSONObject) array.get(1))
+               .keySet()
+               .iterator();
+         while (first.hasNext())
+            assertSame(first.next(), second.next());
+      }
+   }
+
+   @Test
+   public void streamingKeepsNoKeys() throws Exception {
+      final StringBuilder sb = new StringBuilder("{");
+      for (int i = 0; i < 100000; i++)
+         sb.append(i == 0 ? "" : ",").append("\"k").append(i).append("\":0");
+      final String input = sb.append("}").toString();
+
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader(input));
+      final JSONEventReader reader = new JSONEventReader(tokenizer);
+      int keys = 0;
+      JSONEvent event;
+      while ((event = reader.next()) != null) {
+         if (event == JSONEvent.FIELD_NAME && reader.getString() != null)
+            keys++;
+      }
+      assertEquals(100000, keys);
+      assertNull(tokenizer.getSymbolTable());
+
+      final DefaultJSONTokenizer handled = new DefaultJSONTokenizer(
+            new StringReader(input));
+      final KeyCounter counter = new KeyCounter();
+      JSONParser.newParser().parse(handled, counter);
+      assertEquals(100000, counter.keys);
+      assertNull(handled.getSymbolTable());
+   }
+
+   @Test
+   public void forgetsKeysAfterEachValue() throws Exception {
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader("[{\"x\":{\"a\":1},\"y\":{\"a\":2}}]"));
+      final JSONEventReader reader = new JSONEventReader(tokenizer);
+      reader.next();
+      reader.next();
+      final JSONObject object = (JSONObject) reader.readValue();
+      assertSame(
+            firstKey(object.get("x")),
+            firstKey(object.get("y")));
+      assertNull(tokenizer.getSymbolTable());
+
+      final DefaultJSONTokenizer parsed = new DefaultJSONTokenizer(
+            new StringReader("{\"a\":1} {\"b\":2}"));
+      final JSONParser parser = JSONParser.newParser();
+      parser.parse(parsed);
+      assertNull(parsed.getSymbolTable());
+      parser.parse(parsed);
+      assertNull(parsed.getSymbolTable());
+   }
+
+   @Test
+   public void sharesKeysWithinParse() throws Exception {
+      final String input = "[{\"id\":1,\"a\\u0062\":2},{\"id\":3,\"ab\":4}]";
+      for (final boolean lazy : new boolean[] { false, true }) {
+         final JSONParser parser = JSONParser.newParser();
+         parser.setLazy(lazy);
+         final JSONArray array = (JSONArray) parser.parse(input);
+         assertSame(firstKey(array.get(0)), firstKey(array.get(1)));
+         final Iterator<String> first = ((JSONObject) array.get(0))
+               .keySet()
+               .iterator();
+         final Iterator<String> second = ((JSONObject) array.get(1))
+               .keySet()
+               .iterator();
+         first.next();
+         second.next();
+         assertSame(first.next(), second.next());
+      }
+   }
+
+   @Test
+   public void sharesKeysAcrossParses() throws Exception {
+      final JSONParser parser = JSONParser.newParser();
+      parser.setSymbolTable(new JSONSymbolTable());
+      final JSONValue first = parser.parse(new StringReader("{\"id\":1}"));
+      final JSONValue second = parser.parse(new StringReader("{\"id\":2}"));
+      assertSame(firstKey(first), firstKey(second));
+      final JSONValue other = JSONParser.newParser().parse("{\"id\":3}");
+      assertNotSame(firstKey(first), firstKey(other));
+   }
+
+   @Test
+   public void sharesKeysAcrossUnread() throws Exception {
+      final DefaultJSONTokenizer tokenizer = new DefaultJSONTokenizer(
+            new StringReader("\"k\""));
+      tokenizer.nextToken();
+      final String key = tokenizer.getKey();
+      tokenizer.unread("\"k\"");
+      tokenizer.nextToken();
+      assertSame(key, tokenizer.getKey());
+   }
+}
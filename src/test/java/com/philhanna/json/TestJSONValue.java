@@ -2,6 +2,8 @@ package com.philhanna.json;
 
 import static org.junit.Assert.*;
 
+import java.io.StringReader;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -42,4 +44,30 @@ public class TestJSONValue extends BaseTest {
       assertEquals(JSONType.NULL, JSONNull.VALUE.getType());
    }
 
+   @Test
+   public void parsesUnreadTokens() throws Exception {
+      final String[] tokens = { "12.5", "\"a\"", "true", "null", "[" };
+      for (final String token : tokens) {
+         final JSONTokenizer tokenizer = new DefaultJSONTokenizer(
+               new StringReader("]"));
+         assertEquals(
+               token.equals("[") ? "[]" : token,
+               JSONValue.parse(token, tokenizer).toString());
+      }
+   }
+
+   @Test
+   public void rejectsInvalidUnreadTokens() throws Exception {
+      final String[] tokens = { "xyz", "", "12x", "{a", "tru" };
+      for (final String token : tokens) {
+         final JSONTokenizer tokenizer = new DefaultJSONTokenizer(
+               new StringReader(""));
+         try {
+            JSONValue.parse(token, tokenizer);
+            fail("Should have thrown exception for \"" + token + "\"");
+         }
+         catch (JSONException isExpected) {
+         }
+      }
+   }
 }
@@ -1,6 +1,14 @@
 package com.philhanna.json;
 
+import static org.junit.Assert.*;
+
 import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.After;
 import org.junit.Before;
@@ -57,4 +65,305 @@ public class TestJSONWriter extends BaseTest {
       out.close();
    }
 
+   @Test
+   public void writePackedArray() throws Exception {
+      final JSONValue value = JSONParser.newParser()
+            .parse("{\"v\":[1,2.5,-3]}");
+      final StringWriter sw = new StringWriter();
+      final JSONWriter v = new JSONWriter(value);
+      v.setPretty(true);
+      v.writeTo(new PrintWriter(sw));
+      assertEquals(
+            "{\n  \"v\" : [\n    1,\n    2.5,\n    -3\n  ]\n}",
+            sw.toString());
+   }
+
+   @Test
+   public void writeToTargets() throws Exception {
+      final JSONValue value = JSONParser.newParser()
+            .parse("{\"k\u00e9y\":[\"a/b\",true,null,\"\u4e2d\"]}");
+      final String expected = "{\"k\u00e9y\":[\"a\\/b\",true,null,\"\\u4e2d\"]}";
+      final JSONWriter v = new JSONWriter(value);
+
+      final StringBuilder sb = new StringBuilder("x");
+      v.writeTo(sb);
+      assertEquals("x" + expected, sb.toString());
+
+      final StringWriter sw = new StringWriter();
+      v.writeTo(sw);
+      assertEquals(expected, sw.toString());
+
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      v.writeTo(bytes);
+      assertEquals(expected, bytes.toString("UTF-8"));
+
+      final java.nio.CharBuffer chars = java.nio.CharBuffer.allocate(100);
+      v.writeTo(chars);
+      chars.flip();
+      assertEquals(expected, chars.toString());
+   }
+
+   @Test
+   public void writeLargeAndDeep() throws Exception {
+      final StringBuilder input = new StringBuilder();
+      for (int i = 0; i < 40; i++)
+         input.append('[');
+      final char[] big = new char[3 * JSONWriter.BUFFER_SIZE];
+      java.util.Arrays.fill(big, 'q');
+      big[JSONWriter.BUFFER_SIZE] = '"';
+      input.append(JSONString.escape(new String(big)));
+      for (int i = 0; i < 40; i++)
+         input.append(']');
+      final JSONValue value = JSONParser.newParser().parse(input.toString());
+      final JSONWriter v = new JSONWriter(value);
+      final StringBuilder compact = new StringBuilder();
+      v.writeTo(compact);
+      assertEquals(input.toString(), compact.toString());
+
+      v.setPretty(true);
+      final StringBuilder pretty = new StringBuilder();
+      v.writeTo(pretty);
+      final String text = pretty.toString();
+      assertEquals(
+            JSONParser.newParser().parse(text).toString(),
+            value.toString());
+      final String last = text.substring(text.lastIndexOf('\n') + 1);
+      assertEquals("]", last);
+      final String spaces = new String(new char[80]).replace('\0', ' ');
+      assertTrue(text.contains("\n" + spaces + "\"qqq"));
+   }
+
+   @Test
+   public void reportsIOException() throws Exception {
+      final JSONValue value = JSONParser.newParser().parse("[1, 2]");
+      final Writer failing = new Writer() {
+         @Override
+         public void write(char[] cbuf, int off, int len) throws IOException {
+            throw new IOException("disk full");
+         }
+
+         @Override
+         public void flush() {
+         }
+
+         @Override
+         public void close() {
+         }
+      };
+      try {
+         new JSONWriter(value).writeTo(failing);
+         fail("Should have thrown exception");
+      }
+      catch (IOException isExpected) {
+         assertEquals("disk full", isExpected.getMessage());
+      }
+   }
+
+   @Test
+   public void reportsIOExceptionWhileWritingAString() throws Exception {
+      final char[] chars = new char[3 * JSONOutput.BUFFER_SIZE];
+      Arrays.fill(chars, 'x');
+      final JSONArray value = new JSONArray();
+      value.add(new JSONString(new String(chars)));
+      final Writer failing = new Writer() {
+         @Override
+         public void write(char[] cbuf, int off, int len) throws IOException {
+            throw new IOException("disk full");
+         }
+
+         @Override
+         public void flush() {
+         }
+
+         @Override
+         public void close() {
+         }
+      };
+      final JSONStatistics statistics = new JSONStatistics();
+      final JSONWriter writer = new JSONWriter(value);
+      writer.setStatistics(statistics);
+      try {
+         writer.writeTo(failing);
+         fail("Should have thrown exception");
+      }
+      catch (IOException isExpected) {
+         assertEquals("disk full", isExpected.getMessage());
+      }
+      assertEquals(1, statistics.getWriteFailures());
+   }
+
+   @Test
+   public void writeUTF8Bytes() throws Exception {
+      final StringBuilder input = new StringBuilder("[");
+      for (int i = 0; i < 2000; i++) {
+         if (i > 0)
+            input.append(',');
+         input.append("\"caf\u00e9 \u4e2d ").append(i).append('"');
+      }
+      input.append(']');
+      final JSONValue value = JSONParser.newParser().parse(input.toString());
+      final JSONWriter v = new JSONWriter(value);
+      final StringBuilder chars = new StringBuilder();
+      v.writeTo(chars);
+      final byte[] expected = chars.toString().getBytes("UTF-8");
+
+      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      v.writeTo(stream);
+      assertArrayEquals(expected, stream.toByteArray());
+
+      final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(100);
+      buffer.put("HTTP".getBytes("UTF-8"));
+      v.writeTo(buffer, Channels.newChannel(sink));
+      assertEquals(0, buffer.position());
+      assertEquals(
+            "HTTP" + chars,
+            new String(sink.toByteArray(), "UTF-8"));
+
+      final ByteBuffer whole = ByteBuffer.allocate(expected.length);
+      v.writeTo(whole);
+      assertFalse(whole.hasRemaining());
+      assertArrayEquals(expected, whole.array());
+   }
+
+   @Test(expected = BufferOverflowException.class)
+   public void overflowByteBuffer() throws Exception {
+      final JSONValue value = JSONParser.newParser().parse("[1, 2, 3]");
+      new JSONWriter(value).writeTo(ByteBuffer.allocate(6));
+   }
+
+   @Test
+   public void gathersWritesToChannel() throws Exception {
+      final StringBuilder input = new StringBuilder("[");
+      for (int i = 0; i < 500; i++) {
+         if (i > 0)
+            input.append(',');
+         input.append("\"caf\u00e9 ").append(i).append('"');
+      }
+      input.append(']');
+      final JSONWriter v = new JSONWriter(
+            JSONParser.newParser().parse(input.toString()));
+      final StringBuilder chars = new StringBuilder();
+      v.writeTo(chars);
+      final int length = chars.toString().getBytes("UTF-8").length;
+
+      for (int pass = 0; pass < 2; pass++) {
+         final GatheringSink sink = new GatheringSink();
+         final ByteBuffer buffer = ByteBuffer.allocate(100);
+         buffer.put("HTTP".getBytes("UTF-8"));
+         v.writeTo(buffer, sink);
+         assertEquals(0, buffer.position());
+         assertEquals(
+               "HTTP" + chars,
+               new String(sink.bytes.toByteArray(), "UTF-8"));
+         assertEquals(0, sink.writes);
+         // Four buffers of at least 99 bytes are sent together, in
+         // writes of at most 300 bytes
+
+         assertTrue(sink.gatheringWrites >= (length + 4 + 299) / 300);
+         assertTrue(sink.gatheringWrites <= 2 * ((length + 4 + 395) / 396));
+      }
+   }
+
+   @Test
+   public void writeParallel() throws Exception {
+      final StringBuilder input = new StringBuilder("{");
+      for (int i = 0; i < 3000; i++) {
+         if (i > 0)
+            input.append(',');
+         input.append("\"key").append(i).append("\":[");
+         for (int j = 0; j < 2 * JSONWriter.PARALLEL_THRESHOLD; j++) {
+            if (j > 0)
+               input.append(',');
+            input.append(i % 3 == 0
+                  ? "{\"a\":[" + j + ",true],\"b\":\"x\\ny\"}"
+                  : String.valueOf(j));
+            if (i > 2)
+               break;
+         }
+         input.append(']');
+      }
+      input.append('}');
+      final JSONObject object = (JSONObject) JSONParser.newParser()
+            .parse(input.toString());
+      final ForkJoinPool pool = new ForkJoinPool(3);
+      try {
+         assertParallelOutput(object, pool);
+         assertParallelOutput(object.get("key0"), pool);
+         assertParallelOutput(object.get("key1"), pool);
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+
+   private static void assertParallelOutput(JSONValue value, ForkJoinPool pool)
+         throws Exception {
+      for (final boolean pretty : new boolean[] { false, true }) {
+         final JSONWriter sequential = new JSONWriter(value);
+         sequential.setPretty(pretty);
+         final StringBuilder expected = new StringBuilder();
+         sequential.writeTo(expected);
+
+         final JSONWriter parallel = new JSONWriter(value);
+         parallel.setPretty(pretty);
+         parallel.setPool(pool);
+         final StringBuilder actual = new StringBuilder();
+         parallel.writeTo(actual);
+         assertEquals(expected.toString(), actual.toString());
+
+         final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+         parallel.writeTo(stream);
+         assertEquals(
+               expected.toString(),
+               new String(stream.toByteArray(), "UTF-8"));
+      }
+   }
+
+   /**
+    * A gathering channel that collects its output, accepting at most
+    * 300 bytes in each write
+    */
+   private static class GatheringSink implements GatheringByteChannel {
+
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      int writes;
+      int gatheringWrites;
+
+      @Override
+      public int write(ByteBuffer src) {
+         writes++;
+         return copy(src, 300);
+      }
+
+      @Override
+      public long write(ByteBuffer[] srcs, int offset, int length) {
+         gatheringWrites++;
+         long n = 0;
+         for (int i = offset; i < offset + length; i++)
+            n += copy(srcs[i], 300 - (int) n);
+         return n;
+      }
+
+      @Override
+      public long write(ByteBuffer[] srcs) {
+         return write(srcs, 0, srcs.length);
+      }
+
+      @Override
+      public boolean isOpen() {
+         return true;
+      }
+
+      @Override
+      public void close() {
+      }
+
+      private int copy(ByteBuffer src, int limit) {
+         final int n = Math.min(limit, src.remaining());
+         for (int i = 0; i < n; i++)
+            bytes.write(src.get());
+         return n;
+      }
+   }
 }
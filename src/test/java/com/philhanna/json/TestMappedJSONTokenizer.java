@@ -0,0 +1,85 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for MappedJSONTokenizer
+ */
+public class TestMappedJSONTokenizer extends BaseTest {
+
+   // ==================================================================
+   // Instance variables
+   // ==================================================================
+
+   private Path path;
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      path = new File(outputDirectory, "mapped.json").toPath();
+      final String text = "{ \"city\" : \"M\u00fcnchen \u6771\u4eac \ud83d\ude00\","
+            + " \"values\" : [ 1, 22, 333, 4444, true, false, null ] }";
+      Files.write(path, text.getBytes("UTF-8"));
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      Files.deleteIfExists(path);
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void readsAcrossWindows() throws Exception {
+      final String expected = JSONParser.newParser()
+            .parse(new InputStreamReader(Files.newInputStream(path), "UTF-8"))
+            .toString();
+      for (int windowSize = 1; windowSize <= 16; windowSize++) {
+         final FileChannel channel = FileChannel
+               .open(path, StandardOpenOption.READ);
+         final MappedJSONTokenizer tokenizer = new MappedJSONTokenizer(
+               channel,
+               windowSize);
+         try {
+            final JSONValue actual = JSONParser.newParser().parse(tokenizer);
+            assertEquals(expected, actual.toString());
+         }
+         finally {
+            tokenizer.close();
+         }
+      }
+   }
+
+   @Test
+   public void parsesPath() throws Exception {
+      final JSONObject object = (JSONObject) JSONParser.newParser()
+            .parse(path);
+      assertEquals(
+            "M\u00fcnchen \u6771\u4eac \ud83d\ude00",
+            ((JSONString) object.get("city")).getString());
+      assertEquals(7, ((JSONArray) object.get("values")).size());
+   }
+
+   @Test
+   public void parsesEmptyFile() throws Exception {
+      Files.write(path, new byte[0]);
+      assertNull(JSONParser.newParser().parse(path.toFile()));
+   }
+}
@@ -0,0 +1,197 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for ParallelArrayParser
+ */
+public class TestParallelArrayParser extends BaseTest {
+
+   // ==================================================================
+   // Instance variables
+   // ==================================================================
+
+   private ForkJoinPool pool;
+   private Path path;
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      pool = new ForkJoinPool(4);
+      path = new File(outputDirectory, "parallel.json").toPath();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      pool.shutdownNow();
+      Files.deleteIfExists(path);
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private static String elements(int count) {
+      final StringBuilder sb = new StringBuilder(" [ ");
+      for (int i = 0; i < count; i++) {
+         if (i > 0)
+            sb.append(", ");
+         sb.append("{\"n\":").append(i);
+         sb.append(",\"s\":\"a,]}\\\"[{\",\"a\":[").append(i).append("]}");
+      }
+      sb.append(" ] ");
+      return sb.toString();
+   }
+
+   private JSONArray parse(String input, int minChunkSize) throws Exception {
+      return ParallelArrayParser.parse(
+            pool,
+            ByteBuffer.wrap(input.getBytes("UTF-8")),
+            minChunkSize,
+            null,
+            null);
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void parsesChunksInOrder() throws Exception {
+      final String input = elements(1000);
+      final String expected = JSONParser.newParser().parse(input).toString();
+      for (final int minChunkSize : new int[] { 1, 100, 10000, 1 << 20 })
+         assertEquals(expected, parse(input, minChunkSize).toString());
+   }
+
+   @Test
+   public void scansFileAcrossWindows() throws Exception {
+      final String input = elements(100);
+      Files.write(path, input.getBytes("UTF-8"));
+      final String expected = JSONParser.newParser().parse(input).toString();
+      for (final long windowSize : new long[] { 1, 7, 1000 }) {
+         final FileChannel channel = FileChannel
+               .open(path, StandardOpenOption.READ);
+         try {
+            assertEquals(
+                  expected,
+                  ParallelArrayParser
+                        .parse(pool, channel, 50, windowSize, null, null)
+                        .toString());
+         }
+         finally {
+            channel.close();
+         }
+      }
+   }
+
+   @Test
+   public void parsesWithPool() throws Exception {
+      final JSONParser parser = JSONParser.newParser();
+      parser.setPool(pool);
+      assertEquals("[]", parser.parse("[]".getBytes("UTF-8")).toString());
+      assertEquals(
+            "{\"a\":[1]}",
+            parser.parse("{\"a\":[1]}".getBytes("UTF-8")).toString());
+      assertNull(parser.parse(" ".getBytes("UTF-8")));
+      assertNull(parse("{}", 1));
+   }
+
+   @Test
+   public void agreesWithSequentialParser() throws Exception {
+      final JSONParser sequential = JSONParser.newParser();
+      for (final String input : new String[] {
+            "[1, 2",
+            "[1, 2,",
+            "[{]}",
+            "[}[1, 2]",
+            "[[}]",
+            "[1, 2 3, 4]",
+            "[1,, 2]",
+            "[1, 2,]",
+            "[{\"a\" 1}, 2]",
+            "[\"unterminated, 2]",
+            "[1, 2] 3", }) {
+         final String expected = outcome(sequential, input, 0);
+         for (final int minChunkSize : new int[] { 1, 3, 1 << 20 }) {
+            assertEquals(input, expected, outcome(null, input, minChunkSize));
+            assertEquals(input, expected, outcome(null, input, -minChunkSize));
+         }
+      }
+   }
+
+   /**
+    * Returns the result of parsing the input, or the message of the
+    * exception thrown. With no parser, the input is parsed in parallel
+    * from a buffer, or from a file if the chunk size is negative,
+    * falling back to a sequential parse as JSONParser does.
+    */
+   private String outcome(JSONParser parser, String input, int minChunkSize)
+         throws Exception {
+      try {
+         if (parser != null)
+            return parser.parse(input).toString();
+         JSONArray array;
+         if (minChunkSize > 0) {
+            array = parse(input, minChunkSize);
+         }
+         else {
+            Files.write(path, input.getBytes("UTF-8"));
+            final FileChannel channel = FileChannel
+                  .open(path, StandardOpenOption.READ);
+            try {
+               array = ParallelArrayParser
+                     .parse(pool, channel, -minChunkSize, 2, null, null);
+            }
+            finally {
+               channel.close();
+            }
+         }
+         if (array == null)
+            return outcome(JSONParser.newParser(), input, 0);
+         return array.toString();
+      }
+      catch (JSONException e) {
+         return "Exception: " + e.getMessage();
+      }
+   }
+
+   @Test
+   public void parsesLargeElementInWindows() throws Exception {
+      final StringBuilder sb = new StringBuilder("[1, [");
+      for (int i = 0; i < 1000; i++)
+         sb.append(i).append(",\"caf\u00e9\",");
+      sb.append("0], 2]");
+      final String input = sb.toString();
+      Files.write(path, input.getBytes("UTF-8"));
+      final FileChannel channel = FileChannel
+            .open(path, StandardOpenOption.READ);
+      try {
+         assertEquals(
+               JSONParser.newParser().parse(input).toString(),
+               ParallelArrayParser
+                     .parse(pool, channel, 1, 5, null, null)
+                     .toString());
+      }
+      finally {
+         channel.close();
+      }
+   }
+}
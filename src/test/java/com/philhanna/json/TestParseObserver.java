@@ -0,0 +1,213 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for ParseObserver and ParseStatistics
+ */
+public class TestParseObserver extends BaseTest {
+
+   private static final String DOCUMENT = "{\"a\": [1, 2.5, \"x\"], \"b\": {\"c\": null}}";
+
+   /**
+    * An observer that records what it is told
+    */
+   private static class Recorder implements ParseObserver {
+      int started;
+      final List<ParseStatistics> ended = new ArrayList<ParseStatistics>();
+      final List<Exception> failures = new ArrayList<Exception>();
+
+      @Override
+      public void documentStarted() {
+         started++;
+      }
+
+      @Override
+      public void documentEnded(ParseStatistics statistics) {
+         ended.add(statistics);
+      }
+
+      @Override
+      public void documentFailed(ParseStatistics statistics, Exception e) {
+         ended.add(statistics);
+         failures.add(e);
+      }
+   }
+
+   /**
+    * A handler that ignores what it receives
+    */
+   private static class Ignorer implements JSONHandler {
+
+      @Override
+      public void startObject() {
+      }
+
+      @Override
+      public void key(String key) {
+      }
+
+      @Override
+      public void endObject() {
+      }
+
+      @Override
+      public void startArray() {
+      }
+
+      @Override
+      public void endArray() {
+      }
+
+      @Override
+      public void stringValue(String value) {
+      }
+
+      @Override
+      public void numberValue(Number value) {
+      }
+
+      @Override
+      public void booleanValue(boolean value) {
+      }
+
+      @Override
+      public void nullValue() {
+      }
+   }
+
+   private JSONParser parser;
+   private Recorder recorder;
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+      parser = JSONParser.newParser();
+      recorder = new Recorder();
+      parser.setObserver(recorder);
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   private ParseStatistics only() {
+      assertEquals(1, recorder.started);
+      assertEquals(1, recorder.ended.size());
+      return recorder.ended.get(0);
+   }
+
+   private static void assertCounts(ParseStatistics statistics) {
+      assertEquals(JSONType.OBJECT, statistics.getRootType());
+      assertEquals(2, statistics.getObjects());
+      assertEquals(1, statistics.getArrays());
+      assertEquals(2, statistics.getNumbers());
+      assertEquals(4, statistics.getStrings());
+      assertEquals(2, statistics.getMaxDepth());
+      assertTrue(statistics.getElapsedNanos() >= 0);
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void countsTokensOfString() throws Exception {
+      parser.parse(DOCUMENT);
+      final ParseStatistics statistics = only();
+      assertCounts(statistics);
+      assertEquals(19, statistics.getTokens());
+      assertEquals(DOCUMENT.length(), statistics.getInputLength());
+      assertTrue(recorder.failures.isEmpty());
+   }
+
+   @Test
+   public void countsBytesOfUTF8() throws Exception {
+      final byte[] bytes = "[\"\u00e9\"]  ".getBytes("UTF-8");
+      parser.parse(bytes);
+      final ParseStatistics statistics = only();
+      assertEquals(JSONType.ARRAY, statistics.getRootType());
+      assertEquals(3, statistics.getTokens());
+      assertEquals(6, statistics.getInputLength());
+   }
+
+   @Test
+   public void countsValuesOfLazyParse() throws Exception {
+      parser.setLazy(true);
+      parser.parse(DOCUMENT);
+      final ParseStatistics statistics = only();
+      assertCounts(statistics);
+      assertEquals(10, statistics.getTokens());
+      assertEquals(DOCUMENT.length(), statistics.getInputLength());
+   }
+
+   @Test
+   public void mergesChunksOfParallelParse() throws Exception {
+      final StringBuilder sb = new StringBuilder("[");
+      for (int i = 0; i < 100; i++)
+         sb.append(i == 0 ? "" : ",").append("[").append(i).append("]");
+      sb.append("]");
+      final ParseStatistics statistics = new ParseStatistics();
+      final ForkJoinPool pool = new ForkJoinPool(2);
+      try {
+         ParallelArrayParser.parse(
+               pool,
+               ByteBuffer.wrap(sb.toString().getBytes("UTF-8")),
+               16,
+               null,
+               statistics);
+      }
+      finally {
+         pool.shutdown();
+      }
+      assertEquals(101, statistics.getArrays());
+      assertEquals(100, statistics.getNumbers());
+      assertEquals(2, statistics.getMaxDepth());
+      assertEquals(JSONType.ARRAY, statistics.getRootType());
+   }
+
+   @Test
+   public void reportsFailure() throws Exception {
+      try {
+         parser.parse("{\"a\": [1, 2}");
+         fail("Should have thrown exception");
+      }
+      catch (JSONException isExpected) {
+         assertSame(isExpected, recorder.failures.get(0));
+      }
+      final ParseStatistics statistics = only();
+      assertEquals(JSONType.OBJECT, statistics.getRootType());
+      assertEquals(2, statistics.getNumbers());
+   }
+
+   @Test
+   public void observesHandler() throws Exception {
+      parser.parse(DOCUMENT, new Ignorer());
+      final ParseStatistics statistics = only();
+      assertCounts(statistics);
+      assertEquals(DOCUMENT.length(), statistics.getInputLength());
+   }
+
+   @Test
+   public void scalarHasNoDepth() throws Exception {
+      parser.parse(" 42 ");
+      final ParseStatistics statistics = only();
+      assertEquals(JSONType.NUMBER, statistics.getRootType());
+      assertEquals(0, statistics.getMaxDepth());
+      assertEquals(1, statistics.getTokens());
+   }
+}
@@ -0,0 +1,189 @@
+package com.philhanna.json;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for UTF8JSONTokenizer
+ */
+public class TestUTF8JSONTokenizer extends BaseTest {
+
+   // ==================================================================
+   // Class constants and variables
+   // ==================================================================
+
+   private static final Logger log = Logger
+         .getLogger(TestUTF8JSONTokenizer.class);
+
+   // ==================================================================
+   // Fixtures
+   // ==================================================================
+
+   @Before
+   public void setUp() throws Exception {
+      super.setUp();
+   }
+
+   @After
+   public void tearDown() throws Exception {
+      super.tearDown();
+   }
+
+   // ==================================================================
+   // Helper methods
+   // ==================================================================
+
+   /**
+    * An input stream that returns at most one byte per read, so that
+    * every multi-byte sequence is split across buffer refills
+    */
+   private static class TrickleInputStream extends FilterInputStream {
+      TrickleInputStream(InputStream in) {
+         super(in);
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         return super.read(b, off, Math.min(len, 1));
+      }
+   }
+
+   private static byte[] utf8(String s) throws UnsupportedEncodingException {
+      return s.getBytes("UTF-8");
+   }
+
+   private static byte[] readResource(String name) throws IOException {
+      final InputStream in = TestUTF8JSONTokenizer.class
+            .getResourceAsStream(name);
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[4096];
+      int n;
+      while ((n = in.read(buffer)) != -1)
+         out.write(buffer, 0, n);
+      in.close();
+      return out.toByteArray();
+   }
+
+   // ==================================================================
+   // Unit tests
+   // ==================================================================
+
+   @Test
+   public void matchesReaderTokenizer() throws Exception {
+      final byte[] bytes = readResource("/testdata/students.json");
+      final DefaultJSONTokenizer expected = new DefaultJSONTokenizer(
+            new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8"));
+      final UTF8JSONTokenizer actual = new UTF8JSONTokenizer(
+            new ByteArrayInputStream(bytes));
+      try {
+         for (;;) {
+            final String expectedToken = expected.readToken();
+            final String actualToken = actual.readToken();
+            assertEquals(expectedToken, actualToken);
+            if (expectedToken == null)
+               break;
+         }
+      }
+      finally {
+         expected.close();
+         actual.close();
+      }
+   }
+
+   @Test
+   public void decodesMultiByteCharacters() throws Exception {
+      final String value = "caf\u00e9 \u6771\u4eac \ud83d\ude00";
+      final byte[] bytes = utf8("[\"" + value + "\"]");
+      final UTF8JSONTokenizer tokenizer = new UTF8JSONTokenizer(
+            new TrickleInputStream(new ByteArrayInputStream(bytes)));
+      assertEquals(JSONTokenType.START_ARRAY, tokenizer.nextToken());
+      assertEquals(JSONTokenType.STRING, tokenizer.nextToken());
+      assertEquals("\"" + value + "\"", tokenizer.getText());
+      assertEquals(JSONTokenType.END_ARRAY, tokenizer.nextToken());
+      assertNull(tokenizer.nextToken());
+      tokenizer.close();
+   }
+
+   @Test
+   public void keepsTextBufferSmall() throws Exception {
+      final StringBuilder input = new StringBuilder("[");
+      for (int i = 0; i < 200000; i++)
+         input.append("\"name").append(i).append(" caf\u00e9\",");
+      final char[] longest = new char[1000];
+      java.util.Arrays.fill(longest, 'x');
+      input.append('"').append(longest).append("\"]");
+      final UTF8JSONTokenizer tokenizer = new UTF8JSONTokenizer(
+            ByteBuffer.wrap(utf8(input.toString())));
+      int strings = 0;
+      JSONTokenType token;
+      while ((token = tokenizer.nextToken()) != null) {
+         if (token == JSONTokenType.STRING)
+            strings++;
+      }
+      assertEquals(200001, strings);
+      assertTrue(tokenizer.getTextCapacity() <= 2 * longest.length);
+   }
+
+   @Test
+   public void decodesEscapesWhileReading() throws Exception {
+      final String token = "\"\u00e9t\\u00e9 \\ud83d\\ude00\\n\\\"x\"";
+      final UTF8JSONTokenizer tokenizer = new UTF8JSONTokenizer(
+            new TrickleInputStream(new ByteArrayInputStream(utf8(token))));
+      assertEquals(JSONTokenType.STRING, tokenizer.nextToken());
+      assertEquals("\u00e9t\u00e9 \ud83d\ude00\n\"x", tokenizer.getString());
+      assertEquals(token, tokenizer.getText());
+      tokenizer.close();
+   }
+
+   @Test
+   public void readsDirectByteBuffer() throws Exception {
+      final byte[] bytes = utf8("{\"name\" : \"Z\u00fcrich\", \"n\" : 8}");
+      final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+      buffer.put(bytes);
+      buffer.flip();
+      final JSONObject object = (JSONObject) JSONParser.newParser()
+            .parse(buffer);
+      assertEquals(
+            "Z\u00fcrich",
+            ((JSONString) object.get("name")).getString());
+      assertEquals(0, buffer.position());
+   }
+
+   @Test
+   public void parsesInputStream() throws Exception {
+      final InputStream stream = getClass()
+            .getResourceAsStream("/testdata/googlemap.json");
+      final JSONValue value = JSONParser.newParser().parse(stream);
+      stream.close();
+      assertEquals(JSONType.OBJECT, value.getType());
+      assertEquals(2, ((JSONObject) value).size());
+   }
+
+   @Test
+   public void catchesInvalidUTF8() throws Exception {
+      final byte[][] inputs = {
+            { '"', (byte) 0xC3, '"' },
+            { '"', (byte) 0xC0, (byte) 0x80, '"' },
+            { '"', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '"' },
+            { '"', (byte) 0xFF, '"' }, };
+      for (final byte[] input : inputs) {
+         try {
+            new UTF8JSONTokenizer(input).nextToken();
+            fail("Should have thrown exception due to invalid UTF-8");
+         }
+         catch (JSONException wasExpected) {
+            log.debug(
+                  String.format(
+                        "Expected exception was thrown: %s",
+                        wasExpected.getMessage()));
+         }
+      }
+   }
+}